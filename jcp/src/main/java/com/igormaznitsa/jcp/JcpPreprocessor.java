@@ -39,38 +39,66 @@ import com.igormaznitsa.jcp.cmdline.GlobalVariableDefiningFileHandler;
 import com.igormaznitsa.jcp.cmdline.GlobalVariableHandler;
 import com.igormaznitsa.jcp.cmdline.HelpHandler;
 import com.igormaznitsa.jcp.cmdline.InCharsetHandler;
+import com.igormaznitsa.jcp.cmdline.IncrementalHandler;
 import com.igormaznitsa.jcp.cmdline.KeepAttributesHandler;
 import com.igormaznitsa.jcp.cmdline.KeepLineHandler;
 import com.igormaznitsa.jcp.cmdline.OutCharsetHandler;
+import com.igormaznitsa.jcp.cmdline.ParallelThreadsHandler;
 import com.igormaznitsa.jcp.cmdline.PreserveIndentDirectiveHandler;
 import com.igormaznitsa.jcp.cmdline.RemoveCommentsHandler;
 import com.igormaznitsa.jcp.cmdline.SourceDirectoryHandler;
 import com.igormaznitsa.jcp.cmdline.UnknownAsFalseHandler;
 import com.igormaznitsa.jcp.cmdline.VerboseHandler;
+import com.igormaznitsa.jcp.cmdline.WatchHandler;
 import com.igormaznitsa.jcp.containers.FileInfoContainer;
+import com.igormaznitsa.jcp.context.FileDataCache;
+import com.igormaznitsa.jcp.context.IncrementalManifest;
 import com.igormaznitsa.jcp.context.PreprocessingState;
 import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.context.VariableAccessRecord;
 import com.igormaznitsa.jcp.directives.ExcludeIfDirectiveHandler;
 import com.igormaznitsa.jcp.exceptions.FilePositionInfo;
 import com.igormaznitsa.jcp.exceptions.PreprocessorException;
 import com.igormaznitsa.jcp.expression.Expression;
 import com.igormaznitsa.jcp.expression.Value;
 import com.igormaznitsa.jcp.expression.ValueType;
+import com.igormaznitsa.jcp.logger.BufferedLogger;
+import com.igormaznitsa.jcp.utils.MarkerFreeFileWriter;
 import com.igormaznitsa.jcp.utils.PreprocessorUtils;
+import com.igormaznitsa.jcp.utils.TextLineIndex;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import lombok.Data;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.FilenameUtils;
 import com.igormaznitsa.jcp.utils.AntPathMatcher;
 
 /**
@@ -103,9 +131,15 @@ public final class JcpPreprocessor {
       new PreserveIndentDirectiveHandler(),
       new ExcludeFoldersHandler(),
       new KeepAttributesHandler(),
-      new UnknownAsFalseHandler()
+      new UnknownAsFalseHandler(),
+      new ParallelThreadsHandler(),
+      new IncrementalHandler(),
+      new WatchHandler()
   };
   private final PreprocessorContext context;
+  private IncrementalManifest manifest;
+  private IncrementalManifest nextManifest;
+  private boolean clearedByManifest;
 
   public JcpPreprocessor(final PreprocessorContext context) {
     Objects.requireNonNull(context, "Configurator is null");
@@ -139,7 +173,11 @@ public final class JcpPreprocessor {
     final JcpPreprocessor preprocessor = new JcpPreprocessor(preprocessorContext);
 
     try {
-      preprocessor.execute();
+      if (preprocessorContext.isWatch()) {
+        preprocessor.watch();
+      } else {
+        preprocessor.execute();
+      }
     } catch (Exception unexpected) {
       System.err.println(PreprocessorException.referenceAsString(' ', unexpected));
       System.exit(1);
@@ -207,9 +245,31 @@ public final class JcpPreprocessor {
 
 
   public Statistics execute() throws IOException {
+    return this.execute(null);
+  }
+
+  /**
+   * Execute preprocessing with changes of source files detected by a file watcher or a build tool. In
+   * incremental mode files in source folders which are not in the list are recognized as unchanged
+   * without check and files produced from removed source files are deleted.
+   *
+   * @param changedFiles changed, added and removed files in source folders, null if unknown
+   * @return statistics of preprocessing, must not be null
+   * @throws IOException if any error during preprocessing
+   * @since 7.0.6
+   */
+  public Statistics execute(final Collection<File> changedFiles) throws IOException {
     final long timeStart = System.currentTimeMillis();
 
     this.context.getActivatedConfigFiles().addAll(processConfigFiles());
+    this.clearedByManifest = false;
+    this.manifest = loadManifest();
+    if (this.manifest != null && changedFiles != null) {
+      this.manifest.setKnownChanges(this.context.getSources().stream()
+          .map(PreprocessorContext.SourceFolder::getAsFile)
+          .collect(Collectors.toList()), changedFiles);
+      deleteOutputsOfRemovedFiles(changedFiles);
+    }
 
     this.context.logInfo(String
         .format("File extensions: %s excluded %s", this.context.getExtensions(),
@@ -225,25 +285,138 @@ public final class JcpPreprocessor {
         collectFilesToPreprocess(srcFolders, this.context.getExcludeFolders());
     this.context.addAllPreprocessedResources(filesToBePreprocessed);
 
-    final List<PreprocessingState.ExcludeIfInfo> excludedIf =
-        processGlobalDirectives(filesToBePreprocessed);
-
-    processFileExclusion(excludedIf);
-    if (!this.context.isDryRun()) {
-      createTargetFolder();
+    final Statistics stat;
+    if (this.manifest != null && this.manifest.isNothingChanged(filesToBePreprocessed)) {
+      this.context.logInfo("Sources and global variables are unchanged, preprocessing skipped");
+      this.manifest.restoreAll(filesToBePreprocessed);
+      final int excluded = (int) filesToBePreprocessed.stream()
+          .filter(FileInfoContainer::isExcludedFromPreprocessing).count();
+      stat = new Statistics(0, 0, excluded, filesToBePreprocessed.size() - excluded);
     } else {
-      this.context.logInfo("Dry run mode is ON");
+      final List<PreprocessingState.ExcludeIfInfo> excludedIf =
+          processGlobalDirectives(filesToBePreprocessed);
+
+      processFileExclusion(excludedIf);
+      if (!this.context.isDryRun()) {
+        createTargetFolder();
+      } else {
+        this.context.logInfo("Dry run mode is ON");
+      }
+      stat = preprocessFiles(filesToBePreprocessed);
+    }
+
+    if (this.clearedByManifest) {
+      deleteOutdatedOutputs();
+    }
+
+    if (this.manifest != null && this.context.isIncremental()) {
+      this.manifest.save(this.context.findManifestFile());
     }
-    final Statistics stat = preprocessFiles(filesToBePreprocessed);
 
     final long elapsedTime = System.currentTimeMillis() - timeStart;
     this.context.logInfo("-----------------------------------------------------------------");
     this.context.logInfo(String
-        .format("Preprocessed %d files, copied %d files, ignored %d files, elapsed time %d ms",
-            stat.getPreprocessed(), stat.getCopied(), stat.getExcluded(), elapsedTime));
+        .format("Preprocessed %d files, copied %d files, ignored %d files%s, elapsed time %d ms",
+            stat.getPreprocessed(), stat.getCopied(), stat.getExcluded(),
+            this.manifest == null ? "" :
+                String.format(", skipped %d unchanged files", stat.getSkipped()),
+            elapsedTime));
     return stat;
   }
 
+  /**
+   * Preprocess files and watch source folders and input files placed outside of them (for instance included
+   * files), changed files and files including them are preprocessed again with the same context until the
+   * current thread is interrupted. Errors of repeated preprocessing are logged and changed files are kept
+   * to be processed in the next cycle.
+   *
+   * @throws IOException if any error during the first preprocessing or start of watching
+   * @since 7.0.6
+   */
+  public void watch() throws IOException {
+    final WatchSession session = new WatchSession();
+    try (final SourceFolderWatcher watcher = new SourceFolderWatcher(
+        this.context.getSources().stream()
+            .map(PreprocessorContext.SourceFolder::getAsFile)
+            .collect(Collectors.toList()),
+        this.context.getConfigFiles(), this.context.getTarget())) {
+      session.start();
+      // included and evaluated files can be placed outside of source folders
+      watcher.watchFiles(this.context.findAllInputFiles());
+      this.context.logInfo(String.format("Watching %d folders for changes, interrupt to stop",
+          watcher.getWatchedFolders().size()));
+      while (!Thread.currentThread().isInterrupted()) {
+        final Set<File> changed;
+        try {
+          changed = watcher.awaitChanges();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+        if (changed != null && changed.isEmpty()) {
+          continue;
+        }
+        try {
+          session.runCycle(changed);
+        } catch (IOException | RuntimeException ex) {
+          this.context.logError(PreprocessorException.referenceAsString(' ', ex));
+        }
+        watcher.watchFiles(this.context.findAllInputFiles());
+      }
+    }
+    this.context.logInfo("Watch mode stopped");
+  }
+
+  private void deleteOutputsOfRemovedFiles(final Collection<File> changedFiles) {
+    for (final File file : changedFiles) {
+      if (!file.exists()) {
+        for (final File output : this.manifest.findPreviousOutputs(file)) {
+          if (output.isFile()) {
+            if (output.delete()) {
+              this.context.logDebug("Deleted result of removed file: " + output);
+            } else {
+              this.context.logWarning("Can't delete result of removed file: " + output);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private IncrementalManifest loadManifest() {
+    if (this.nextManifest != null) {
+      final IncrementalManifest result = this.nextManifest;
+      this.nextManifest = null;
+      return result;
+    }
+    if (this.context.isDryRun() || !(this.context.isIncremental() || this.context.isWatch())) {
+      return null;
+    }
+    if (!this.context.isIncremental()) {
+      return IncrementalManifest.makeEmpty(this.context);
+    }
+    final IncrementalManifest result =
+        IncrementalManifest.load(this.context.findManifestFile(), this.context);
+    if (this.context.isClearTarget() && result.hasPreviousRecords()) {
+      this.context.logInfo(
+          "Target folder is not cleared, outdated results are removed by incremental manifest");
+      this.clearedByManifest = true;
+    }
+    return result;
+  }
+
+  private void deleteOutdatedOutputs() {
+    for (final File output : this.manifest.findOutdatedOutputs()) {
+      if (output.isFile()) {
+        if (output.delete()) {
+          this.context.logDebug("Deleted outdated result: " + output);
+        } else {
+          this.context.logWarning("Can't delete outdated result: " + output);
+        }
+      }
+    }
+  }
+
   private void processFileExclusion(final List<PreprocessingState.ExcludeIfInfo> foundExcludeIf) {
     final String DIRECTIVE_NAME = new ExcludeIfDirectiveHandler().getFullName();
 
@@ -292,18 +465,149 @@ public final class JcpPreprocessor {
   }
 
 
+  private static List<PreprocessingState.ExcludeIfInfo> processGlobalDirectives(
+      final FileInfoContainer fileRef, final PreprocessorContext context) throws IOException {
+    final long startTime = System.currentTimeMillis();
+    final List<PreprocessingState.ExcludeIfInfo> result;
+    scanForMarkers(fileRef, context);
+    try {
+      result = Boolean.TRUE.equals(fileRef.getMarkerFree()) ? Collections.emptyList() :
+          fileRef.processGlobalDirectives(null, context);
+    } finally {
+      // only result of the scan is kept between phases, content is read again by the main phase
+      fileRef.setSourceContent(null);
+    }
+    final long elapsedTime = System.currentTimeMillis() - startTime;
+    if (context.isVerbose()) {
+      context.logForVerbose(String
+          .format("Global phase completed for file '%s', elapsed time %d ms ",
+              PreprocessorUtils.getFilePath(fileRef.getSourceFile()), elapsedTime));
+    }
+    return result;
+  }
+
   private List<PreprocessingState.ExcludeIfInfo> processGlobalDirectives(
       final Collection<FileInfoContainer> files) throws IOException {
+    final int threads = findThreadsForPreprocessing(files);
+    if (threads > 1) {
+      final ExecutorService executor = makeExecutor(threads);
+      try {
+        return processGlobalDirectivesInParallel(executor, files);
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
     final List<PreprocessingState.ExcludeIfInfo> result = new ArrayList<>();
     for (final FileInfoContainer fileRef : files) {
       if (!(fileRef.isExcludedFromPreprocessing() || fileRef.isCopyOnly())) {
-        final long startTime = System.currentTimeMillis();
-        result.addAll(fileRef.processGlobalDirectives(null, context));
-        final long elapsedTime = System.currentTimeMillis() - startTime;
-        if (context.isVerbose()) {
-          context.logForVerbose(String
-              .format("Global phase completed for file '%s', elapsed time %d ms ",
-                  PreprocessorUtils.getFilePath(fileRef.getSourceFile()), elapsedTime));
+        result.addAll(processGlobalDirectivesForFile(fileRef, null));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Process global phase for a file on the main context. If incremental mode is active then result of
+   * the previous preprocessing is restored for unchanged file.
+   *
+   * @param fileRef          file to be processed
+   * @param changedVariables if not null then filled by names of changed global variables
+   * @return found exclude-if records
+   * @throws IOException if any error during processing
+   */
+  private List<PreprocessingState.ExcludeIfInfo> processGlobalDirectivesForFile(
+      final FileInfoContainer fileRef,
+      final Collection<String> changedVariables
+  ) throws IOException {
+    if (this.manifest != null) {
+      final List<PreprocessingState.ExcludeIfInfo> restored =
+          this.manifest.restoreGlobalPhase(fileRef, this.context, changedVariables);
+      if (restored != null) {
+        this.context.logForVerbose(
+            "Global phase restored for unchanged file: " + fileRef.getSourceFile());
+        return restored;
+      }
+    } else if (changedVariables == null) {
+      return processGlobalDirectives(fileRef, this.context);
+    }
+
+    final Map<String, Value> globalsBefore =
+        this.manifest == null ? null : new HashMap<>(this.context.getGlobalVarTable());
+    final VariableAccessRecord previousRecord = this.context.getVariableAccessRecord();
+    final VariableAccessRecord record = new VariableAccessRecord();
+    final List<PreprocessingState.ExcludeIfInfo> result;
+    this.context.setVariableAccessRecord(record);
+    try {
+      result = processGlobalDirectives(fileRef, this.context);
+    } finally {
+      this.context.setVariableAccessRecord(previousRecord);
+    }
+
+    if (this.manifest != null) {
+      this.manifest.registerGlobalPhase(fileRef, globalsBefore, record, result);
+    }
+    if (changedVariables != null) {
+      changedVariables.addAll(record.getChangedGlobalVariables().keySet());
+    }
+    return result;
+  }
+
+  /**
+   * Global phase for all files is started in parallel on copies of the context and every file records
+   * read and changed global variables. Results are merged in the file order, if a file touched a variable
+   * changed by a file before it then its result is dropped and the file is processed again on the main
+   * context, so the result global variable table is the same as for sequential processing.
+   */
+  private List<PreprocessingState.ExcludeIfInfo> processGlobalDirectivesInParallel(
+      final ExecutorService executor,
+      final Collection<FileInfoContainer> files
+  ) throws IOException {
+    final Map<FileInfoContainer, Future<WorkerResult>> tasks = new IdentityHashMap<>();
+    for (final FileInfoContainer fileRef : files) {
+      if (!(fileRef.isExcludedFromPreprocessing() || fileRef.isCopyOnly()) &&
+          (this.manifest == null || !this.manifest.isSourceUnchanged(fileRef))) {
+        final BufferedLogger logger = new BufferedLogger();
+        final PreprocessorContext workerContext = this.context.makeWorkerCopy(logger);
+        final VariableAccessRecord record = new VariableAccessRecord();
+        workerContext.setVariableAccessRecord(record);
+        tasks.put(fileRef, executor.submit(() -> {
+          try {
+            return new WorkerResult(logger, record,
+                processGlobalDirectives(fileRef, workerContext), null);
+          } catch (Throwable ex) {
+            return new WorkerResult(logger, record, Collections.emptyList(), ex);
+          }
+        }));
+      }
+    }
+
+    final List<PreprocessingState.ExcludeIfInfo> result = new ArrayList<>();
+    final Set<String> changedVariables = new HashSet<>();
+    for (final FileInfoContainer fileRef : files) {
+      if (fileRef.isExcludedFromPreprocessing() || fileRef.isCopyOnly()) {
+        continue;
+      }
+      final Future<WorkerResult> task = tasks.get(fileRef);
+      if (task == null) {
+        result.addAll(processGlobalDirectivesForFile(fileRef, changedVariables));
+        continue;
+      }
+      final WorkerResult workerResult = waitWorker(task);
+      if (workerResult.getRecord().isTouched(changedVariables)) {
+        this.context.logDebug(
+            "Repeat global phase for dependent file: " + fileRef.getSourceFile());
+        result.addAll(processGlobalDirectivesForFile(fileRef, changedVariables));
+      } else {
+        final Map<String, Value> globalsBefore =
+            this.manifest == null ? null : new HashMap<>(this.context.getGlobalVarTable());
+        workerResult.replay(this.context);
+        workerResult.getRecord().applyChanges(this.context);
+        changedVariables.addAll(workerResult.getRecord().getChangedGlobalVariables().keySet());
+        result.addAll(workerResult.getExcludeIf());
+        if (this.manifest != null) {
+          this.manifest.registerGlobalPhase(fileRef, globalsBefore, workerResult.getRecord(),
+              workerResult.getExcludeIf());
         }
       }
     }
@@ -311,10 +615,212 @@ public final class JcpPreprocessor {
   }
 
 
+  private int findThreadsForPreprocessing(final Collection<FileInfoContainer> files) {
+    final int threads = this.context.getThreads() <= 0 ?
+        Runtime.getRuntime().availableProcessors() : this.context.getThreads();
+    final int filesToPreprocess = (int) files.stream()
+        .filter(x -> !(x.isExcludedFromPreprocessing() || x.isCopyOnly()))
+        .count();
+    return Math.min(threads, filesToPreprocess);
+  }
+
+  /**
+   * Start preprocessing of files in parallel on copies of the context, every copy records read and changed
+   * global variables. Files which can be skipped in incremental mode are not started.
+   */
+  private Map<FileInfoContainer, Future<WorkerResult>> startParallelPreprocessing(
+      final ExecutorService executor,
+      final Collection<FileInfoContainer> files
+  ) throws IOException {
+    final Map<FileInfoContainer, Future<WorkerResult>> result = new IdentityHashMap<>();
+    for (final FileInfoContainer fileRef : files) {
+      if (!(fileRef.isExcludedFromPreprocessing() || fileRef.isCopyOnly()) &&
+          (this.manifest == null ||
+              !this.manifest.isPreprocessingUnchanged(fileRef, this.context))) {
+        final BufferedLogger logger = new BufferedLogger();
+        final PreprocessorContext workerContext = this.context.makeWorkerCopy(logger);
+        final VariableAccessRecord record = new VariableAccessRecord();
+        workerContext.setVariableAccessRecord(record);
+        result.put(fileRef, executor.submit(() -> {
+          try {
+            preprocessFile(fileRef, workerContext);
+            return new WorkerResult(logger, record, Collections.emptyList(), null);
+          } catch (Throwable ex) {
+            return new WorkerResult(logger, record, Collections.emptyList(), ex);
+          }
+        }));
+      }
+    }
+    return result;
+  }
+
+  private static WorkerResult waitWorker(final Future<WorkerResult> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted during parallel preprocessing", ex);
+    } catch (ExecutionException ex) {
+      throw new IOException("Unexpected error during parallel preprocessing", ex.getCause());
+    }
+  }
+
+  private static ExecutorService makeExecutor(final int threads) {
+    final AtomicInteger threadCounter = new AtomicInteger();
+    return Executors.newFixedThreadPool(threads, runnable -> {
+      final Thread thread =
+          new Thread(runnable, "jcp-preprocessor-" + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  private static void preprocessFile(final FileInfoContainer fileRef,
+                                     final PreprocessorContext context) throws IOException {
+    final long startTime = System.currentTimeMillis();
+    scanForMarkers(fileRef, context);
+    try {
+      if (Boolean.TRUE.equals(fileRef.getMarkerFree())) {
+        // content is released after the global phase
+        final byte[] content = fileRef.getSourceContent();
+        writeMarkerFreeFile(fileRef,
+            content == null ? Files.readAllBytes(fileRef.getSourceFile().toPath()) : content,
+            context);
+      } else {
+        fileRef.preprocessFile(null, context);
+      }
+    } finally {
+      fileRef.setSourceContent(null);
+    }
+    final long elapsedTime = System.currentTimeMillis() - startTime;
+    if (context.isVerbose()) {
+      context.logForVerbose(String
+          .format("File preprocessing completed  '%s', elapsed time %d ms",
+              PreprocessorUtils.getFilePath(fileRef.getSourceFile()), elapsedTime));
+    }
+  }
+
+  /**
+   * Read source file and scan it for preprocessor markers if it has not been scanned, the result is kept
+   * in the file container for both phases and the content is kept only for the current phase. Files in
+   * charsets which are not ASCII compatible are not scanned.
+   */
+  private static void scanForMarkers(final FileInfoContainer fileRef,
+                                     final PreprocessorContext context) throws IOException {
+    if (fileRef.getMarkerFree() == null &&
+        MarkerFreeFileWriter.isAsciiCompatible(context.getSourceEncoding())) {
+      final byte[] content = Files.readAllBytes(fileRef.getSourceFile().toPath());
+      fileRef.setSourceContent(content);
+      fileRef.setMarkerFree(!MarkerFreeFileWriter.hasMarkers(content));
+    }
+  }
+
+  /**
+   * Write file which doesn't contain any preprocessor marker, the result is the same as for line by
+   * line preprocessing but without directive processing and printer buffers.
+   */
+  private static void writeMarkerFreeFile(final FileInfoContainer fileRef, final byte[] content,
+                                          final PreprocessorContext context) throws IOException {
+    if (!context.isCloned()) {
+      context.clearLocalVariables();
+    }
+    if (context.isDryRun()) {
+      return;
+    }
+
+    final File outFile = context.createDestinationFileForPath(fileRef.makeTargetFilePathAsString());
+    final boolean wasSaved = MarkerFreeFileWriter.write(content, outFile, context);
+    if (context.isVerbose()) {
+      context.logForVerbose(String
+          .format("Marker-free content was %s into file '%s'", (wasSaved ? "saved" : "not saved"),
+              outFile.toString()));
+    }
+
+    if (context.isKeepAttributes() &&
+        !PreprocessorUtils.copyFileAttributes(fileRef.getSourceFile(), outFile)) {
+      throw new IOException("Can't copy attributes in result file: " + outFile);
+    }
+    fileRef.getGeneratedResources().add(outFile);
+  }
+
+  /**
+   * Preprocess file on the main context. If incremental mode is active then unchanged file is skipped.
+   *
+   * @param fileRef          file to be preprocessed
+   * @param changedVariables if not null then filled by names of changed global variables
+   * @return true if the file has been preprocessed, false if it has been skipped
+   * @throws IOException if any error during processing
+   */
+  private boolean preprocessFileIncrementally(
+      final FileInfoContainer fileRef,
+      final Collection<String> changedVariables
+  ) throws IOException {
+    if (this.manifest != null) {
+      if (this.manifest.restorePreprocessing(fileRef, this.context, changedVariables)) {
+        this.context.logForVerbose("Skipped unchanged file: " + fileRef.getSourceFile());
+        return false;
+      }
+    } else if (changedVariables == null) {
+      preprocessFile(fileRef, this.context);
+      return true;
+    }
+
+    final Map<String, Value> globalsBefore =
+        this.manifest == null ? null : new HashMap<>(this.context.getGlobalVarTable());
+    final VariableAccessRecord previousRecord = this.context.getVariableAccessRecord();
+    final VariableAccessRecord record = new VariableAccessRecord();
+    this.context.setVariableAccessRecord(record);
+    try {
+      preprocessFile(fileRef, this.context);
+    } finally {
+      this.context.setVariableAccessRecord(previousRecord);
+    }
+    if (this.manifest != null) {
+      this.manifest.registerPreprocessing(fileRef, globalsBefore, record);
+    }
+    if (changedVariables != null) {
+      changedVariables.addAll(record.getChangedGlobalVariables().keySet());
+    }
+    return true;
+  }
+
   private Statistics preprocessFiles(final Collection<FileInfoContainer> files) throws IOException {
+    final int threads = findThreadsForPreprocessing(files);
+
+    final ExecutorService executor;
+    final Map<FileInfoContainer, Future<WorkerResult>> parallelTasks;
+    if (threads > 1) {
+      this.context.logInfo("Parallel preprocessing, threads: " + threads);
+      executor = makeExecutor(threads);
+      parallelTasks = startParallelPreprocessing(executor, files);
+    } else {
+      executor = null;
+      parallelTasks = Collections.emptyMap();
+    }
+
+    try {
+      return preprocessFiles(files, parallelTasks);
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Preprocess files in their order. Results of files preprocessed in parallel are merged in the order,
+   * if a file touched a global variable changed by a file before it then the file is preprocessed again
+   * on the main context, so the result is the same as for sequential preprocessing.
+   */
+  private Statistics preprocessFiles(
+      final Collection<FileInfoContainer> files,
+      final Map<FileInfoContainer, Future<WorkerResult>> parallelTasks
+  ) throws IOException {
+    final Set<String> changedVariables = parallelTasks.isEmpty() ? null : new HashSet<>();
     int preprocessedCounter = 0;
     int copiedCounter = 0;
     int excludedCounter = 0;
+    int skippedCounter = 0;
 
     for (final FileInfoContainer fileRef : files) {
       if (fileRef.isExcludedFromPreprocessing()) {
@@ -324,8 +830,15 @@ public final class JcpPreprocessor {
           final File destinationFile =
               this.context.createDestinationFileForPath(fileRef.makeTargetFilePathAsString());
           boolean doCopy = true;
+          boolean restored = false;
 
-          if (this.context.isDontOverwriteSameContent() &&
+          if (this.manifest != null && this.manifest.restoreCopy(fileRef, destinationFile)) {
+            doCopy = false;
+            restored = true;
+            skippedCounter++;
+            this.context.logForVerbose(
+                "Copy skipped for unchanged file: " + fileRef.getSourceFile());
+          } else if (this.context.isDontOverwriteSameContent() &&
               PreprocessorUtils.isFileContentEquals(fileRef.getSourceFile(), destinationFile)) {
             doCopy = false;
             if (this.context.isVerbose()) {
@@ -347,24 +860,42 @@ public final class JcpPreprocessor {
             fileRef.getGeneratedResources().add(destinationFile);
             copiedCounter++;
           }
+          if (!restored && this.manifest != null) {
+            this.manifest.registerCopy(fileRef);
+          }
         }
       } else {
-        final long startTime = System.currentTimeMillis();
-        fileRef.preprocessFile(null, this.context);
-        final long elapsedTime = System.currentTimeMillis() - startTime;
-        if (this.context.isVerbose()) {
-          this.context.logForVerbose(String
-              .format("File preprocessing completed  '%s', elapsed time %d ms",
-                  PreprocessorUtils.getFilePath(fileRef.getSourceFile()), elapsedTime));
+        final Future<WorkerResult> parallelTask = parallelTasks.get(fileRef);
+        final WorkerResult workerResult = parallelTask == null ? null : waitWorker(parallelTask);
+        if (workerResult == null || workerResult.getRecord().isTouched(changedVariables)) {
+          if (workerResult != null) {
+            this.context.logDebug(
+                "Repeat preprocessing for dependent file: " + fileRef.getSourceFile());
+          }
+          if (preprocessFileIncrementally(fileRef, changedVariables)) {
+            preprocessedCounter++;
+          } else {
+            skippedCounter++;
+          }
+        } else {
+          final Map<String, Value> globalsBefore =
+              this.manifest == null ? null : new HashMap<>(this.context.getGlobalVarTable());
+          workerResult.replay(this.context);
+          workerResult.getRecord().applyChanges(this.context);
+          changedVariables.addAll(workerResult.getRecord().getChangedGlobalVariables().keySet());
+          if (this.manifest != null) {
+            this.manifest.registerPreprocessing(fileRef, globalsBefore, workerResult.getRecord());
+          }
+          preprocessedCounter++;
         }
-        preprocessedCounter++;
       }
     }
 
     return new Statistics(
         preprocessedCounter,
         copiedCounter,
-        excludedCounter
+        excludedCounter,
+        skippedCounter
     );
   }
 
@@ -373,7 +904,7 @@ public final class JcpPreprocessor {
 
     final boolean targetExists = target.isDirectory();
 
-    if (context.isClearTarget() && targetExists) {
+    if (context.isClearTarget() && !this.clearedByManifest && targetExists) {
       this.context.logForVerbose("Cleaining target folder: " + target);
       try {
         FileUtils.cleanDirectory(target);
@@ -398,25 +929,21 @@ public final class JcpPreprocessor {
     final AntPathMatcher antPathMatcher = new AntPathMatcher();
 
     for (final PreprocessorContext.SourceFolder sourceFolder : sources) {
-      String canonicalSourcePath = sourceFolder.getAsFile().getCanonicalPath();
-
       this.context.logDebug("Processing folder: " + sourceFolder);
 
-      if (!canonicalSourcePath.endsWith(File.separator)) {
-        canonicalSourcePath += File.separator;
-      }
-
-      for (final File file : findAllFiles(canonicalSourcePath, sourceFolder.getAsFile(),
-          antPathMatcher, excluded)) {
-        if (this.context.isFileExcludedByExtension(file)) {
+      for (final FoundFile found : findAllFiles(sourceFolder.getAsFile(), antPathMatcher,
+          excluded)) {
+        final File file = found.getFile();
+        // file attributes are known from the scan, so no extra file system calls
+        final String extension = PreprocessorUtils.getFileExtension(file);
+        if (this.context.getExcludeExtensions().contains(extension)) {
           this.context
               .logForVerbose(String.format("File '%s' excluded by its extension", file.getPath()));
         } else {
-          final String canonicalFilePath = file.getCanonicalPath();
-          final String canonicalRelativePath =
-              canonicalFilePath.substring(canonicalSourcePath.length());
-          final FileInfoContainer reference = new FileInfoContainer(file, canonicalRelativePath,
-              !this.context.isFileAllowedForPreprocessing(file));
+          final boolean allowedForPreprocessing =
+              found.getSize() != 0L && this.context.getExtensions().contains(extension);
+          final FileInfoContainer reference =
+              new FileInfoContainer(file, found.getRelativePath(), !allowedForPreprocessing);
           result.add(reference);
           this.context.logDebug("File added to preprocess list: " + reference);
         }
@@ -426,55 +953,76 @@ public final class JcpPreprocessor {
     return result;
   }
 
-
-  private Set<File> findAllFiles(
-      final String sourceCanonicalPath,
-      final File dir,
+  /**
+   * Find all files in source folder, excluded folders are not visited.
+   *
+   * @param sourceFolder           source folder to be scanned
+   * @param antPathMatcher         matcher for excluded folder patterns
+   * @param excludedFolderPatterns ANT patterns of folders to be excluded
+   * @return list of found files sorted by their relative paths
+   * @throws IOException if any error during scan
+   */
+  private List<FoundFile> findAllFiles(
+      final File sourceFolder,
       final AntPathMatcher antPathMatcher,
       final List<String> excludedFolderPatterns
   ) throws IOException {
+    final List<FoundFile> result = new ArrayList<>();
+    final Path root = sourceFolder.toPath();
 
-    final Set<File> result = new HashSet<>();
-
-    this.context.logDebug("Looking for files in folder: " + dir);
-
-    final File[] allowedFiles = dir.listFiles();
-    if (allowedFiles == null) {
-      this.context.logWarning("Can't find files in folder: " + dir);
-    } else {
-      final String normalizedBasePath = FilenameUtils.normalize(sourceCanonicalPath, true);
-
-      for (final File file : allowedFiles) {
-        if (file.isDirectory()) {
-          final String folderPath = file.getCanonicalPath();
-          String excludedFolderPattern = null;
-
-          if (!excludedFolderPatterns.isEmpty()) {
-            final String subPathInBase = folderPath.substring(normalizedBasePath.length());
+    if (!Files.isDirectory(root)) {
+      this.context.logWarning("Can't find files in folder: " + sourceFolder);
+      return result;
+    }
 
-            for (final String pattern : excludedFolderPatterns) {
-              if (antPathMatcher.match(pattern, subPathInBase)) {
-                excludedFolderPattern = pattern;
-                break;
+    Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult preVisitDirectory(final Path dir,
+                                                   final BasicFileAttributes attrs) {
+            if (!dir.equals(root) && !excludedFolderPatterns.isEmpty()) {
+              final String subPathInBase = root.relativize(dir).toString();
+              for (final String pattern : excludedFolderPatterns) {
+                if (antPathMatcher.match(pattern, subPathInBase)) {
+                  context.logForVerbose(
+                      String.format("Folder '%s' excluded by '%s'", dir, pattern));
+                  return FileVisitResult.SKIP_SUBTREE;
+                }
               }
             }
+            context.logDebug("Looking for files in folder: " + dir);
+            return FileVisitResult.CONTINUE;
           }
 
-          if (excludedFolderPattern == null) {
-            result.addAll(
-                findAllFiles(sourceCanonicalPath, file, antPathMatcher, excludedFolderPatterns));
-          } else {
-            this.context.logForVerbose(
-                String.format("Folder '%s' excluded by '%s'", folderPath, excludedFolderPattern));
+          @Override
+          public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+            if (attrs.isRegularFile()) {
+              result.add(new FoundFile(file.toFile(), root.relativize(file).toString(),
+                  attrs.size()));
+            }
+            return FileVisitResult.CONTINUE;
           }
-        } else {
-          result.add(file);
-        }
-      }
-    }
+
+          @Override
+          public FileVisitResult visitFileFailed(final Path file, final IOException exc) {
+            context.logWarning("Can't find files in folder: " + file + " (" + exc + ')');
+            return FileVisitResult.CONTINUE;
+          }
+        });
+
+    result.sort(Comparator.comparing(FoundFile::getRelativePath));
     return result;
   }
 
+  private String[] readConfigFile(final File file) throws IOException {
+    final FileDataCache cache = this.context.getFileDataCache();
+    if (cache == null || !file.isFile()) {
+      return readWholeTextFileIntoArray(file, StandardCharsets.UTF_8, null);
+    }
+    return cache.find("config", file, String[].class,
+        content -> TextLineIndex.decode(ByteBuffer.wrap(content), StandardCharsets.UTF_8).toArray());
+  }
+
   List<File> processConfigFiles() throws IOException {
 
     final List<File> processedConfigFileList = new ArrayList<>();
@@ -482,7 +1030,7 @@ public final class JcpPreprocessor {
     for (final File file : context.getConfigFiles()) {
       processedConfigFileList.add(file);
 
-      final String[] lines = readWholeTextFileIntoArray(file, StandardCharsets.UTF_8, null);
+      final String[] lines = readConfigFile(file);
 
       int readStringIndex = -1;
       for (final String curString : lines) {
@@ -556,5 +1104,127 @@ public final class JcpPreprocessor {
     private final int preprocessed;
     private final int copied;
     private final int excluded;
+    /**
+     * Number of unchanged files skipped in incremental mode.
+     *
+     * @since 7.0.6
+     */
+    private final int skipped;
+
+    public Statistics(final int preprocessed, final int copied, final int excluded) {
+      this(preprocessed, copied, excluded, 0);
+    }
+
+    public Statistics(final int preprocessed, final int copied, final int excluded,
+                      final int skipped) {
+      this.preprocessed = preprocessed;
+      this.copied = copied;
+      this.excluded = excluded;
+      this.skipped = skipped;
+    }
+  }
+
+  /**
+   * Session of watch mode, it keeps initial state of the context and manifest of the last successful
+   * preprocessing to process only files affected by changes.
+   */
+  final class WatchSession {
+    private final Map<String, Value> globalVariables;
+    private final Map<String, Object> sharedResources;
+    private final Set<File> pendingChanges = new HashSet<>();
+    private boolean allChanged;
+    private IncrementalManifest lastManifest;
+    private int cycles;
+
+    WatchSession() {
+      this.globalVariables = new HashMap<>(context.getGlobalVarTable());
+      this.sharedResources = new HashMap<>(context.getSharedResources());
+    }
+
+    private void restoreContext() {
+      context.getGlobalVarTable().clear();
+      context.getGlobalVarTable().putAll(this.globalVariables);
+      context.getSharedResources().clear();
+      context.getSharedResources().putAll(this.sharedResources);
+      context.getActivatedConfigFiles().clear();
+      context.clearPreprocessedResources();
+    }
+
+    /**
+     * Make the first full preprocessing.
+     *
+     * @return statistics of preprocessing, must not be null
+     * @throws IOException if any error during preprocessing
+     */
+    Statistics start() throws IOException {
+      final Statistics result = execute();
+      this.lastManifest = manifest;
+      context.setClearTarget(false);
+      return result;
+    }
+
+    /**
+     * Preprocess files affected by changes, changes are accumulated until successful preprocessing.
+     *
+     * @param changed changed files in watched folders, null if all files should be checked
+     * @return statistics of preprocessing, must not be null
+     * @throws IOException if any error during preprocessing
+     */
+    Statistics runCycle(final Set<File> changed) throws IOException {
+      if (changed == null) {
+        this.allChanged = true;
+      } else {
+        this.pendingChanges.addAll(changed);
+      }
+      final int changedNumber = this.pendingChanges.size();
+
+      final long start = System.nanoTime();
+      restoreContext();
+      nextManifest = this.lastManifest == null ? null : this.lastManifest.makeNext();
+      final Statistics result = execute(this.allChanged ? null : this.pendingChanges);
+      final long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+      this.lastManifest = manifest;
+      this.pendingChanges.clear();
+      this.allChanged = false;
+      this.cycles++;
+
+      context.logInfo(String.format(
+          "Watch cycle %d: %s changed files, preprocessed %d, copied %d, skipped %d, latency %d ms",
+          this.cycles, changed == null ? "unknown" : Integer.toString(changedNumber),
+          result.getPreprocessed(), result.getCopied(), result.getSkipped(), latency));
+      return result;
+    }
+  }
+
+  @Data
+  private static final class FoundFile {
+    private final File file;
+    private final String relativePath;
+    private final long size;
+  }
+
+  @Data
+  private static final class WorkerResult {
+    private final BufferedLogger logger;
+    private final VariableAccessRecord record;
+    private final List<PreprocessingState.ExcludeIfInfo> excludeIf;
+    private final Throwable error;
+
+    /**
+     * Print buffered log into context logger and rethrow error if it was thrown by worker.
+     */
+    void replay(final PreprocessorContext context) throws IOException {
+      this.logger.flushTo(context.getPreprocessorLogger());
+      if (this.error instanceof IOException) {
+        throw (IOException) this.error;
+      } else if (this.error instanceof RuntimeException) {
+        throw (RuntimeException) this.error;
+      } else if (this.error instanceof Error) {
+        throw (Error) this.error;
+      } else if (this.error != null) {
+        throw new IOException("Unexpected error during parallel preprocessing", this.error);
+      }
+    }
   }
 }
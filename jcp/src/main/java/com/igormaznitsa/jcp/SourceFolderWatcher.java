@@ -0,0 +1,213 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watcher of source folders, it registers folders recursively in a watch service and collects changed
+ * files. Events are collected until a quiet period without events to join changes made by one save.
+ *
+ * @since 7.0.6
+ */
+final class SourceFolderWatcher implements Closeable {
+
+  private static final long QUIET_PERIOD_MS = 100L;
+  private static final long MAX_COLLECT_TIME_MS = 2000L;
+
+  private final WatchService watchService;
+  private final Map<WatchKey, Path> keys = new HashMap<>();
+  private final Set<Path> treeFolders = new HashSet<>();
+  private final Set<Path> watchedFiles = new HashSet<>();
+  private final Path ignoredFolder;
+
+  /**
+   * Constructor.
+   *
+   * @param folders       folders to be watched recursively, must not be null
+   * @param files         single files to be watched, their parent folders are watched, must not be null
+   * @param ignoredFolder folder which changes are ignored (for instance target folder), can be null
+   * @throws IOException if the watch service can't be started
+   */
+  SourceFolderWatcher(final Collection<File> folders, final Collection<File> files,
+                      final File ignoredFolder) throws IOException {
+    this.watchService = FileSystems.getDefault().newWatchService();
+    this.ignoredFolder = ignoredFolder == null ? null : normalize(ignoredFolder.toPath());
+    try {
+      for (final File folder : folders) {
+        if (folder.isDirectory()) {
+          registerTree(normalize(folder.toPath()), null);
+        }
+      }
+      watchFiles(files);
+    } catch (IOException ex) {
+      this.watchService.close();
+      throw ex;
+    }
+  }
+
+  private static Path normalize(final Path path) {
+    return path.toAbsolutePath().normalize();
+  }
+
+  private boolean isIgnored(final Path path) {
+    return this.ignoredFolder != null && path.startsWith(this.ignoredFolder);
+  }
+
+  private void registerTree(final Path root, final Set<File> foundFiles) throws IOException {
+    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs)
+          throws IOException {
+        if (isIgnored(dir)) {
+          return FileVisitResult.SKIP_SUBTREE;
+        }
+        keys.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+        treeFolders.add(dir);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+        if (foundFiles != null && attrs.isRegularFile()) {
+          foundFiles.add(file.toFile());
+        }
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  /**
+   * Add single files to be watched, their parent folders are registered if not watched yet. It allows
+   * to watch files placed outside of source folders, for instance included files.
+   *
+   * @param files files to be watched, must not be null
+   * @throws IOException if a folder can't be registered
+   */
+  void watchFiles(final Collection<File> files) throws IOException {
+    final Set<Path> watchedFolders = getWatchedFolders();
+    for (final File file : files) {
+      final Path path = normalize(file.toPath());
+      if (isIgnored(path) || !this.watchedFiles.add(path)) {
+        continue;
+      }
+      final Path parent = path.getParent();
+      if (parent != null && Files.isDirectory(parent) && watchedFolders.add(parent)) {
+        this.keys.put(parent.register(this.watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY),
+            parent);
+      }
+    }
+  }
+
+  /**
+   * Get folders registered in the watch service.
+   *
+   * @return set of watched folders, must not be null
+   */
+  Set<Path> getWatchedFolders() {
+    return new HashSet<>(this.keys.values());
+  }
+
+  /**
+   * Wait for changes in watched folders.
+   *
+   * @return changed files, can be empty if changes are not interesting, null if some events were lost
+   * and all files should be checked
+   * @throws InterruptedException if the thread is interrupted during wait
+   * @throws IOException          if a new folder can't be registered
+   */
+  Set<File> awaitChanges() throws InterruptedException, IOException {
+    final Set<File> result = new HashSet<>();
+    boolean lost = processKey(this.watchService.take(), result);
+    final long deadline = System.currentTimeMillis() + MAX_COLLECT_TIME_MS;
+    while (System.currentTimeMillis() < deadline) {
+      final WatchKey key = this.watchService.poll(QUIET_PERIOD_MS, TimeUnit.MILLISECONDS);
+      if (key == null) {
+        break;
+      }
+      lost |= processKey(key, result);
+    }
+    return lost ? null : result;
+  }
+
+  private boolean processKey(final WatchKey key, final Set<File> changed) throws IOException {
+    final Path folder = this.keys.get(key);
+    boolean lost = false;
+    if (folder != null) {
+      final boolean tree = this.treeFolders.contains(folder);
+      final List<WatchEvent<?>> events = key.pollEvents();
+      for (final WatchEvent<?> event : events) {
+        if (event.kind() == OVERFLOW) {
+          lost = true;
+          continue;
+        }
+        final Path path = folder.resolve((Path) event.context());
+        if (isIgnored(path)) {
+          continue;
+        }
+        if (tree) {
+          changed.add(path.toFile());
+          if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+            registerTree(path, changed);
+          }
+        } else if (this.watchedFiles.contains(path)) {
+          changed.add(path.toFile());
+        }
+      }
+    }
+    if (!key.reset()) {
+      this.keys.remove(key);
+      this.treeFolders.remove(folder);
+    }
+    return lost;
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.keys.clear();
+    this.treeFolders.clear();
+    this.watchService.close();
+  }
+}
@@ -76,6 +76,8 @@ public class PreprocessTask extends Task implements PreprocessorLogger, SpecialV
   private boolean allowWhitespaces = false;
   private boolean preserveIndents = false;
   private boolean dontOverwriteSameContent = false;
+  private int threads = 1;
+  private boolean incremental = false;
   private Map<String, Value> antVariables = new HashMap<>();
 
   private void registerConfigFiles(final PreprocessorContext context) {
@@ -153,6 +155,8 @@ public class PreprocessTask extends Task implements PreprocessorLogger, SpecialV
     context.setPreserveIndents(this.isPreserveIndents());
     context.setKeepAttributes(this.isKeepAttributes());
     context.setUnknownVariableAsFalse(this.isUnknownVarAsFalse());
+    context.setThreads(this.getThreads());
+    context.setIncremental(this.isIncremental());
 
     if (this.getEol() != null) {
       context.setEol(StringEscapeUtils.unescapeJava(this.getEol()));
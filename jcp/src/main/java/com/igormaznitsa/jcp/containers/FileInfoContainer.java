@@ -31,17 +31,18 @@ import com.igormaznitsa.jcp.directives.AfterDirectiveProcessingBehaviour;
 import com.igormaznitsa.jcp.directives.DirectiveArgumentType;
 import com.igormaznitsa.jcp.exceptions.FilePositionInfo;
 import com.igormaznitsa.jcp.exceptions.PreprocessorException;
+import com.igormaznitsa.jcp.utils.LineClassifier;
+import com.igormaznitsa.jcp.utils.LineClassifier.LineType;
 import com.igormaznitsa.jcp.utils.PreprocessorUtils;
 import com.igormaznitsa.jcp.utils.ResetablePrinter;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
 /**
  * The class is one from the main classes in the preprocessor because it describes a preprocessing file and contains business logic for the process
@@ -53,12 +54,6 @@ public class FileInfoContainer {
 
   public static final String WARNING_SPACE_BEFORE_HASH =
       "Detected hash prefixed comment line with whitespace, directive may be lost: ";
-  private static final Pattern DIRECTIVE_HASH_PREFIXED = Pattern.compile("^\\s*//\\s*#(.*)$");
-  private static final Pattern DIRECTIVE_TWO_DOLLARS_PREFIXED =
-      Pattern.compile("^\\s*//\\s*\\$\\$(.*)$");
-  private static final Pattern DIRECTIVE_SINGLE_DOLLAR_PREFIXED =
-      Pattern.compile("^\\s*//\\s*\\$(.*)$");
-  private static final Pattern DIRECTIVE_TAIL_REMOVER = Pattern.compile("\\/\\*\\s*-\\s*\\*\\/");
   /**
    * The source file for the container
    */
@@ -69,13 +64,34 @@ public class FileInfoContainer {
    */
   private final boolean copyOnly;
   /**
-   * Collection of files generated with the file.
+   * Collection of files generated with the file, it can be filled by parallel workers.
    */
-  private final Collection<File> generatedResources = new HashSet<>();
+  private final Collection<File> generatedResources = ConcurrentHashMap.newKeySet();
   /**
-   * Collection of files which took part during preprocessing of the file
+   * Collection of files which took part during preprocessing of the file, it can be filled by parallel workers.
    */
-  private final Collection<File> includedSources = new HashSet<>();
+  private final Collection<File> includedSources = ConcurrentHashMap.newKeySet();
+  /**
+   * Normalized names of global variables read during preprocessing of the file, it can be filled by parallel workers.
+   *
+   * @since 7.0.6
+   */
+  private final Set<String> readGlobalVariables = ConcurrentHashMap.newKeySet();
+  /**
+   * Result of the scan for preprocessor markers, null if the file has not been scanned yet.
+   *
+   * @since 7.0.6
+   */
+  @EqualsAndHashCode.Exclude
+  private Boolean markerFree;
+  /**
+   * Content of the source file read during the scan for markers, it is used instead of reading the file
+   * again and released after use.
+   *
+   * @since 7.0.6
+   */
+  @EqualsAndHashCode.Exclude
+  private byte[] sourceContent;
   /**
    * The flag shows that the file has been excluded from preprocessing and it will not be preprocessed and copied
    */
@@ -113,19 +129,8 @@ public class FileInfoContainer {
   }
 
   private static String findTailRemover(final String str, final PreprocessorContext context) {
-    String result = str;
-    if (context.isAllowWhitespaces()) {
-      final Matcher matcher = DIRECTIVE_TAIL_REMOVER.matcher(str);
-      if (matcher.find()) {
-        result = str.substring(0, matcher.start());
-      }
-    } else {
-      final int tailRemoverStart = str.indexOf("/*-*/");
-      if (tailRemoverStart >= 0) {
-        result = str.substring(0, tailRemoverStart);
-      }
-    }
-    return result;
+    final int tailRemoverStart = LineClassifier.findTailRemover(str, context.isAllowWhitespaces());
+    return tailRemoverStart < 0 ? str : str.substring(0, tailRemoverStart);
   }
 
   public void setTargetFolder(final String targetFolder) {
@@ -190,8 +195,9 @@ public class FileInfoContainer {
           leftTrimmedString = PreprocessorUtils.leftTrim(nonTrimmedProcessingString);
 
           if (isHashPrefixed(leftTrimmedString, context)) {
-            switch (processDirective(preprocessingState,
-                extractHashPrefixedDirective(leftTrimmedString, context), context, true)) {
+            switch (processDirective(preprocessingState, LineClassifier
+                    .extractTail(leftTrimmedString, LineType.DIRECTIVE, context.isAllowWhitespaces()),
+                context, true)) {
               case PROCESSED:
               case READ_NEXT_LINE:
               case SHOULD_BE_COMMENTED:
@@ -225,100 +231,32 @@ public class FileInfoContainer {
     }
   }
 
-  private boolean isDoubleDollarPrefixed(final String line, final PreprocessorContext context) {
-    if (context.isAllowWhitespaces()) {
-      return DIRECTIVE_TWO_DOLLARS_PREFIXED.matcher(line).matches();
-    } else {
-      return line.startsWith("//$$");
-    }
-  }
-
-  private boolean isSingleDollarPrefixed(final String line, final PreprocessorContext context) {
-    if (context.isAllowWhitespaces()) {
-      return DIRECTIVE_SINGLE_DOLLAR_PREFIXED.matcher(line).matches();
-    } else {
-      return line.startsWith("//$");
-    }
-  }
-
   private boolean isHashPrefixed(final String line, final PreprocessorContext context) {
-    if (context.isAllowWhitespaces()) {
-      return DIRECTIVE_HASH_PREFIXED.matcher(line).matches();
-    } else {
-      final boolean result = line.startsWith(AbstractDirectiveHandler.DIRECTIVE_PREFIX);
-
-      if (context.getPreprocessingState().isGlobalPhase() && !result && line.startsWith("// ") &&
-          DIRECTIVE_HASH_PREFIXED.matcher(line).matches()) {
-        final TextFileDataContainer textContainer =
-            context.getPreprocessingState().getCurrentIncludeFileContainer();
-        String lineInfo = "<NONE>";
-        if (textContainer != null) {
-          lineInfo = String.format("%s:%d)", textContainer.getFile().getAbsolutePath(),
-              textContainer.getNextStringIndex());
-        }
-        context.logWarning(WARNING_SPACE_BEFORE_HASH + lineInfo);
-      }
-
-      return result;
-    }
-  }
-
-
-  private String extractHashPrefixedDirective(final String line,
-                                              final PreprocessorContext context) {
-    if (context.isAllowWhitespaces()) {
-      final Matcher matcher = DIRECTIVE_HASH_PREFIXED.matcher(line);
-      if (matcher.find()) {
-        return matcher.group(1);
-      } else {
-        throw new Error(
-            "Unexpected situation, directive is not found, contact developer! (" + line + ')');
-      }
-    } else {
-      return PreprocessorUtils.extractTail(AbstractDirectiveHandler.DIRECTIVE_PREFIX, line);
-    }
+    return isHashPrefixed(line, LineClassifier.classify(line, context.isAllowWhitespaces()),
+        context);
   }
 
-
-  private String extractDoubleDollarPrefixedDirective(final String line,
-                                                      final PreprocessorContext context) {
-    String tail;
-    if (context.isAllowWhitespaces()) {
-      final Matcher matcher = DIRECTIVE_TWO_DOLLARS_PREFIXED.matcher(line);
-      if (matcher.find()) {
-        tail = matcher.group(1);
-      } else {
-        throw new Error(
-            "Unexpected situation, '//$$' directive is not found, contact developer! (" + line +
-                ')');
+  private boolean isHashPrefixed(final String line, final LineType lineType,
+                                 final PreprocessorContext context) {
+    final boolean result = lineType == LineType.DIRECTIVE;
+    if (!result && !context.isAllowWhitespaces() &&
+        context.getPreprocessingState().isGlobalPhase() &&
+        LineClassifier.isHashPrefixedWithWhitespaces(line)) {
+      final TextFileDataContainer textContainer =
+          context.getPreprocessingState().getCurrentIncludeFileContainer();
+      String lineInfo = "<NONE>";
+      if (textContainer != null) {
+        lineInfo = String.format("%s:%d)", textContainer.getFile().getAbsolutePath(),
+            textContainer.getNextStringIndex());
       }
-    } else {
-      tail = PreprocessorUtils.extractTail("//$$", line);
+      context.logWarning(WARNING_SPACE_BEFORE_HASH + lineInfo);
     }
-
-    if (context.isPreserveIndents()) {
-      tail = PreprocessorUtils.replacePartByChar(line, ' ', 0, line.length() - tail.length());
-    }
-    return tail;
+    return result;
   }
 
-
-  private String extractSingleDollarPrefixedDirective(final String line,
-                                                      final PreprocessorContext context) {
-    String tail;
-    if (context.isAllowWhitespaces()) {
-      final Matcher matcher = DIRECTIVE_SINGLE_DOLLAR_PREFIXED.matcher(line);
-      if (matcher.find()) {
-        tail = matcher.group(1);
-      } else {
-        throw new Error(
-            "Unexpected situation, '//$' directive is not found, contact developer! (" + line +
-                ')');
-      }
-    } else {
-      tail = PreprocessorUtils.extractTail("//$", line);
-    }
-
+  private String extractDollarPrefixedText(final String line, final LineType lineType,
+                                           final PreprocessorContext context) {
+    String tail = LineClassifier.extractTail(line, lineType, context.isAllowWhitespaces());
     if (context.isPreserveIndents()) {
       tail = PreprocessorUtils.replacePartByChar(line, ' ', 0, line.length() - tail.length());
     }
@@ -401,9 +339,12 @@ public class FileInfoContainer {
 
         final boolean doPrintLn = presentedNextLine || !context.isCareForLastEol();
 
-        if (isHashPrefixed(stringToBeProcessed, context)) {
-          final String extractedDirective =
-              extractHashPrefixedDirective(stringToBeProcessed, context);
+        final LineType lineType =
+            LineClassifier.classify(leftTrimmedString, context.isAllowWhitespaces());
+
+        if (isHashPrefixed(stringToBeProcessed, lineType, context)) {
+          final String extractedDirective = LineClassifier
+              .extractTail(stringToBeProcessed, LineType.DIRECTIVE, context.isAllowWhitespaces());
           switch (processDirective(preprocessingState, extractedDirective, context, false)) {
             case PROCESSED:
             case READ_NEXT_LINE: {
@@ -443,26 +384,33 @@ public class FileInfoContainer {
         if (preprocessingState.isDirectiveCanBeProcessed() &&
             !preprocessingState.getPreprocessingFlags()
                 .contains(PreprocessingFlag.TEXT_OUTPUT_DISABLED)) {
-          final boolean startsWithTwoDollars = isDoubleDollarPrefixed(leftTrimmedString, context);
+          final boolean startsWithTwoDollars = lineType == LineType.TWO_DOLLARS;
 
-          if (!startsWithTwoDollars) {
+          LineType processedLineType = lineType;
+          if (!startsWithTwoDollars &&
+              LineClassifier.hasMacros(leftTrimmedString, context.isAllowWhitespaces())) {
             stringToBeProcessed = PreprocessorUtils.processMacroses(leftTrimmedString, context);
+            processedLineType =
+                LineClassifier.classify(stringToBeProcessed, context.isAllowWhitespaces());
           }
 
           if (startsWithTwoDollars) {
             // Output the tail of the string to the output stream without comments and macroses
             thePrinter.print(stringPrefix);
-            final String text = extractDoubleDollarPrefixedDirective(leftTrimmedString, context);
+            final String text =
+                extractDollarPrefixedText(leftTrimmedString, LineType.TWO_DOLLARS, context);
             if (doPrintLn) {
               thePrinter.println(text, context.getEol());
             } else {
               thePrinter.print(text);
             }
-          } else if (isSingleDollarPrefixed(stringToBeProcessed, context)) {
+          } else if (processedLineType == LineType.SINGLE_DOLLAR ||
+              processedLineType == LineType.TWO_DOLLARS) {
             // Output the tail of the string to the output stream without comments
             thePrinter.print(stringPrefix);
 
-            final String text = extractSingleDollarPrefixedDirective(stringToBeProcessed, context);
+            final String text =
+                extractDollarPrefixedText(stringToBeProcessed, LineType.SINGLE_DOLLAR, context);
 
             if (doPrintLn) {
               thePrinter.println(text, context.getEol());
@@ -586,33 +534,33 @@ public class FileInfoContainer {
       throws IOException {
     final boolean executionEnabled = state.isDirectiveCanBeProcessed();
 
-    for (final AbstractDirectiveHandler handler : AbstractDirectiveHandler.getAllDirectives()) {
-      final String name = handler.getName();
-      if (directiveString.startsWith(name)) {
-        if ((firstPass && !handler.isGlobalPhaseAllowed()) ||
-            (!firstPass && !handler.isPreprocessingPhaseAllowed())) {
-          return AfterDirectiveProcessingBehaviour.READ_NEXT_LINE;
-        }
+    final AbstractDirectiveHandler handler =
+        AbstractDirectiveHandler.findForDirective(directiveString);
+    if (handler == null) {
+      throw context.makeException("Unknown preprocessor directive [" + directiveString + ']', null);
+    }
 
-        final boolean allowedForExecution =
-            executionEnabled || !handler.executeOnlyWhenExecutionAllowed();
+    if ((firstPass && !handler.isGlobalPhaseAllowed()) ||
+        (!firstPass && !handler.isPreprocessingPhaseAllowed())) {
+      return AfterDirectiveProcessingBehaviour.READ_NEXT_LINE;
+    }
 
-        final String restOfString = PreprocessorUtils.extractTail(name, directiveString);
-        if (checkDirectiveArgumentRoughly(handler, restOfString)) {
-          if (allowedForExecution) {
-            return handler.execute(restOfString, context);
-          } else {
-            return context.isKeepLines() ? AfterDirectiveProcessingBehaviour.SHOULD_BE_COMMENTED :
-                AfterDirectiveProcessingBehaviour.PROCESSED;
-          }
-        } else {
-          throw context.makeException(
-              "Detected bad argument for " + AbstractDirectiveHandler.DIRECTIVE_PREFIX +
-                  handler.getName(), null);
-        }
+    final boolean allowedForExecution =
+        executionEnabled || !handler.executeOnlyWhenExecutionAllowed();
+
+    final String restOfString = PreprocessorUtils.extractTail(handler.getName(), directiveString);
+    if (checkDirectiveArgumentRoughly(handler, restOfString)) {
+      if (allowedForExecution) {
+        return handler.execute(restOfString, context);
+      } else {
+        return context.isKeepLines() ? AfterDirectiveProcessingBehaviour.SHOULD_BE_COMMENTED :
+            AfterDirectiveProcessingBehaviour.PROCESSED;
       }
+    } else {
+      throw context.makeException(
+          "Detected bad argument for " + AbstractDirectiveHandler.DIRECTIVE_PREFIX +
+              handler.getName(), null);
     }
-    throw context.makeException("Unknown preprocessor directive [" + directiveString + ']', null);
   }
 
   public void setExcluded(final boolean flag) {
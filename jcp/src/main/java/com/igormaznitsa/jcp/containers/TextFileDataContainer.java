@@ -21,6 +21,7 @@
 
 package com.igormaznitsa.jcp.containers;
 
+import com.igormaznitsa.jcp.utils.TextLineIndex;
 import java.io.File;
 import java.util.Objects;
 
@@ -31,8 +32,7 @@ import java.util.Objects;
  */
 public final class TextFileDataContainer {
 
-  private final String[] text;
-  private final boolean fileEndedByNextLine;
+  private final TextLineIndex text;
   private final File file;
 
   /**
@@ -42,17 +42,30 @@ public final class TextFileDataContainer {
   private int nextStringIndex;
 
   public TextFileDataContainer(final TextFileDataContainer item, final int stringIndex) {
-    this(item.file, item.text, item.fileEndedByNextLine, stringIndex);
+    this(item.file, item.text, stringIndex);
   }
 
   public TextFileDataContainer(final File currentFile, final String[] text,
                                final boolean fileEndedByNextLine, final int stringIndex) {
+    this(currentFile, TextLineIndex.of(Objects.requireNonNull(text, "Text is null"),
+        fileEndedByNextLine), stringIndex);
+  }
+
+  /**
+   * Constructor for text which lines are provided by index.
+   *
+   * @param currentFile the source file, must not be null
+   * @param text        lines of the file, must not be null
+   * @param stringIndex index of the next line to be read
+   * @since 7.0.6
+   */
+  public TextFileDataContainer(final File currentFile, final TextLineIndex text,
+                               final int stringIndex) {
     Objects.requireNonNull(currentFile, "File is null");
     Objects.requireNonNull(text, "Text is null");
     this.file = currentFile;
     this.text = text;
     setNextStringIndex(stringIndex);
-    this.fileEndedByNextLine = fileEndedByNextLine;
   }
 
   public void disableAutoFlush() {
@@ -65,7 +78,7 @@ public final class TextFileDataContainer {
 
 
   public String[] getText() {
-    return this.text.clone();
+    return this.text.toArray();
   }
 
 
@@ -78,15 +91,15 @@ public final class TextFileDataContainer {
   }
 
   public boolean isPresentedNextLineOnReadString() {
-    return this.nextStringIndex < this.text.length || fileEndedByNextLine;
+    return this.nextStringIndex < this.text.size() || this.text.isEndedByNextLine();
   }
 
 
   public String nextLine() {
-    if (this.nextStringIndex >= this.text.length) {
+    if (this.nextStringIndex >= this.text.size()) {
       return null;
     } else {
-      return this.text[this.nextStringIndex++];
+      return this.text.getLine(this.nextStringIndex++);
     }
   }
 
@@ -99,7 +112,7 @@ public final class TextFileDataContainer {
   }
 
   public void setNextStringIndex(final int index) {
-    if (index < 0 || index >= text.length) {
+    if (index < 0 || index >= this.text.size()) {
       throw new IndexOutOfBoundsException("String index out of bound [" + index + ']');
     }
     this.nextStringIndex = index;
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.context;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * Bounded thread-safe cache of data parsed from files, it can be shared between preprocessor contexts,
+ * for instance between all modules of a build. Entry is found by kind of data and canonical path of
+ * file, it is valid while length and modification time of the file are the same. If they are changed
+ * then hash of the file content is compared and the data is parsed again only for changed content.
+ * Cached data must not be changed by users. The cache also keeps line indexes of included files which
+ * are used by all contexts sharing the cache.
+ *
+ * @since 7.0.6
+ */
+public final class FileDataCache {
+
+  /**
+   * Default max number of cached entries.
+   */
+  public static final int DEFAULT_MAX_ENTRIES = 512;
+
+  private final Map<String, CachedData> cache;
+  private final IncludeFileCache includeFileCache =
+      new IncludeFileCache(IncludeFileCache.DEFAULT_MAX_MEMORY);
+
+  public FileDataCache() {
+    this(DEFAULT_MAX_ENTRIES);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param maxEntries max number of cached entries, the least recently used ones are removed
+   */
+  public FileDataCache(final int maxEntries) {
+    this.cache = new LinkedHashMap<String, CachedData>(64, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, CachedData> eldest) {
+        return this.size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * Get data of file from cache or parse it.
+   *
+   * @param kind   kind of data, allows to keep different data for the same file, must not be null
+   * @param file   file to be read, must not be null
+   * @param type   type of data, must not be null
+   * @param parser parser to make data from file content, must not be null
+   * @param <T>    type of data
+   * @return data of the file, must not be null
+   * @throws IOException if the file can't be read or parsed
+   */
+  public <T> T find(final String kind, final File file, final Class<T> type,
+                    final Parser<T> parser) throws IOException {
+    final String key = kind + ':' + file.getCanonicalPath();
+    // attributes are read before content so that changes during reading make entry invalid
+    final BasicFileAttributes attributes =
+        Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+
+    CachedData cached;
+    synchronized (this.cache) {
+      cached = this.cache.get(key);
+    }
+    if (cached != null && cached.isValid(attributes)) {
+      return type.cast(cached.data);
+    }
+
+    final byte[] content = Files.readAllBytes(file.toPath());
+    final String hash = DigestUtils.sha256Hex(content);
+    final Object data =
+        cached != null && cached.hash.equals(hash) ? cached.data : parser.parse(content);
+    cached = new CachedData(data, hash, attributes);
+    synchronized (this.cache) {
+      this.cache.put(key, cached);
+    }
+    return type.cast(data);
+  }
+
+  IncludeFileCache getIncludeFileCache() {
+    return this.includeFileCache;
+  }
+
+  /**
+   * Get number of cached entries.
+   *
+   * @return number of entries
+   */
+  public int size() {
+    synchronized (this.cache) {
+      return this.cache.size();
+    }
+  }
+
+  /**
+   * Remove all cached entries including cached included files.
+   */
+  public void clear() {
+    synchronized (this.cache) {
+      this.cache.clear();
+    }
+    this.includeFileCache.clear();
+  }
+
+  /**
+   * Parser of file content.
+   *
+   * @param <T> type of parsed data
+   */
+  @FunctionalInterface
+  public interface Parser<T> {
+    /**
+     * Parse file content.
+     *
+     * @param content whole content of file, must not be null
+     * @return parsed data, must not be null
+     * @throws IOException if the content can't be parsed
+     */
+    T parse(byte[] content) throws IOException;
+  }
+
+  private static final class CachedData {
+    private final Object data;
+    private final String hash;
+    private final FileTime modified;
+    private final long length;
+
+    private CachedData(final Object data, final String hash,
+                       final BasicFileAttributes attributes) {
+      this.data = data;
+      this.hash = hash;
+      this.modified = attributes.lastModifiedTime();
+      this.length = attributes.size();
+    }
+
+    private boolean isValid(final BasicFileAttributes attributes) {
+      return this.length == attributes.size() && this.modified.equals(attributes.lastModifiedTime());
+    }
+  }
+}
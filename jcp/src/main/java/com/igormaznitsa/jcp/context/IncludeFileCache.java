@@ -0,0 +1,173 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.context;
+
+import com.igormaznitsa.jcp.utils.TextLineIndex;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded thread-safe cache of decoded and line indexed included files with LRU eviction. Cached
+ * indexes are read only so they are shared by text containers of all processed files and threads.
+ * Entry is found by canonical path and charset of file, it is valid while modification time and length
+ * of the file are the same. Memory of an entry is estimated again on every hit because line strings are
+ * made on request during use of the entry.
+ *
+ * @since 7.0.6
+ */
+final class IncludeFileCache {
+
+  /**
+   * Default max number of bytes occupied by cached content.
+   */
+  static final long DEFAULT_MAX_MEMORY = 32L * 1024L * 1024L;
+
+  private final long maxMemory;
+  private final Map<String, CachedText> cache = new LinkedHashMap<>(64, 0.75f, true);
+  private long usedMemory;
+
+  IncludeFileCache(final long maxMemory) {
+    this.maxMemory = maxMemory;
+  }
+
+  private static String makeKey(final File file, final Charset charset) throws IOException {
+    return charset.name() + ':' + file.getCanonicalPath();
+  }
+
+  /**
+   * Get line index of file from cache or read it.
+   *
+   * @param file    file to be read, must not be null
+   * @param charset charset of the file, must not be null
+   * @return line index of the file content, must not be null
+   * @throws IOException if the file can't be read
+   */
+  TextLineIndex read(final File file, final Charset charset) throws IOException {
+    final String key = makeKey(file, charset);
+    final BasicFileAttributes attributes = readAttributes(file);
+
+    if (attributes != null) {
+      final CachedText cached;
+      synchronized (this.cache) {
+        cached = this.cache.get(key);
+      }
+      if (cached != null && cached.isValid(attributes)) {
+        updateMemory(key, cached);
+        return cached.text;
+      }
+    }
+
+    final TextLineIndex result = TextLineIndex.read(file, charset);
+    // file could be changed during reading so its attributes are checked again
+    final CachedText entry = attributes == null ? null : new CachedText(result, attributes);
+    if (entry != null && entry.isValid(readAttributes(file))) {
+      put(key, entry);
+    }
+    return result;
+  }
+
+  private static BasicFileAttributes readAttributes(final File file) {
+    try {
+      return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+    } catch (IOException ex) {
+      return null;
+    }
+  }
+
+  private void put(final String key, final CachedText entry) {
+    if (entry.memory > this.maxMemory) {
+      return;
+    }
+    synchronized (this.cache) {
+      final CachedText previous = this.cache.put(key, entry);
+      if (previous != null) {
+        this.usedMemory -= previous.memory;
+      }
+      this.usedMemory += entry.memory;
+      evict();
+    }
+  }
+
+  private void updateMemory(final String key, final CachedText entry) {
+    final long memory = entry.text.estimateMemorySize();
+    synchronized (this.cache) {
+      if (memory != entry.memory && this.cache.get(key) == entry) {
+        this.usedMemory += memory - entry.memory;
+        entry.memory = memory;
+        evict();
+      }
+    }
+  }
+
+  private void evict() {
+    final Iterator<CachedText> iterator = this.cache.values().iterator();
+    while (this.usedMemory > this.maxMemory && iterator.hasNext()) {
+      this.usedMemory -= iterator.next().memory;
+      iterator.remove();
+    }
+  }
+
+  int size() {
+    synchronized (this.cache) {
+      return this.cache.size();
+    }
+  }
+
+  long getUsedMemory() {
+    synchronized (this.cache) {
+      return this.usedMemory;
+    }
+  }
+
+  void clear() {
+    synchronized (this.cache) {
+      this.cache.clear();
+      this.usedMemory = 0L;
+    }
+  }
+
+  private static final class CachedText {
+    private final TextLineIndex text;
+    private final FileTime modified;
+    private final long length;
+    private long memory;
+
+    private CachedText(final TextLineIndex text, final BasicFileAttributes attributes) {
+      this.text = text;
+      this.modified = attributes.lastModifiedTime();
+      this.length = attributes.size();
+      this.memory = text.estimateMemorySize();
+    }
+
+    private boolean isValid(final BasicFileAttributes attributes) {
+      return attributes != null && this.length == attributes.size() &&
+          this.modified.equals(attributes.lastModifiedTime());
+    }
+  }
+}
@@ -0,0 +1,936 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.context;
+
+import com.igormaznitsa.jcp.InfoHelper;
+import com.igormaznitsa.jcp.containers.FileInfoContainer;
+import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.jcp.expression.ValueType;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import lombok.Data;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FilenameUtils;
+
+/**
+ * Manifest of incremental preprocessing. It is saved in the target folder and keeps for every source file
+ * state of the file and of files used during its preprocessing, fingerprint of global variables, results of
+ * the global phase and produced files. Files with unchanged inputs are skipped during next preprocessing
+ * without reading, whole preprocessing is skipped if global variables and all files are unchanged.
+ *
+ * @since 7.0.6
+ */
+public final class IncrementalManifest {
+
+  /**
+   * Name of the manifest file in the target folder.
+   */
+  public static final String FILE_NAME = ".jcp-manifest";
+
+  private static final int FORMAT_MARKER = 0x4A435003;
+  private static final String COPY_FINGERPRINT = "<copy>";
+
+  private final PreprocessorContext context;
+  private final String optionsFingerprint;
+  private final String startFingerprint;
+  private final String previousStartFingerprint;
+  private final String previousSpecialFingerprint;
+  private final Map<String, FileRecord> previousRecords;
+  private final Map<String, FileRecord> records = new HashMap<>();
+  private final Map<String, FileState> currentStates = new HashMap<>();
+  private List<String> watchedFolders = Collections.emptyList();
+  private Set<String> changedPaths;
+
+  private IncrementalManifest(final PreprocessorContext context,
+                              final String optionsFingerprint,
+                              final String previousStartFingerprint,
+                              final String previousSpecialFingerprint,
+                              final Map<String, FileRecord> previousRecords) {
+    this.context = context;
+    this.optionsFingerprint = optionsFingerprint;
+    this.startFingerprint = makeFingerprint(context.getGlobalVarTable(), null);
+    this.previousStartFingerprint = previousStartFingerprint;
+    this.previousSpecialFingerprint = previousSpecialFingerprint;
+    this.previousRecords = previousRecords;
+  }
+
+  /**
+   * Make empty manifest, all files will be processed.
+   *
+   * @param context preprocessor context, must not be null
+   * @return empty manifest, must not be null
+   */
+  public static IncrementalManifest makeEmpty(final PreprocessorContext context) {
+    return new IncrementalManifest(context, makeOptionsFingerprint(context), null, null,
+        Collections.emptyMap());
+  }
+
+  /**
+   * Load manifest from file, the file is removed after reading and should be saved again after successful
+   * preprocessing. If the file can't be read or it was made for other preprocessing options then empty
+   * manifest is returned. Global variables of the context must be already defined by configuration files.
+   *
+   * @param file    manifest file, must not be null
+   * @param context preprocessor context, must not be null
+   * @return loaded manifest, must not be null
+   */
+  public static IncrementalManifest load(final File file, final PreprocessorContext context) {
+    final String options = makeOptionsFingerprint(context);
+    String start = null;
+    String special = null;
+    Map<String, FileRecord> loaded = Collections.emptyMap();
+    if (file.isFile()) {
+      try (final DataInputStream in = new DataInputStream(
+          new BufferedInputStream(new FileInputStream(file)))) {
+        if (in.readInt() == FORMAT_MARKER && options.equals(readString(in))) {
+          start = readString(in);
+          special = readString(in);
+          loaded = readRecords(in);
+          context.logDebug("Loaded incremental manifest, records: " + loaded.size());
+        } else {
+          context.logInfo("Incremental manifest made for other options, all files to be processed");
+        }
+      } catch (IOException ex) {
+        context.logWarning("Can't read incremental manifest: " + ex.getMessage());
+        start = null;
+        loaded = Collections.emptyMap();
+      }
+      if (!file.delete()) {
+        context.logWarning("Can't delete incremental manifest: " + file);
+      }
+    }
+    return new IncrementalManifest(context, options, start, special, loaded);
+  }
+
+  /**
+   * Make manifest for next preprocessing in the same session, records of the manifest become previous
+   * records. Whole preprocessing can't be skipped with the manifest.
+   *
+   * @return manifest for next preprocessing, must not be null
+   * @since 7.0.6
+   */
+  public IncrementalManifest makeNext() {
+    return new IncrementalManifest(this.context, this.optionsFingerprint, null, null,
+        new HashMap<>(this.records));
+  }
+
+  /**
+   * Provide changes detected by a file watcher or a build tool. Files placed in the folders are
+   * recognized as unchanged without check if they are not in the list of changed files.
+   *
+   * @param folders      folders where all changes are known, must not be null
+   * @param changedFiles changed, added and removed files in the folders, must not be null
+   * @since 7.0.6
+   */
+  public void setKnownChanges(final Collection<File> folders, final Collection<File> changedFiles) {
+    this.watchedFolders = folders.stream()
+        .map(x -> normalize(x.getAbsolutePath()) + File.separatorChar)
+        .collect(Collectors.toList());
+    this.changedPaths = changedFiles.stream()
+        .map(x -> normalize(x.getAbsolutePath()))
+        .collect(Collectors.toSet());
+  }
+
+  /**
+   * Find files produced from a source file during the previous preprocessing.
+   *
+   * @param sourceFile source file, must not be null
+   * @return list of produced files, empty if the file is unknown, must not be null
+   * @since 7.0.6
+   */
+  public List<File> findPreviousOutputs(final File sourceFile) {
+    final FileRecord previous = this.previousRecords.get(sourceFile.getAbsolutePath());
+    if (previous == null || previous.getPreprocessing() == null) {
+      return Collections.emptyList();
+    }
+    return previous.getPreprocessing().getOutputs().stream()
+        .map(File::new)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Check that records of the previous preprocessing made with the same options have been loaded.
+   *
+   * @return true if records of the previous preprocessing are known, false otherwise
+   * @since 7.0.6
+   */
+  public boolean hasPreviousRecords() {
+    return !this.previousRecords.isEmpty();
+  }
+
+  /**
+   * Find files produced by the previous preprocessing which are neither produced nor restored during current
+   * preprocessing, for instance results of removed source files or results written under another name.
+   *
+   * @return list of outdated files, must not be null
+   * @since 7.0.6
+   */
+  public List<File> findOutdatedOutputs() {
+    final Set<String> current = this.records.values().stream()
+        .filter(x -> x.getPreprocessing() != null)
+        .flatMap(x -> x.getPreprocessing().getOutputs().stream())
+        .collect(Collectors.toSet());
+    return this.previousRecords.values().stream()
+        .filter(x -> x.getPreprocessing() != null)
+        .flatMap(x -> x.getPreprocessing().getOutputs().stream())
+        .filter(x -> !current.contains(x))
+        .distinct()
+        .sorted()
+        .map(File::new)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Save records registered or restored during current preprocessing.
+   *
+   * @param file target file, must not be null
+   * @throws IOException if any error during write
+   */
+  public void save(final File file) throws IOException {
+    final File folder = file.getParentFile();
+    if (folder != null && !folder.mkdirs() && !folder.isDirectory()) {
+      throw new IOException("Can't make directory: " + folder);
+    }
+    try (final DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file)))) {
+      out.writeInt(FORMAT_MARKER);
+      writeString(out, this.optionsFingerprint);
+      writeString(out, this.startFingerprint);
+      writeString(out, makeSpecialFingerprint(this.records.values()));
+      final Map<String, FileRecord> sorted = new TreeMap<>(this.records);
+      out.writeInt(sorted.size());
+      for (final FileRecord record : sorted.values()) {
+        record.write(out);
+      }
+    }
+  }
+
+  /**
+   * Make fingerprint of variables.
+   *
+   * @param variables table of variables, must not be null
+   * @param names     names of variables to be included, if null then all variables from table
+   * @return fingerprint as hex string, must not be null
+   */
+  public static String makeFingerprint(final Map<String, Value> variables,
+                                       final Collection<String> names) {
+    final StringBuilder buffer = new StringBuilder();
+    for (final String name : new TreeSet<>(names == null ? variables.keySet() : names)) {
+      final Value value = variables.get(name);
+      buffer.append(name).append('=');
+      if (value == null) {
+        buffer.append('-');
+      } else {
+        buffer.append(value.getType()).append(':').append(value);
+      }
+      buffer.append('\n');
+    }
+    return DigestUtils.sha256Hex(buffer.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Make fingerprint of variables read by a file, values of special variables are taken from their
+   * processors because they are not in the table of global variables.
+   */
+  private String makeReadFingerprint(final Map<String, Value> globals,
+                                     final Collection<String> names) {
+    final Map<String, Value> values = new HashMap<>();
+    for (final String name : names) {
+      final Value special = this.context.findSpecialVariableValue(name);
+      values.put(name, special == null ? globals.get(name) : special);
+    }
+    return makeFingerprint(values, names);
+  }
+
+  /**
+   * Make fingerprint of special variables read by recorded files.
+   */
+  private String makeSpecialFingerprint(final Collection<FileRecord> fileRecords) {
+    final Set<String> names = new TreeSet<>();
+    for (final FileRecord record : fileRecords) {
+      if (record.getGlobalPhase() != null) {
+        names.addAll(record.getGlobalPhase().getReadVariables());
+      }
+      if (record.getPreprocessing() != null) {
+        names.addAll(record.getPreprocessing().getReadVariables());
+      }
+    }
+    return makeReadFingerprint(Collections.emptyMap(), names);
+  }
+
+  private static String makeOptionsFingerprint(final PreprocessorContext context) {
+    final String text = String.join("\n",
+        InfoHelper.getVersion(),
+        context.getEol(),
+        Boolean.toString(context.isKeepComments()),
+        Boolean.toString(context.isKeepLines()),
+        Boolean.toString(context.isCareForLastEol()),
+        Boolean.toString(context.isPreserveIndents()),
+        Boolean.toString(context.isAllowWhitespaces()),
+        Boolean.toString(context.isUnknownVariableAsFalse()),
+        Boolean.toString(context.isKeepAttributes()),
+        context.getSourceEncoding().name(),
+        context.getTargetEncoding().name(),
+        new TreeSet<>(context.getExtensions()).toString(),
+        new TreeSet<>(context.getExcludeExtensions()).toString(),
+        context.getTarget().getAbsolutePath(),
+        context.getPreprocessorExtension() == null ? "-" :
+            context.getPreprocessorExtension().getClass().getName());
+    return DigestUtils.sha256Hex(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String keyOf(final FileInfoContainer fileRef) {
+    return fileRef.getSourceFile().getAbsolutePath();
+  }
+
+  private FileState findCurrentState(final File file) throws IOException {
+    final String path = file.getAbsolutePath();
+    FileState result = this.currentStates.get(path);
+    if (result == null) {
+      final BasicFileAttributes attributes =
+          Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+      final String hash;
+      try (final InputStream in = new FileInputStream(file)) {
+        hash = DigestUtils.sha256Hex(in);
+      }
+      result = new FileState(path, attributes.size(), attributes.lastModifiedTime().toMillis(),
+          hash);
+      this.currentStates.put(path, result);
+    }
+    return result;
+  }
+
+  private static String normalize(final String path) {
+    return FilenameUtils.normalizeNoEndSeparator(path);
+  }
+
+  private boolean isWatchedAndUnchanged(final String path) {
+    if (this.changedPaths == null) {
+      return false;
+    }
+    final String normalized = normalize(path);
+    return normalized != null
+        && !this.changedPaths.contains(normalized)
+        && this.watchedFolders.stream().anyMatch(normalized::startsWith);
+  }
+
+  private boolean isUnchanged(final FileState stored) throws IOException {
+    final FileState current = this.currentStates.get(stored.getPath());
+    if (current != null) {
+      return current.getHash().equals(stored.getHash());
+    }
+    if (isWatchedAndUnchanged(stored.getPath())) {
+      this.currentStates.put(stored.getPath(), stored);
+      return true;
+    }
+
+    final File file = new File(stored.getPath());
+    final BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+    } catch (IOException ex) {
+      return false;
+    }
+    if (!attributes.isRegularFile() || attributes.size() != stored.getSize()) {
+      return false;
+    }
+    if (attributes.lastModifiedTime().toMillis() == stored.getLastModified()) {
+      this.currentStates.put(stored.getPath(), stored);
+      return true;
+    }
+    return findCurrentState(file).getHash().equals(stored.getHash());
+  }
+
+  private FileRecord findOrMakeRecord(final FileInfoContainer fileRef) throws IOException {
+    final String key = keyOf(fileRef);
+    FileRecord result = this.records.get(key);
+    if (result == null) {
+      result = new FileRecord(findCurrentState(fileRef.getSourceFile()));
+      this.records.put(key, result);
+    }
+    return result;
+  }
+
+  /**
+   * Check that whole preprocessing can be skipped because global variables defined before processing of
+   * files, values of read special variables, set of files and all files used or produced by the previous
+   * preprocessing are unchanged.
+   *
+   * @param files all files to be preprocessed, must not be null
+   * @return true if nothing is changed since the previous preprocessing, false otherwise
+   * @throws IOException if any error during file check
+   * @since 7.0.6
+   */
+  public boolean isNothingChanged(final Collection<FileInfoContainer> files) throws IOException {
+    if (this.previousStartFingerprint == null
+        || !this.previousStartFingerprint.equals(this.startFingerprint)
+        || files.size() != this.previousRecords.size()
+        || !this.previousSpecialFingerprint
+        .equals(makeSpecialFingerprint(this.previousRecords.values()))) {
+      return false;
+    }
+    for (final FileInfoContainer fileRef : files) {
+      final FileRecord previous = this.previousRecords.get(keyOf(fileRef));
+      if (previous == null || !isUnchanged(previous.getSource())) {
+        return false;
+      }
+      final Preprocessing preprocessing = previous.getPreprocessing();
+      if (preprocessing == null) {
+        if (previous.getGlobalPhase() == null) {
+          return false;
+        }
+      } else {
+        for (final FileState included : preprocessing.getIncludes()) {
+          if (!isUnchanged(included)) {
+            return false;
+          }
+        }
+        for (final String output : preprocessing.getOutputs()) {
+          if (!new File(output).isFile()) {
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Restore results of the previous preprocessing for all files, it should be called only if
+   * {@link #isNothingChanged(Collection)} returned true. Files without recorded preprocessing are marked
+   * as excluded.
+   *
+   * @param files all files to be preprocessed, must not be null
+   * @throws IOException if any error during file state calculation
+   * @since 7.0.6
+   */
+  public void restoreAll(final Collection<FileInfoContainer> files) throws IOException {
+    for (final FileInfoContainer fileRef : files) {
+      final FileRecord previous = this.previousRecords.get(keyOf(fileRef));
+      final GlobalPhase globalPhase = previous.getGlobalPhase();
+      if (globalPhase != null) {
+        fileRef.setTargetFolder(globalPhase.getTargetFolder());
+        fileRef.setTargetFileName(globalPhase.getTargetFileName());
+        fileRef.getReadGlobalVariables().addAll(globalPhase.getReadVariables());
+        findOrMakeRecord(fileRef).setGlobalPhase(globalPhase);
+      }
+      if (previous.getPreprocessing() == null) {
+        fileRef.setExcludedFromPreprocessing(true);
+      } else {
+        restoreResults(fileRef, previous.getPreprocessing());
+      }
+    }
+  }
+
+  /**
+   * Check that a source file was processed during the previous preprocessing and it is unchanged.
+   *
+   * @param fileRef file container, must not be null
+   * @return true if the file is known and unchanged, false otherwise
+   * @throws IOException if any error during file check
+   */
+  public boolean isSourceUnchanged(final FileInfoContainer fileRef) throws IOException {
+    final FileRecord previous = this.previousRecords.get(keyOf(fileRef));
+    return previous != null && isUnchanged(previous.getSource());
+  }
+
+  /**
+   * Restore results of the global phase for a file if the file is unchanged and global variables read by
+   * the file have the same values. Recorded changes of global variables are applied to the context.
+   *
+   * @param fileRef          file container, must not be null
+   * @param context          context to get changes of global variables, must not be null
+   * @param changedVariables collection to be filled by names of changed variables, can be null
+   * @return restored exclude-if records or null if the global phase must be processed for the file
+   * @throws IOException if any error during file check
+   */
+  public List<PreprocessingState.ExcludeIfInfo> restoreGlobalPhase(
+      final FileInfoContainer fileRef,
+      final PreprocessorContext context,
+      final Collection<String> changedVariables
+  ) throws IOException {
+    final FileRecord previous = this.previousRecords.get(keyOf(fileRef));
+    if (previous == null || previous.getGlobalPhase() == null ||
+        !isUnchanged(previous.getSource())) {
+      return null;
+    }
+    final GlobalPhase globalPhase = previous.getGlobalPhase();
+    if (!globalPhase.getFingerprint().equals(
+        makeReadFingerprint(context.getGlobalVarTable(), globalPhase.getReadVariables()))) {
+      return null;
+    }
+
+    applyChanges(globalPhase.getChangedVariables(), context);
+    if (changedVariables != null) {
+      changedVariables.addAll(globalPhase.getChangedVariables().keySet());
+    }
+    fileRef.setTargetFolder(globalPhase.getTargetFolder());
+    fileRef.setTargetFileName(globalPhase.getTargetFileName());
+    fileRef.getReadGlobalVariables().addAll(globalPhase.getReadVariables());
+    findOrMakeRecord(fileRef).setGlobalPhase(globalPhase);
+
+    return globalPhase.getExcludeIf().stream()
+        .map(x -> new PreprocessingState.ExcludeIfInfo(fileRef, x.getCondition(),
+            x.getStringIndex()))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Register results of the global phase for a file.
+   *
+   * @param fileRef       processed file container, must not be null
+   * @param globalsBefore global variables before processing of the file, must not be null
+   * @param record        record of variable access during processing, must not be null
+   * @param excludeIf     found exclude-if records, must not be null
+   * @throws IOException if any error during file state calculation
+   */
+  public void registerGlobalPhase(
+      final FileInfoContainer fileRef,
+      final Map<String, Value> globalsBefore,
+      final VariableAccessRecord record,
+      final List<PreprocessingState.ExcludeIfInfo> excludeIf
+  ) throws IOException {
+    findOrMakeRecord(fileRef).setGlobalPhase(new GlobalPhase(
+        makeReadFingerprint(globalsBefore, record.getReadGlobalVariables()),
+        new TreeSet<>(record.getReadGlobalVariables()),
+        new LinkedHashMap<>(record.getChangedGlobalVariables()),
+        excludeIf.stream().map(x -> new ExcludeIf(x.getCondition(), x.getStringIndex()))
+            .collect(Collectors.toList()),
+        fileRef.getTargetFolder(),
+        fileRef.getTargetFileName()));
+  }
+
+  /**
+   * Check that a file can be skipped because its inputs and outputs are unchanged since the previous
+   * preprocessing and restore its included and generated resources. Only global variables read by the
+   * file during the previous preprocessing are compared. Recorded changes of global variables are applied
+   * to the context.
+   *
+   * @param fileRef          file container, must not be null
+   * @param context          context contains current global variables, must not be null
+   * @param changedVariables collection to be filled by names of changed variables, can be null
+   * @return true if the file is unchanged and can be skipped, false otherwise
+   * @throws IOException if any error during file check
+   */
+  public boolean restorePreprocessing(
+      final FileInfoContainer fileRef,
+      final PreprocessorContext context,
+      final Collection<String> changedVariables
+  ) throws IOException {
+    final Preprocessing preprocessing = findUnchanged(fileRef, context.getGlobalVarTable());
+    if (preprocessing == null) {
+      return false;
+    }
+    restoreResults(fileRef, preprocessing);
+    applyChanges(preprocessing.getChangedVariables(), context);
+    if (changedVariables != null) {
+      changedVariables.addAll(preprocessing.getChangedVariables().keySet());
+    }
+    return true;
+  }
+
+  /**
+   * Check that a file can be skipped for current global variables, results of the file are not restored.
+   *
+   * @param fileRef file container, must not be null
+   * @param context context contains current global variables, must not be null
+   * @return true if the file is unchanged and can be skipped, false otherwise
+   * @throws IOException if any error during file check
+   */
+  public boolean isPreprocessingUnchanged(
+      final FileInfoContainer fileRef,
+      final PreprocessorContext context
+  ) throws IOException {
+    return findUnchanged(fileRef, context.getGlobalVarTable()) != null;
+  }
+
+  /**
+   * Register results of preprocessing of a file, global variables read by the file are taken from the
+   * file container.
+   *
+   * @param fileRef       processed file container, must not be null
+   * @param globalsBefore global variables before preprocessing of the file, must not be null
+   * @param record        record of variable access during preprocessing, can be null
+   * @throws IOException if any error during file state calculation
+   */
+  public void registerPreprocessing(
+      final FileInfoContainer fileRef,
+      final Map<String, Value> globalsBefore,
+      final VariableAccessRecord record
+  ) throws IOException {
+    final Set<String> readVariables = new TreeSet<>(fileRef.getReadGlobalVariables());
+    registerResults(fileRef, makeReadFingerprint(globalsBefore, readVariables), readVariables,
+        record == null ? Collections.emptyMap() : record.getChangedGlobalVariables());
+  }
+
+  /**
+   * Check that copy of a file can be skipped because the file and its copy are unchanged.
+   *
+   * @param fileRef     file container, must not be null
+   * @param destination destination file of the copy, must not be null
+   * @return true if copying can be skipped, false otherwise
+   * @throws IOException if any error during file check
+   */
+  public boolean restoreCopy(final FileInfoContainer fileRef, final File destination)
+      throws IOException {
+    if (!destination.isFile()) {
+      return false;
+    }
+    final Preprocessing preprocessing = findUnchanged(fileRef, null);
+    if (preprocessing == null) {
+      return false;
+    }
+    restoreResults(fileRef, preprocessing);
+    return true;
+  }
+
+  /**
+   * Register copied file.
+   *
+   * @param fileRef copied file container, must not be null
+   * @throws IOException if any error during file state calculation
+   */
+  public void registerCopy(final FileInfoContainer fileRef) throws IOException {
+    registerResults(fileRef, COPY_FINGERPRINT, Collections.emptySet(), Collections.emptyMap());
+  }
+
+  private Preprocessing findUnchanged(
+      final FileInfoContainer fileRef,
+      final Map<String, Value> globals
+  ) throws IOException {
+    final FileRecord previous = this.previousRecords.get(keyOf(fileRef));
+    if (previous == null || previous.getPreprocessing() == null) {
+      return null;
+    }
+    final Preprocessing preprocessing = previous.getPreprocessing();
+    final String fingerprint = globals == null ? COPY_FINGERPRINT :
+        makeReadFingerprint(globals, preprocessing.getReadVariables());
+    if (!preprocessing.getFingerprint().equals(fingerprint) ||
+        !isUnchanged(previous.getSource())) {
+      return null;
+    }
+    for (final FileState included : preprocessing.getIncludes()) {
+      if (!isUnchanged(included)) {
+        return null;
+      }
+    }
+    for (final String output : preprocessing.getOutputs()) {
+      if (!new File(output).isFile()) {
+        return null;
+      }
+    }
+    return preprocessing;
+  }
+
+  private void restoreResults(final FileInfoContainer fileRef, final Preprocessing preprocessing)
+      throws IOException {
+    preprocessing.getIncludes()
+        .forEach(x -> fileRef.getIncludedSources().add(new File(x.getPath())));
+    preprocessing.getOutputs().forEach(x -> fileRef.getGeneratedResources().add(new File(x)));
+    fileRef.getReadGlobalVariables().addAll(preprocessing.getReadVariables());
+    findOrMakeRecord(fileRef).setPreprocessing(preprocessing);
+  }
+
+  private void registerResults(
+      final FileInfoContainer fileRef,
+      final String fingerprint,
+      final Set<String> readVariables,
+      final Map<String, Value> changedVariables
+  ) throws IOException {
+    final List<FileState> includes = new ArrayList<>();
+    for (final File file : new TreeSet<>(fileRef.getIncludedSources())) {
+      if (file.isFile()) {
+        includes.add(findCurrentState(file));
+      }
+    }
+    findOrMakeRecord(fileRef).setPreprocessing(new Preprocessing(
+        fingerprint,
+        readVariables,
+        new LinkedHashMap<>(changedVariables),
+        includes,
+        fileRef.getGeneratedResources().stream()
+            .map(File::getAbsolutePath)
+            .sorted()
+            .collect(Collectors.toList())));
+  }
+
+  private static void applyChanges(final Map<String, Value> changes,
+                                   final PreprocessorContext context) {
+    changes.forEach((name, value) -> {
+      if (value == null) {
+        context.getGlobalVarTable().remove(name);
+      } else {
+        context.getGlobalVarTable().put(name, value);
+      }
+    });
+  }
+
+  private static Map<String, FileRecord> readRecords(final DataInputStream in)
+      throws IOException {
+    final Map<String, FileRecord> result = new HashMap<>();
+    for (int i = in.readInt(); i > 0; i--) {
+      final FileRecord record = FileRecord.read(in);
+      result.put(record.getSource().getPath(), record);
+    }
+    return result;
+  }
+
+  private static void writeString(final DataOutputStream out, final String text)
+      throws IOException {
+    if (text == null) {
+      out.writeInt(-1);
+    } else {
+      final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private static String readString(final DataInputStream in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeStrings(final DataOutputStream out, final Collection<String> strings)
+      throws IOException {
+    out.writeInt(strings.size());
+    for (final String s : strings) {
+      writeString(out, s);
+    }
+  }
+
+  private static List<String> readStrings(final DataInputStream in) throws IOException {
+    final int size = in.readInt();
+    final List<String> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      result.add(readString(in));
+    }
+    return result;
+  }
+
+  private static void writeVariables(final DataOutputStream out, final Map<String, Value> values)
+      throws IOException {
+    out.writeInt(values.size());
+    for (final Map.Entry<String, Value> e : values.entrySet()) {
+      writeString(out, e.getKey());
+      final Value value = e.getValue();
+      if (value == null) {
+        writeString(out, null);
+      } else {
+        writeString(out, value.getType().name());
+        switch (value.getType()) {
+          case BOOLEAN:
+            out.writeBoolean(value.asBoolean());
+            break;
+          case INT:
+            out.writeLong(value.asLong());
+            break;
+          case FLOAT:
+            out.writeFloat(value.asFloat());
+            break;
+          case STRING:
+            writeString(out, value.asString());
+            break;
+          default:
+            throw new IOException("Unsupported value type: " + value.getType());
+        }
+      }
+    }
+  }
+
+  private static Map<String, Value> readVariables(final DataInputStream in) throws IOException {
+    final Map<String, Value> result = new LinkedHashMap<>();
+    for (int i = in.readInt(); i > 0; i--) {
+      final String name = readString(in);
+      final String type = readString(in);
+      if (type == null) {
+        result.put(name, null);
+      } else {
+        switch (ValueType.valueOf(type)) {
+          case BOOLEAN:
+            result.put(name, Value.valueOf(in.readBoolean()));
+            break;
+          case INT:
+            result.put(name, Value.valueOf(in.readLong()));
+            break;
+          case FLOAT:
+            result.put(name, Value.valueOf(in.readFloat()));
+            break;
+          case STRING:
+            result.put(name, Value.valueOf(readString(in)));
+            break;
+          default:
+            throw new IOException("Unsupported value type: " + type);
+        }
+      }
+    }
+    return result;
+  }
+
+  @Data
+  private static final class FileState {
+    private final String path;
+    private final long size;
+    private final long lastModified;
+    private final String hash;
+
+    private void write(final DataOutputStream out) throws IOException {
+      writeString(out, this.path);
+      out.writeLong(this.size);
+      out.writeLong(this.lastModified);
+      writeString(out, this.hash);
+    }
+
+    private static FileState read(final DataInputStream in) throws IOException {
+      return new FileState(readString(in), in.readLong(), in.readLong(), readString(in));
+    }
+  }
+
+  @Data
+  private static final class ExcludeIf {
+    private final String condition;
+    private final int stringIndex;
+  }
+
+  @Data
+  private static final class GlobalPhase {
+    private final String fingerprint;
+    private final Set<String> readVariables;
+    private final Map<String, Value> changedVariables;
+    private final List<ExcludeIf> excludeIf;
+    private final String targetFolder;
+    private final String targetFileName;
+
+    private void write(final DataOutputStream out) throws IOException {
+      writeString(out, this.fingerprint);
+      writeStrings(out, this.readVariables);
+      writeVariables(out, this.changedVariables);
+      out.writeInt(this.excludeIf.size());
+      for (final ExcludeIf e : this.excludeIf) {
+        writeString(out, e.getCondition());
+        out.writeInt(e.getStringIndex());
+      }
+      writeString(out, this.targetFolder);
+      writeString(out, this.targetFileName);
+    }
+
+    private static GlobalPhase read(final DataInputStream in) throws IOException {
+      final String fingerprint = readString(in);
+      final Set<String> readVariables = new TreeSet<>(readStrings(in));
+      final Map<String, Value> changedVariables = readVariables(in);
+      final List<ExcludeIf> excludeIf = new ArrayList<>();
+      for (int i = in.readInt(); i > 0; i--) {
+        excludeIf.add(new ExcludeIf(readString(in), in.readInt()));
+      }
+      return new GlobalPhase(fingerprint, readVariables, changedVariables, excludeIf,
+          readString(in), readString(in));
+    }
+  }
+
+  @Data
+  private static final class Preprocessing {
+    private final String fingerprint;
+    private final Set<String> readVariables;
+    private final Map<String, Value> changedVariables;
+    private final List<FileState> includes;
+    private final List<String> outputs;
+
+    private void write(final DataOutputStream out) throws IOException {
+      writeString(out, this.fingerprint);
+      writeStrings(out, this.readVariables);
+      writeVariables(out, this.changedVariables);
+      out.writeInt(this.includes.size());
+      for (final FileState state : this.includes) {
+        state.write(out);
+      }
+      writeStrings(out, this.outputs);
+    }
+
+    private static Preprocessing read(final DataInputStream in) throws IOException {
+      final String fingerprint = readString(in);
+      final Set<String> readVariables = new TreeSet<>(readStrings(in));
+      final Map<String, Value> changedVariables = readVariables(in);
+      final List<FileState> includes = new ArrayList<>();
+      for (int i = in.readInt(); i > 0; i--) {
+        includes.add(FileState.read(in));
+      }
+      return new Preprocessing(fingerprint, readVariables, changedVariables, includes,
+          readStrings(in));
+    }
+  }
+
+  @Data
+  private static final class FileRecord {
+    private final FileState source;
+    private GlobalPhase globalPhase;
+    private Preprocessing preprocessing;
+
+    private void write(final DataOutputStream out) throws IOException {
+      this.source.write(out);
+      out.writeBoolean(this.globalPhase != null);
+      if (this.globalPhase != null) {
+        this.globalPhase.write(out);
+      }
+      out.writeBoolean(this.preprocessing != null);
+      if (this.preprocessing != null) {
+        this.preprocessing.write(out);
+      }
+    }
+
+    private static FileRecord read(final DataInputStream in) throws IOException {
+      final FileRecord result = new FileRecord(FileState.read(in));
+      if (in.readBoolean()) {
+        result.setGlobalPhase(GlobalPhase.read(in));
+      }
+      if (in.readBoolean()) {
+        result.setPreprocessing(Preprocessing.read(in));
+      }
+      return result;
+    }
+  }
+}
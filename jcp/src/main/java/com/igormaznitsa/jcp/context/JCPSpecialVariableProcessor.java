@@ -108,6 +108,13 @@ public class JCPSpecialVariableProcessor implements SpecialVariableProcessor {
     };
   }
 
+  private static String format(final SimpleDateFormat format, final Date date) {
+    // the processor can be shared between contexts of parallel workers
+    synchronized (format) {
+      return format.format(date);
+    }
+  }
+
   @Override
 
   public Value getVariable(final String varName, final PreprocessorContext context) {
@@ -133,9 +140,9 @@ public class JCPSpecialVariableProcessor implements SpecialVariableProcessor {
       case VAR_VERSION:
         return Value.valueOf(InfoHelper.getVersion());
       case VAR_TIME:
-        return Value.valueOf(timeFormat.format(new Date()));
+        return Value.valueOf(format(timeFormat, new Date()));
       case VAR_DATE:
-        return Value.valueOf(dateFormat.format(new Date()));
+        return Value.valueOf(format(dateFormat, new Date()));
       case VAR_TIMESTAMP:
         final TextFileDataContainer filedata = state.peekFile();
         final Value result;
@@ -143,7 +150,7 @@ public class JCPSpecialVariableProcessor implements SpecialVariableProcessor {
           result = Value.valueOf("<no file>");
         } else {
           result =
-              Value.valueOf(timestampFormat.format(new Date(filedata.getFile().lastModified())));
+              Value.valueOf(format(timestampFormat, new Date(filedata.getFile().lastModified())));
         }
         return result;
       case VAR_LINE:
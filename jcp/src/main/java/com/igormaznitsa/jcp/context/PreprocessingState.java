@@ -21,7 +21,6 @@
 
 package com.igormaznitsa.jcp.context;
 
-import static com.igormaznitsa.jcp.utils.IOUtils.closeQuietly;
 import static com.igormaznitsa.jcp.utils.PreprocessorUtils.findFirstActiveFileContainer;
 
 
@@ -30,23 +29,18 @@ import com.igormaznitsa.jcp.containers.PreprocessingFlag;
 import com.igormaznitsa.jcp.containers.TextFileDataContainer;
 import com.igormaznitsa.jcp.exceptions.FilePositionInfo;
 import com.igormaznitsa.jcp.exceptions.PreprocessorException;
-import com.igormaznitsa.jcp.removers.JavaCommentsRemover;
+import com.igormaznitsa.jcp.removers.JavaCommentsRemovingWriter;
+import com.igormaznitsa.jcp.utils.FileUpdatingWriter;
 import com.igormaznitsa.jcp.utils.PreprocessorUtils;
 import com.igormaznitsa.jcp.utils.ResetablePrinter;
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import com.igormaznitsa.jcp.utils.TextLineIndex;
 import java.io.BufferedWriter;
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.StringReader;
-import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.EnumSet;
@@ -54,9 +48,6 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 
 /**
  * The class describes a preprocessor state also it contains inside buffers and save data on disk
@@ -117,7 +108,11 @@ public final class PreprocessingState {
 
     this.rootFileInfo = Objects.requireNonNull(rootFile, "The root file is null");
     init();
-    rootReference = openFile(rootFile.getSourceFile());
+    final File rootSource = rootFile.getSourceFile();
+    final byte[] scannedContent = rootFile.getSourceContent();
+    rootReference = pushFile(rootSource, scannedContent == null ?
+        TextLineIndex.read(rootSource, inEncoding) :
+        TextLineIndex.decode(ByteBuffer.wrap(scannedContent), inEncoding));
   }
 
   PreprocessingState(final PreprocessorContext context, final FileInfoContainer rootFile,
@@ -206,15 +201,24 @@ public final class PreprocessingState {
   }
 
 
+  /**
+   * Open included file and push it into include stack, content of the file is taken from the include
+   * cache of the context if it has not been changed.
+   *
+   * @param file the file to be opened, must not be null
+   * @return text container of the file
+   * @throws IOException if the file can't be read
+   */
   public TextFileDataContainer openFile(final File file) throws IOException {
     Objects.requireNonNull(file, "The file is null");
+    if (this.context == null) {
+      return pushFile(file, TextLineIndex.read(file, globalInCharacterEncoding));
+    }
+    return pushFile(file, this.context.getIncludeFileCache().read(file, globalInCharacterEncoding));
+  }
 
-    final AtomicBoolean endedByNextLineContainer = new AtomicBoolean();
-
-    final String[] texts = PreprocessorUtils
-        .readWholeTextFileIntoArray(file, globalInCharacterEncoding, endedByNextLineContainer);
-    final TextFileDataContainer newContainer =
-        new TextFileDataContainer(file, texts, endedByNextLineContainer.get(), 0);
+  private TextFileDataContainer pushFile(final File file, final TextLineIndex text) {
+    final TextFileDataContainer newContainer = new TextFileDataContainer(file, text, 0);
     includeStack.push(newContainer);
     return newContainer;
   }
@@ -233,9 +237,9 @@ public final class PreprocessingState {
     }
 
     final FilePositionInfo[] stack = new FilePositionInfo[includeStack.size()];
-    for (int i = 0; i < includeStack.size(); i++) {
-      final TextFileDataContainer fileContainer = includeStack.get(i);
-      stack[i] =
+    int index = 0;
+    for (final TextFileDataContainer fileContainer : includeStack) {
+      stack[index++] =
           new FilePositionInfo(fileContainer.getFile(), fileContainer.getLastReadStringIndex());
     }
     return stack;
@@ -425,68 +429,38 @@ public final class PreprocessingState {
       throws IOException {
     final File path = outFile.getParentFile();
 
-    if (path != null && !path.exists() && !path.mkdirs()) {
+    if (path != null && !path.mkdirs() && !path.isDirectory()) {
       throw new IOException("Can't make directory [" + PreprocessorUtils.getFilePath(path) + ']');
     }
 
-    Writer writer = null;
+    final int totatBufferedChars =
+        prefixPrinter.getSize() + normalPrinter.getSize() + postfixPrinter.getSize();
+    final int bufferSize = Math.max(64, Math.min(totatBufferedChars, MAX_WRITE_BUFFER_SIZE));
 
-    boolean wasSaved = false;
+    final FileUpdatingWriter writer = new FileUpdatingWriter(outFile, globalOutCharacterEncoding,
+        this.overrideOnlyIfContentChanged, bufferSize);
     try {
-      final int totatBufferedChars =
-          prefixPrinter.getSize() + normalPrinter.getSize() + postfixPrinter.getSize();
-      final int BUFFER_SIZE =
-          Math.max(64, Math.min(totatBufferedChars << 1, MAX_WRITE_BUFFER_SIZE));
-
-      if (this.overrideOnlyIfContentChanged) {
-        String content = writePrinterBuffers(new StringWriter(totatBufferedChars)).toString();
-        if (!keepComments) {
-          content = new JavaCommentsRemover(new StringReader(content),
-              new StringWriter(totatBufferedChars)).process().toString();
-        }
-
-        boolean needWrite = true; // better write than not
-        final byte[] contentInBinaryForm = content.getBytes(globalOutCharacterEncoding);
-        if (outFile.isFile() && outFile.length() == contentInBinaryForm.length) {
-          // If file exists and has the same content, then skip overwriting it
-          try (InputStream currentFileInputStream = new BufferedInputStream(
-              new FileInputStream(outFile), Math.max(16384, (int) outFile.length()))) {
-            needWrite = !IOUtils.contentEquals(currentFileInputStream,
-                new ByteArrayInputStream(contentInBinaryForm));
-          }
-        }
-        if (needWrite) {
-          FileUtils.writeByteArrayToFile(outFile, contentInBinaryForm, false);
-          wasSaved = true;
-        } else {
-          this.context.logDebug(
-              "Ignore writing data for " + outFile + " because its content has not been changed");
-        }
-      } else if (!keepComments) {
-        final String joinedBufferContent =
-            writePrinterBuffers(new StringWriter(totatBufferedChars)).toString();
-        writer = new OutputStreamWriter(
-            new BufferedOutputStream(new FileOutputStream(outFile, false), BUFFER_SIZE),
-            globalOutCharacterEncoding);
-        new JavaCommentsRemover(new StringReader(joinedBufferContent), writer).process();
-        wasSaved = true;
-      } else {
-        writer = new OutputStreamWriter(
-            new BufferedOutputStream(new FileOutputStream(outFile, false), BUFFER_SIZE),
-            globalOutCharacterEncoding);
+      if (keepComments) {
         writePrinterBuffers(writer);
-        wasSaved = true;
+      } else {
+        final JavaCommentsRemovingWriter filter = new JavaCommentsRemovingWriter(writer);
+        writePrinterBuffers(filter);
+        filter.finish();
       }
-
     } finally {
-      closeQuietly(writer);
+      writer.close();
     }
+    // the result is known only after close
+    final boolean wasSaved = writer.isChanged();
 
     if (wasSaved) {
       findFirstActiveFileContainer(context).ifPresent(t -> t.getGeneratedResources().add(outFile));
       if (this.context.isKeepAttributes() && outFile.exists()) {
         PreprocessorUtils.copyFileAttributes(this.getRootFileInfo().getSourceFile(), outFile);
       }
+    } else {
+      this.context.logDebug(
+          "Ignore writing data for " + outFile + " because its content has not been changed");
     }
 
     return wasSaved;
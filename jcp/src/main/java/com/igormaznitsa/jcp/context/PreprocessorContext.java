@@ -50,6 +50,8 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import lombok.AccessLevel;
@@ -91,6 +93,13 @@ public class PreprocessorContext {
   @Getter(AccessLevel.NONE)
   private final Collection<FileInfoContainer> preprocessedResources;
 
+  /**
+   * Index of preprocessed resources for their source files, it is shared between copies of context.
+   */
+  @Setter(AccessLevel.NONE)
+  @Getter(AccessLevel.NONE)
+  private final Map<File, FileInfoContainer> preprocessedResourceIndex;
+
   @Setter(AccessLevel.NONE)
   @Getter(AccessLevel.NONE)
   private final AtomicReference<PreprocessingState> preprocessingState = new AtomicReference<>();
@@ -108,6 +117,9 @@ public class PreprocessorContext {
   private boolean preserveIndents = false;
   private boolean keepAttributes = false;
   private boolean unknownVariableAsFalse = false;
+  private boolean incremental = false;
+  private boolean watch = false;
+  private int threads = 1;
   private File target;
   private Set<String> extensions = new HashSet<>(DEFAULT_PROCESSING_EXTENSIONS);
   private Set<String> excludeExtensions = new HashSet<>(DEFAULT_EXCLUDED_EXTENSIONS);
@@ -117,6 +129,27 @@ public class PreprocessorContext {
   @Setter(AccessLevel.NONE)
   private PreprocessorLogger preprocessorLogger = new SystemOutLogger();
   private List<String> excludeFolders = new ArrayList<>();
+  private VariableAccessRecord variableAccessRecord;
+  /**
+   * Cache of parsed documents, configuration files and included files shared with other contexts, if null
+   * then files are read for every context.
+   *
+   * @since 7.0.6
+   */
+  private FileDataCache fileDataCache;
+  /**
+   * File to keep incremental manifest, if null then the manifest is kept in the target folder.
+   *
+   * @since 7.0.6
+   */
+  private File manifestFile;
+  /**
+   * Cache of included files, it is made for every new context and shared with its clones and worker copies.
+   * It is used only if there is no shared file data cache.
+   */
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private IncludeFileCache includeFileCache;
 
   /**
    * Constructor
@@ -124,8 +157,10 @@ public class PreprocessorContext {
    * @param baseDir the base folder for process, it must not be null
    */
   public PreprocessorContext(final File baseDir) {
-    this.preprocessedResources = new ArrayList<>();
+    this.preprocessedResources = new CopyOnWriteArrayList<>();
+    this.preprocessedResourceIndex = new ConcurrentHashMap<>();
     this.activatedConfigFiles = new ArrayList<>();
+    this.includeFileCache = new IncludeFileCache(IncludeFileCache.DEFAULT_MAX_MEMORY);
     this.baseDir = Objects.requireNonNull(baseDir, "Base folder must not be null");
     this.setSources(DEFAULT_SOURCE_DIRECTORY).setTarget(new File(DEFAULT_DEST_DIRECTORY));
     this.registerSpecialVariableProcessor(new JCPSpecialVariableProcessor());
@@ -142,10 +177,15 @@ public class PreprocessorContext {
    * @param context the context to be cloned, must not be null.
    */
   public PreprocessorContext(final PreprocessorContext context) {
+    this(context, true);
+  }
+
+  private PreprocessorContext(final PreprocessorContext context, final boolean cloned) {
     Objects.requireNonNull(context, "Source context must not be null");
 
     this.activatedConfigFiles = context.activatedConfigFiles;
     this.preprocessedResources = context.preprocessedResources;
+    this.preprocessedResourceIndex = context.preprocessedResourceIndex;
 
     this.baseDir = context.getBaseDir();
     this.verbose = context.isVerbose();
@@ -167,6 +207,12 @@ public class PreprocessorContext {
     this.excludeExtensions.addAll(context.excludeExtensions);
 
     this.unknownVariableAsFalse = context.unknownVariableAsFalse;
+    this.threads = context.threads;
+    this.fileDataCache = context.fileDataCache;
+    this.includeFileCache = context.includeFileCache;
+    this.manifestFile = context.manifestFile;
+    this.incremental = context.incremental;
+    this.watch = context.watch;
 
     this.preprocessorExtension = context.getPreprocessorExtension();
     this.sourceEncoding = context.getSourceEncoding();
@@ -188,26 +234,60 @@ public class PreprocessorContext {
     this.configFiles.clear();
     this.configFiles.addAll(context.getConfigFiles());
 
-    this.preprocessingState.set(Objects.requireNonNull(context.getPreprocessingState()));
-    this.cloned = true;
-
+    this.cloned = cloned;
     this.preprocessorLogger = context.getPreprocessorLogger();
 
-    this.currentInCloneSource = context.getPreprocessingState().peekFile();
+    if (cloned) {
+      this.preprocessingState.set(Objects.requireNonNull(context.getPreprocessingState()));
+      this.currentInCloneSource = context.getPreprocessingState().peekFile();
+      this.variableAccessRecord = context.variableAccessRecord;
+    } else {
+      this.preprocessingState
+          .set(new PreprocessingState(this, this.sourceEncoding, this.targetEncoding));
+      this.currentInCloneSource = null;
+    }
+  }
+
+  /**
+   * Make copy of the context to be used by a worker thread for parallel preprocessing of a file.
+   * The copy is not marked as a cloned one, it has own variable tables and preprocessing state but shares
+   * registered preprocessed resources with the source context.
+   *
+   * @param logger logger to be used by the copy, can be null
+   * @return new context to preprocess a file, must not be null
+   * @since 7.0.6
+   */
+  public PreprocessorContext makeWorkerCopy(final PreprocessorLogger logger) {
+    final PreprocessorContext result = new PreprocessorContext(this, false);
+    result.setPreprocessorLogger(logger);
+    return result;
   }
 
   public void addPreprocessedResource(final FileInfoContainer container) {
     if (container != null) {
       this.preprocessedResources.add(container);
+      this.preprocessedResourceIndex.putIfAbsent(container.getSourceFile(), container);
     }
   }
 
   public void addAllPreprocessedResources(final Collection<FileInfoContainer> containers) {
     if (containers != null) {
       this.preprocessedResources.addAll(containers);
+      containers.forEach(x -> this.preprocessedResourceIndex.putIfAbsent(x.getSourceFile(), x));
     }
   }
 
+  /**
+   * Remove all registered preprocessed resources, it is needed to start new preprocessing with the same
+   * context.
+   *
+   * @since 7.0.6
+   */
+  public void clearPreprocessedResources() {
+    this.preprocessedResources.clear();
+    this.preprocessedResourceIndex.clear();
+  }
+
   public Set<FileInfoContainer> findPreprocessedResources() {
     return new HashSet<>(this.preprocessedResources);
   }
@@ -295,13 +375,18 @@ public class PreprocessorContext {
         .collect(Collectors.toSet());
   }
 
+  /**
+   * Find preprocessed resource for its source file, the first added resource is returned if there are
+   * several ones for the same file.
+   *
+   * @param file the source file, can be null
+   * @return found resource or empty
+   */
   public Optional<FileInfoContainer> findFileInfoContainer(final File file) {
     if (file == null) {
       return Optional.empty();
     } else {
-      return this.preprocessedResources.stream()
-          .filter(x -> file.equals(x.getSourceFile()))
-          .findFirst();
+      return Optional.ofNullable(this.preprocessedResourceIndex.get(file));
     }
   }
 
@@ -528,6 +613,8 @@ public class PreprocessorContext {
       throw makeException("Not defined variable name", null);
     }
 
+    // result depends on global variables defined by other files
+    registerRead(normalized);
     if (mapVariableNameToSpecialVarProcessor.containsKey(normalized) ||
         globalVarTable.containsKey(normalized)) {
       throw makeException(
@@ -594,6 +681,9 @@ public class PreprocessorContext {
     }
 
     globalVarTable.remove(normalized);
+    if (this.variableAccessRecord != null) {
+      this.variableAccessRecord.registerChange(normalized, null);
+    }
     return this;
   }
 
@@ -679,10 +769,45 @@ public class PreprocessorContext {
         }
       }
       globalVarTable.put(normalizedName, value);
+      if (this.variableAccessRecord != null) {
+        this.variableAccessRecord.registerChange(normalizedName, value);
+      }
     }
     return this;
   }
 
+  /**
+   * Register read of a global or special variable in the access record and, if incremental or watch mode
+   * is active, in the root file of the current preprocessing state.
+   *
+   * @param normalized normalized name of the variable
+   */
+  private void registerRead(final String normalized) {
+    if (this.variableAccessRecord != null) {
+      this.variableAccessRecord.registerRead(normalized);
+    }
+    if (this.incremental || this.watch) {
+      final PreprocessingState state = this.preprocessingState.get();
+      if (state != null) {
+        state.getRootFileInfo().getReadGlobalVariables().add(normalized);
+      }
+    }
+  }
+
+  /**
+   * Get value of a special variable without registration of the read, inside JCP variables are ignored
+   * because their values depend only on the current file.
+   *
+   * @param normalized normalized name of the variable
+   * @return value of the special variable or null if there is not any such special variable
+   */
+  Value findSpecialVariableValue(final String normalized) {
+    final SpecialVariableProcessor processor =
+        this.mapVariableNameToSpecialVarProcessor.get(normalized);
+    return processor == null || processor instanceof JCPSpecialVariableProcessor ? null :
+        processor.getVariable(normalized, this);
+  }
+
   /**
    * Check that there is a named global variable in the inside storage
    *
@@ -699,6 +824,8 @@ public class PreprocessorContext {
       return false;
     }
 
+    registerRead(normalized);
+
     return mapVariableNameToSpecialVarProcessor.containsKey(normalized) ||
         globalVarTable.containsKey(normalized);
   }
@@ -724,6 +851,10 @@ public class PreprocessorContext {
     final SpecialVariableProcessor processor = mapVariableNameToSpecialVarProcessor.get(normalized);
 
     if (processor != null) {
+      // values of inside JCP variables depend only on the current file
+      if (!(processor instanceof JCPSpecialVariableProcessor)) {
+        registerRead(normalized);
+      }
       return processor.getVariable(normalized, this);
     }
 
@@ -732,6 +863,8 @@ public class PreprocessorContext {
       return val;
     }
 
+    registerRead(normalized);
+
     Value result = globalVarTable.get(normalized);
 
     if (result == null && !enforceUnknownVarAsNull && this.unknownVariableAsFalse) {
@@ -752,6 +885,7 @@ public class PreprocessorContext {
     boolean result = false;
     if (variableName != null) {
       final String normalized = PreprocessorUtils.normalizeVariableName(variableName);
+      registerRead(normalized);
       result = this.globalVarTable.containsKey(normalized) ||
           mapVariableNameToSpecialVarProcessor.containsKey(normalized);
     }
@@ -773,6 +907,22 @@ public class PreprocessorContext {
     return result;
   }
 
+  /**
+   * Find file to keep incremental manifest.
+   *
+   * @return defined manifest file or the manifest file in the target folder, must not be null
+   * @since 7.0.6
+   */
+  public File findManifestFile() {
+    return this.manifestFile == null ? new File(this.getTarget(), IncrementalManifest.FILE_NAME) :
+        this.manifestFile;
+  }
+
+  IncludeFileCache getIncludeFileCache() {
+    return this.fileDataCache == null ? this.includeFileCache :
+        this.fileDataCache.getIncludeFileCache();
+  }
+
   /**
    * It allows to create a File object for its path subject to the destination directory path
    *
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.context;
+
+import com.igormaznitsa.jcp.expression.Value;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Record of global variables read and changed through a preprocessor context, it allows to merge
+ * results of files processed in parallel in the same way as they would be processed sequentially.
+ * Names are normalized ones, removed variables are recorded as changed to null.
+ *
+ * @since 7.0.6
+ */
+public final class VariableAccessRecord {
+
+  private final Set<String> readGlobalVariables = new HashSet<>();
+  private final Map<String, Value> changedGlobalVariables = new LinkedHashMap<>();
+
+  void registerRead(final String normalizedName) {
+    this.readGlobalVariables.add(normalizedName);
+  }
+
+  void registerChange(final String normalizedName, final Value value) {
+    this.changedGlobalVariables.put(normalizedName, value);
+  }
+
+  /**
+   * Get names of global variables which have been read, also contains names of not found variables.
+   *
+   * @return unmodifiable set of names, must not be null
+   */
+  public Set<String> getReadGlobalVariables() {
+    return Collections.unmodifiableSet(this.readGlobalVariables);
+  }
+
+  /**
+   * Get global variables which have been changed, in order of the first change.
+   *
+   * @return unmodifiable map of names to last values (null for removed variables), must not be null
+   */
+  public Map<String, Value> getChangedGlobalVariables() {
+    return Collections.unmodifiableMap(this.changedGlobalVariables);
+  }
+
+  /**
+   * Check that any recorded access (read or change) touches a variable from a collection.
+   *
+   * @param normalizedNames names of variables, must not be null
+   * @return true if any of the variables has been read or changed, false otherwise
+   */
+  public boolean isTouched(final Collection<String> normalizedNames) {
+    for (final String name : normalizedNames) {
+      if (this.readGlobalVariables.contains(name) ||
+          this.changedGlobalVariables.containsKey(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Apply recorded changes to a context without logging.
+   *
+   * @param context target context, must not be null
+   */
+  public void applyChanges(final PreprocessorContext context) {
+    this.changedGlobalVariables.forEach((name, value) -> {
+      if (value == null) {
+        context.getGlobalVarTable().remove(name);
+      } else {
+        context.getGlobalVarTable().put(name, value);
+      }
+    });
+  }
+}
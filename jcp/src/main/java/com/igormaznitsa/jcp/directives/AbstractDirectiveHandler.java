@@ -57,6 +57,11 @@ public abstract class AbstractDirectiveHandler {
    */
   private static volatile AbstractDirectiveHandler[] allDirectives;
 
+  /**
+   * Prefix tree to find directive handler by directive name
+   */
+  private static volatile DirectiveHandlerTrie directiveTrie;
+
 
   public static AbstractDirectiveHandler[] getAllDirectives() {
     if (allDirectives == null) {
@@ -103,6 +108,23 @@ public abstract class AbstractDirectiveHandler {
     return allDirectives;
   }
 
+  /**
+   * Find handler for directive string, the first handler in {@link #getAllDirectives()} which name is
+   * prefix of the string is returned.
+   *
+   * @param directiveString directive string without directive prefix, must not be null
+   * @return found directive handler or null if not found
+   * @since 7.0.6
+   */
+  public static AbstractDirectiveHandler findForDirective(final String directiveString) {
+    DirectiveHandlerTrie trie = directiveTrie;
+    if (trie == null) {
+      trie = new DirectiveHandlerTrie(getAllDirectives());
+      directiveTrie = trie;
+    }
+    return trie.find(directiveString);
+  }
+
   /**
    * Get the name of the directive without prefix
    *
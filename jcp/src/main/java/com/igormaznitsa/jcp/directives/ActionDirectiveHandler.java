@@ -26,12 +26,11 @@ import com.igormaznitsa.jcp.context.PreprocessorContext;
 import com.igormaznitsa.jcp.exceptions.FilePositionInfo;
 import com.igormaznitsa.jcp.expression.Expression;
 import com.igormaznitsa.jcp.expression.ExpressionItem;
+import com.igormaznitsa.jcp.expression.ExpressionLexer;
 import com.igormaznitsa.jcp.expression.ExpressionParser;
 import com.igormaznitsa.jcp.expression.ExpressionTree;
 import com.igormaznitsa.jcp.expression.Value;
 import java.io.IOException;
-import java.io.PushbackReader;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -93,7 +92,7 @@ public class ActionDirectiveHandler extends AbstractDirectiveHandler {
       throws IOException {
     final ExpressionParser parser = ExpressionParser.getInstance();
 
-    final PushbackReader reader = new PushbackReader(new StringReader(str));
+    final ExpressionLexer lexer = new ExpressionLexer(str);
     final List<ExpressionTree> result = new ArrayList<>();
 
     final PreprocessingState state = context.getPreprocessingState();
@@ -105,7 +104,7 @@ public class ActionDirectiveHandler extends AbstractDirectiveHandler {
     while (!Thread.currentThread().isInterrupted()) {
       final ExpressionTree tree;
       tree = new ExpressionTree(stack, sources);
-      final ExpressionItem delimiter = parser.readExpression(reader, tree, context, false, true);
+      final ExpressionItem delimiter = parser.readExpression(lexer, tree, context, false, true);
 
       if (delimiter != null && ExpressionParser.SpecialItem.COMMA != delimiter) {
         throw context.makeException("Wrong argument format detected", null);
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.directives;
+
+import java.util.Arrays;
+
+/**
+ * Prefix tree over directive names to find directive handler for directive string in time
+ * proportional to the directive name length. If several directive names are prefixes of the string
+ * then the handler which goes first in the handler array is selected, so that the ordering of
+ * handlers (for instance ifdefined before ifdef before if) works as for sequential search.
+ *
+ * @since 7.0.6
+ */
+final class DirectiveHandlerTrie {
+
+  private final AbstractDirectiveHandler[] handlers;
+  private final Node root = new Node();
+
+  DirectiveHandlerTrie(final AbstractDirectiveHandler[] handlers) {
+    this.handlers = handlers.clone();
+    for (int i = 0; i < this.handlers.length; i++) {
+      final String name = this.handlers[i].getName();
+      Node node = this.root;
+      for (int c = 0; c < name.length(); c++) {
+        node = node.makeChild(name.charAt(c));
+      }
+      if (node.handlerIndex < 0) {
+        node.handlerIndex = i;
+      }
+    }
+  }
+
+  /**
+   * Find handler for directive string (the string must not contain the directive prefix).
+   *
+   * @param directiveString the directive string, must not be null
+   * @return found handler or null if there is not any directive name which is prefix of the string
+   */
+  AbstractDirectiveHandler find(final String directiveString) {
+    int found = Integer.MAX_VALUE;
+    Node node = this.root;
+    int index = 0;
+    while (node != null) {
+      if (node.handlerIndex >= 0 && node.handlerIndex < found) {
+        found = node.handlerIndex;
+      }
+      if (index == directiveString.length()) {
+        break;
+      }
+      node = node.findChild(directiveString.charAt(index++));
+    }
+    return found == Integer.MAX_VALUE ? null : this.handlers[found];
+  }
+
+  private static final class Node {
+
+    private char[] keys = new char[0];
+    private Node[] children = new Node[0];
+    private int handlerIndex = -1;
+
+    private Node findChild(final char chr) {
+      final char[] theKeys = this.keys;
+      for (int i = 0; i < theKeys.length; i++) {
+        if (theKeys[i] == chr) {
+          return this.children[i];
+        }
+      }
+      return null;
+    }
+
+    private Node makeChild(final char chr) {
+      Node result = findChild(chr);
+      if (result == null) {
+        result = new Node();
+        this.keys = Arrays.copyOf(this.keys, this.keys.length + 1);
+        this.children = Arrays.copyOf(this.children, this.children.length + 1);
+        this.keys[this.keys.length - 1] = chr;
+        this.children[this.children.length - 1] = result;
+      }
+      return result;
+    }
+  }
+}
@@ -21,18 +21,19 @@
 
 package com.igormaznitsa.jcp.expression;
 
-import com.igormaznitsa.jcp.context.PreprocessingState;
 import com.igormaznitsa.jcp.context.PreprocessorContext;
-import com.igormaznitsa.jcp.exceptions.FilePositionInfo;
 import com.igormaznitsa.jcp.exceptions.PreprocessorException;
 import com.igormaznitsa.jcp.expression.functions.AbstractFunction;
 import com.igormaznitsa.jcp.expression.functions.FunctionDefinedByUser;
 import com.igormaznitsa.jcp.expression.operators.AbstractOperator;
+import com.igormaznitsa.jcp.extension.PreprocessorExtension;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 /**
  * The main class to calculate expressions
@@ -42,14 +43,10 @@ import java.util.Objects;
 public class Expression {
 
   /**
-   * Pre-created array for speed up operations
+   * Cache of parsed expressions shared between contexts
    */
-  private static final Class<?>[] OPERATOR_SIGNATURE_1 = new Class<?>[] {Value.class};
-
-  /**
-   * Pre-created array for speed up operations
-   */
-  private static final Class<?>[] OPERATOR_SIGNATURE_2 = new Class<?>[] {Value.class, Value.class};
+  private static final ExpressionTreeCache TREE_CACHE =
+      new ExpressionTreeCache(ExpressionTreeCache.DEFAULT_MAX_SIZE);
 
   /**
    * The variable contains the preprocessor context for the expression, it can be null
@@ -79,8 +76,7 @@ public class Expression {
 
   public static Value evalExpression(final String expression, final PreprocessorContext context) {
     try {
-      final ExpressionTree tree = ExpressionParser.getInstance().parse(expression, context);
-      return evalTree(tree, context);
+      return evalTree(findOrParseTree(expression, context), context);
     } catch (IOException unexpected) {
       throw context
           .makeException("[Expression]Wrong expression format detected [" + expression + ']',
@@ -88,6 +84,30 @@ public class Expression {
     }
   }
 
+  /**
+   * Get parsed tree for expression from cache or parse it, constant sub-trees of new parsed tree are
+   * calculated before caching. Errors during evaluation take position from the current preprocessing
+   * state so that a cached tree can be used for any source line.
+   *
+   * @param expression the expression as a String, must not be null
+   * @param context    a preprocessor context to be used for parsing
+   * @return parsed expression tree, must not be null
+   * @throws IOException it will be thrown for wrong expression format
+   */
+  private static ExpressionTree findOrParseTree(final String expression,
+                                                final PreprocessorContext context)
+      throws IOException {
+    final String normalized = Objects.requireNonNull(expression, "Expression is null").trim();
+    final PreprocessorExtension extension = context.getPreprocessorExtension();
+    ExpressionTree result = TREE_CACHE.find(normalized, extension);
+    if (result == null) {
+      result = ExpressionParser.getInstance().parse(normalized, context);
+      result.foldConstants();
+      TREE_CACHE.put(normalized, result, extension);
+    }
+    return result;
+  }
+
   /**
    * Evaluate an expression tree
    *
@@ -98,53 +118,37 @@ public class Expression {
 
   public static Value evalTree(final ExpressionTree tree, final PreprocessorContext context) {
     final Expression exp = new Expression(context, tree);
-    return exp.eval(context.getPreprocessingState());
+    return exp.eval();
   }
 
 
-  private ExpressionTreeElement evalFunction(final ExpressionTreeElement functionElement,
-                                             final PreprocessingState state) {
+  private Value evalFunction(final ExpressionTreeElement functionElement) {
     final AbstractFunction function = (AbstractFunction) functionElement.getItem();
 
+    if (function.isLazyArguments()) {
+      return evalLazyFunction(functionElement);
+    }
+
     final int arity = function.getArity();
     final Value[] arguments = new Value[arity];
-    final Class<?>[] methodArguments = new Class<?>[arity + 1];
-    methodArguments[0] = PreprocessorContext.class;
-
-    final FilePositionInfo[] stack;
-    final String sources;
-
-    stack = state.makeIncludeStack();
-    sources = state.getLastReadString();
-
-    final StringBuilder signature = new StringBuilder(AbstractFunction.EXECUTION_PREFIX);
-
-    for (int i = 1; i <= arity; i++) {
-      methodArguments[i] = Value.class;
-    }
 
     for (int i = 0; i < arity; i++) {
-      final ExpressionTreeElement item =
-          calculateTreeElement(functionElement.getChildForIndex(i), state);
-
-      final ExpressionItem itemValue = item.getItem();
-
-      if (itemValue instanceof Value) {
-        arguments[i] = (Value) itemValue;
-      } else {
+      final Value value = calculate(functionElement.getChildForIndex(i));
+      if (value == null) {
         throw this.context.makeException(
             "[Expression]Wrong argument type detected for the '" + function.getName() +
                 "' function", null);
       }
+      arguments[i] = value;
     }
 
     final ValueType[][] allowedSignatures = function.getAllowedArgumentTypes();
-    ValueType[] allowed = null;
-    for (final ValueType[] current : allowedSignatures) {
+    int allowedIndex = -1;
+    for (int i = 0; i < allowedSignatures.length && allowedIndex < 0; i++) {
       boolean allCompatible = true;
 
       int thatIndex = 0;
-      for (final ValueType type : current) {
+      for (final ValueType type : allowedSignatures[i]) {
         if (!type.isCompatible(arguments[thatIndex].getType())) {
           allCompatible = false;
           break;
@@ -153,15 +157,11 @@ public class Expression {
       }
 
       if (allCompatible) {
-        allowed = current;
-        for (final ValueType type : allowed) {
-          signature.append(type.getSignature());
-        }
-        break;
+        allowedIndex = i;
       }
     }
 
-    if (allowed == null) {
+    if (allowedIndex < 0) {
       throw this.context.makeException(
           "[Expression]Unsupported argument detected for '" + function.getName() + '\'', null);
     }
@@ -169,198 +169,233 @@ public class Expression {
     if (function instanceof FunctionDefinedByUser) {
       final FunctionDefinedByUser userFunction = (FunctionDefinedByUser) function;
       try {
-        return new ExpressionTreeElement(userFunction.execute(context, arguments), stack, sources);
+        return userFunction.execute(context, arguments);
       } catch (Exception unexpected) {
         throw this.context
             .makeException("[Expression]Unexpected exception during a user function processing",
                 unexpected);
       }
     } else {
-      try {
-        final Method method = function.getClass().getMethod(signature.toString(), methodArguments);
-
-        final Object[] callArgs = new Object[arity + 1];
-        callArgs[0] = context;
-        System.arraycopy(arguments, 0, callArgs, 1, arity);
-
-        final Value result = (Value) method.invoke(function, callArgs);
-
-        if (!result.getType().isCompatible(function.getResultType())) {
-          throw this.context.makeException("[Expression]Unsupported function result detected [" +
-              result.getType().getSignature() + ']', null);
-        }
-
-        return new ExpressionTreeElement(result, stack, sources);
-      } catch (NoSuchMethodException unexpected) {
+      final MethodHandle executor = function.findExecutor(allowedIndex);
+      if (executor == null) {
         throw this.context.makeException(
-            "[Expression]Can't find a function method to process data [" + signature.toString() +
-                ']', unexpected);
-      } catch (Exception unexpected) {
-        final Throwable cause = unexpected.getCause();
-        if (cause instanceof PreprocessorException) {
-          throw (PreprocessorException) cause;
-        }
+            "[Expression]Can't find a function method to process data [" +
+                AbstractFunction.makeExecutorName(allowedSignatures[allowedIndex]) + ']', null);
+      }
+
+      final Value result;
+      try {
+        result = (Value) executor.invokeExact(this.context, arguments);
+      } catch (PreprocessorException ex) {
+        throw ex;
+      } catch (Throwable unexpected) {
         throw this.context.makeException(
             "[Expression]Can't execute a function method to process data [" +
-                function.getClass().getName() + '.' + signature.toString() + ']', unexpected);
+                function.getClass().getName() + '.' +
+                AbstractFunction.makeExecutorName(allowedSignatures[allowedIndex]) + ']',
+            unexpected);
       }
+
+      if (!result.getType().isCompatible(function.getResultType())) {
+        throw this.context.makeException("[Expression]Unsupported function result detected [" +
+            result.getType().getSignature() + ']', null);
+      }
+
+      return result;
     }
   }
 
 
-  private ExpressionTreeElement evalOperator(final ExpressionTreeElement operatorElement,
-                                             final PreprocessingState state) {
-    final AbstractOperator operator = (AbstractOperator) operatorElement.getItem();
+  private Value evalLazyFunction(final ExpressionTreeElement functionElement) {
+    final AbstractFunction function = (AbstractFunction) functionElement.getItem();
 
-    final int arity = operator.getArity();
+    final List<Supplier<Value>> arguments = new ArrayList<>(function.getArity());
+    for (int i = 0; i < function.getArity(); i++) {
+      arguments.add(new LazyArgument(function, functionElement.getChildForIndex(i), i));
+    }
 
-    final Value[] arguments = new Value[arity];
-    final Class<?>[] methodArguments = arity == 1 ? OPERATOR_SIGNATURE_1 : OPERATOR_SIGNATURE_2;
+    final Value result;
+    try {
+      result = function.executeLazy(this.context, arguments);
+    } catch (PreprocessorException | ArithmeticException ex) {
+      throw ex;
+    } catch (RuntimeException unexpected) {
+      throw this.context.makeException(
+          "[Expression]Can't execute a function with lazy arguments [" +
+              function.getClass().getName() + ']', unexpected);
+    }
 
-    final StringBuilder signatureNormal = new StringBuilder(AbstractOperator.EXECUTION_PREFIX);
-    final StringBuilder signatureAnyLeft = new StringBuilder(AbstractOperator.EXECUTION_PREFIX);
-    final StringBuilder signatureAnyRight = new StringBuilder(AbstractOperator.EXECUTION_PREFIX);
+    if (result == null || !result.getType().isCompatible(function.getResultType())) {
+      throw this.context.makeException("[Expression]Unsupported function result detected [" +
+          (result == null ? "null" : result.getType().getSignature()) + ']', null);
+    }
 
-    final FilePositionInfo[] stack;
-    final String sources;
+    return result;
+  }
 
-    stack = state.makeIncludeStack();
-    sources = state.getLastReadString();
 
-    for (int i = 0; i < arity; i++) {
-      final ExpressionTreeElement arg = operatorElement.getChildForIndex(i);
-      if (arg == ExpressionTreeElement.EMPTY_SLOT) {
-        throw this.context.makeException(
-            "[Expression]There is not needed argument for the operator [" + operator.getKeyword() +
-                ']', null);
-      }
+  private Value evalOperator(final ExpressionTreeElement operatorElement) {
+    final AbstractOperator operator = (AbstractOperator) operatorElement.getItem();
 
-      final ExpressionTreeElement currentElement = calculateTreeElement(arg, state);
+    final int arity = operator.getArity();
 
-      final ExpressionItem item = currentElement.getItem();
+    final Value left = calculateOperatorArgument(operator, operatorElement.getChildForIndex(0));
 
-      if (item instanceof Value) {
-        arguments[i] = (Value) item;
-      } else {
-        throw this.context.makeException(
-            "[Expression]Non-value detected for the '" + operator.getKeyword() + "' operator",
-            null);
-      }
+    if (arity == 1) {
+      return executeOperator(operator, left, null);
     }
 
-    int argIndex = 0;
-    for (final Value value : arguments) {
-      final String typeSignature = value.getType().getSignature();
-      signatureNormal.append(typeSignature);
-      if (argIndex == 0) {
-        signatureAnyLeft.append(ValueType.ANY.getSignature());
-      } else {
-        signatureAnyLeft.append(typeSignature);
+    final ExpressionTreeElement rightElement = operatorElement.getChildForIndex(1);
+    if (rightElement != ExpressionTreeElement.EMPTY_SLOT) {
+      final Value shortCircuitResult = operator.findShortCircuitResult(left);
+      if (shortCircuitResult != null) {
+        return shortCircuitResult;
       }
-
-      if (argIndex == 1) {
-        signatureAnyRight.append(ValueType.ANY.getSignature());
-      } else {
-        signatureAnyRight.append(typeSignature);
-      }
-      argIndex++;
     }
 
-    Method executeMethod = null;
+    return executeOperator(operator, left, calculateOperatorArgument(operator, rightElement));
+  }
 
-    try {
-      executeMethod = operator.getClass().getMethod(signatureNormal.toString(), methodArguments);
-    } catch (NoSuchMethodException ex) {
-      try {
-        executeMethod = operator.getClass().getMethod(signatureAnyLeft.toString(), methodArguments);
-      } catch (NoSuchMethodException ex2) {
-        try {
-          executeMethod =
-              operator.getClass().getMethod(signatureAnyRight.toString(), methodArguments);
-        } catch (NoSuchMethodException ex3) {
-          // DO NOTHING
-        }
-      }
+
+  private Value calculateOperatorArgument(final AbstractOperator operator,
+                                          final ExpressionTreeElement argument) {
+    if (argument == ExpressionTreeElement.EMPTY_SLOT) {
+      throw this.context.makeException(
+          "[Expression]There is not needed argument for the operator [" + operator.getKeyword() +
+              ']', null);
     }
 
-    if (executeMethod == null) {
+    final Value result = calculate(argument);
+    if (result == null) {
+      throw this.context.makeException(
+          "[Expression]Non-value detected for the '" + operator.getKeyword() + "' operator",
+          null);
+    }
+    return result;
+  }
+
+
+  private Value executeOperator(final AbstractOperator operator, final Value left,
+                                final Value right) {
+    final MethodHandle executor =
+        operator.findExecutor(left.getType(), right == null ? null : right.getType());
+
+    if (executor == null) {
       throw this.context.makeException(
           "[Expression]Unsupported arguments detected for operator '" + operator.getKeyword() +
-              "' " + Arrays.toString(arguments), null);
+              "' " + Arrays.toString(right == null ? new Value[] {left} : new Value[] {left, right}),
+          null);
     }
 
     try {
-      return new ExpressionTreeElement((Value) executeMethod.invoke(operator, (Object[]) arguments),
-          stack, sources);
+      return right == null ? (Value) executor.invokeExact(left) :
+          (Value) executor.invokeExact(left, right);
     } catch (ArithmeticException arithEx) {
       throw arithEx;
-    } catch (InvocationTargetException ex) {
-      final Throwable thr = ex.getTargetException();
-      if (thr instanceof ArithmeticException) {
-        throw (ArithmeticException) thr;
-      }
+    } catch (Throwable thr) {
       throw new RuntimeException(
           "Invocation exception during '" + operator.getKeyword() + "' processing", thr);
-    } catch (Exception unexpected) {
-      throw this.context
-          .makeException("[Exception]Exception during '" + operator.getKeyword() + "' processing",
-              unexpected);
     }
   }
 
 
-  private ExpressionTreeElement calculateTreeElement(final ExpressionTreeElement element,
-                                                     final PreprocessingState state) {
-    ExpressionTreeElement treeElement = element;
+  /**
+   * Calculate value of a tree element, position information is not created until an error.
+   *
+   * @param element the element to be calculated, must not be null
+   * @return the calculated value or null if the element is not a value
+   */
+  private Value calculate(final ExpressionTreeElement element) {
+    final ExpressionItem item = element.getItem();
+    if (item == null) {
+      return null;
+    }
 
-    switch (element.getItem().getExpressionItemType()) {
+    switch (item.getExpressionItemType()) {
+      case VALUE:
+        return (Value) item;
       case VARIABLE: {
         Objects.requireNonNull(context,
-            "[Expression]Variable can't be used without context [" + element.getItem().toString() +
-                ']');
+            "[Expression]Variable can't be used without context [" + item.toString() + ']');
 
-        final Variable var = (Variable) element.getItem();
-        final String name = var.getName();
+        final String name = ((Variable) item).getName();
         final Value value = context.findVariableForName(name, false);
         if (value == null) {
           throw new RuntimeException("Unknown variable [" + name + ']');
-        } else {
-          treeElement =
-              new ExpressionTreeElement(value, state.makeIncludeStack(), state.getLastReadString());
         }
+        return value;
       }
-      break;
-      case OPERATOR: {
-        treeElement = evalOperator(element, state);
-      }
-      break;
-      case FUNCTION: {
-        treeElement = evalFunction(element, state);
-      }
-      break;
+      case OPERATOR:
+        return evalOperator(element);
+      case FUNCTION:
+        return evalFunction(element);
+      default:
+        return null;
     }
-    return treeElement;
   }
 
 
-  private Value eval(final PreprocessingState state) {
+  /**
+   * Argument of a function calculated on the first request.
+   */
+  private final class LazyArgument implements Supplier<Value> {
+
+    private final AbstractFunction function;
+    private final ExpressionTreeElement element;
+    private final int index;
+    private Value value;
+
+    private LazyArgument(final AbstractFunction function, final ExpressionTreeElement element,
+                         final int index) {
+      this.function = function;
+      this.element = element;
+      this.index = index;
+    }
+
+    @Override
+    public Value get() {
+      if (this.value == null) {
+        final Value calculated = calculate(this.element);
+        if (calculated == null) {
+          throw context.makeException(
+              "[Expression]Wrong argument type detected for the '" + this.function.getName() +
+                  "' function", null);
+        }
+        boolean compatible = false;
+        for (final ValueType[] signature : this.function.getAllowedArgumentTypes()) {
+          if (signature[this.index].isCompatible(calculated.getType())) {
+            compatible = true;
+            break;
+          }
+        }
+        if (!compatible) {
+          throw context.makeException(
+              "[Expression]Unsupported argument detected for '" + this.function.getName() + '\'',
+              null);
+        }
+        this.value = calculated;
+      }
+      return this.value;
+    }
+  }
+
+  private Value eval() {
     if (expressionTree.isEmpty()) {
       throw this.context.makeException("[Expression]The expression is empty", null);
     }
-    final ExpressionTreeElement result = calculateTreeElement(expressionTree.getRoot(), state);
-    final ExpressionItem resultItem = result.getItem();
 
-    if (resultItem == null) {
+    final ExpressionTreeElement root = expressionTree.getRoot();
+    if (root.getItem() == null) {
       throw this.context.makeException("[Expression]Expression doesn't have result", null);
     }
 
-    if (resultItem instanceof Value) {
-      return (Value) resultItem;
-    } else {
+    final Value result = calculate(root);
+    if (result == null) {
       throw this.context
-          .makeException("[Expression]The expression returns non-value result [" + resultItem + ']',
-              null);
+          .makeException("[Expression]The expression returns non-value result [" + root.getItem() +
+              ']', null);
     }
+    return result;
   }
 
 }
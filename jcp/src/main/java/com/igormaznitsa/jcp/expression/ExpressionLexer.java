@@ -0,0 +1,387 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.expression;
+
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.expression.functions.AbstractFunction;
+import com.igormaznitsa.jcp.expression.functions.FunctionDefinedByUser;
+import com.igormaznitsa.jcp.expression.operators.AbstractOperator;
+import com.igormaznitsa.jcp.expression.operators.OperatorADD;
+import com.igormaznitsa.jcp.expression.operators.OperatorAND;
+import com.igormaznitsa.jcp.expression.operators.OperatorDIV;
+import com.igormaznitsa.jcp.expression.operators.OperatorEQU;
+import com.igormaznitsa.jcp.expression.operators.OperatorGREAT;
+import com.igormaznitsa.jcp.expression.operators.OperatorGREATEQU;
+import com.igormaznitsa.jcp.expression.operators.OperatorLESS;
+import com.igormaznitsa.jcp.expression.operators.OperatorLESSEQU;
+import com.igormaznitsa.jcp.expression.operators.OperatorMOD;
+import com.igormaznitsa.jcp.expression.operators.OperatorMUL;
+import com.igormaznitsa.jcp.expression.operators.OperatorNOT;
+import com.igormaznitsa.jcp.expression.operators.OperatorNOTEQU;
+import com.igormaznitsa.jcp.expression.operators.OperatorOR;
+import com.igormaznitsa.jcp.expression.operators.OperatorSUB;
+import com.igormaznitsa.jcp.expression.operators.OperatorXOR;
+import com.igormaznitsa.jcp.extension.PreprocessorExtension;
+import java.util.Objects;
+
+/**
+ * Lexer splits an expression string into expression items. It works directly over the string with
+ * index arithmetic, a token is cut from the string only when it is recognized.
+ *
+ * @since 7.0.6
+ */
+public final class ExpressionLexer {
+
+  private static final OperatorADD ADD = AbstractOperator.findForClass(OperatorADD.class);
+  private static final OperatorAND AND = AbstractOperator.findForClass(OperatorAND.class);
+  private static final OperatorDIV DIV = AbstractOperator.findForClass(OperatorDIV.class);
+  private static final OperatorEQU EQU = AbstractOperator.findForClass(OperatorEQU.class);
+  private static final OperatorGREAT GREAT = AbstractOperator.findForClass(OperatorGREAT.class);
+  private static final OperatorGREATEQU GREATEQU =
+      AbstractOperator.findForClass(OperatorGREATEQU.class);
+  private static final OperatorLESS LESS = AbstractOperator.findForClass(OperatorLESS.class);
+  private static final OperatorLESSEQU LESSEQU =
+      AbstractOperator.findForClass(OperatorLESSEQU.class);
+  private static final OperatorMOD MOD = AbstractOperator.findForClass(OperatorMOD.class);
+  private static final OperatorMUL MUL = AbstractOperator.findForClass(OperatorMUL.class);
+  private static final OperatorNOT NOT = AbstractOperator.findForClass(OperatorNOT.class);
+  private static final OperatorNOTEQU NOTEQU = AbstractOperator.findForClass(OperatorNOTEQU.class);
+  private static final OperatorOR OR = AbstractOperator.findForClass(OperatorOR.class);
+  private static final OperatorSUB SUB = AbstractOperator.findForClass(OperatorSUB.class);
+  private static final OperatorXOR XOR = AbstractOperator.findForClass(OperatorXOR.class);
+
+  private final String text;
+  private final int length;
+  private int position;
+
+  /**
+   * Constructor.
+   *
+   * @param text expression text to be split, must not be null
+   */
+  public ExpressionLexer(final String text) {
+    this.text = Objects.requireNonNull(text, "Text is null");
+    this.length = text.length();
+    this.position = 0;
+  }
+
+  private static boolean isDelimiter(final char chr) {
+    switch (chr) {
+      case ',':
+      case '(':
+      case ')':
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isOperatorChar(final char chr) {
+    switch (chr) {
+      case '-':
+      case '+':
+      case '%':
+      case '*':
+      case '/':
+      case '&':
+      case '|':
+      case '!':
+      case '^':
+      case '=':
+      case '<':
+      case '>':
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isHexDigit(final char chr) {
+    return (chr >= '0' && chr <= '9') || (chr >= 'a' && chr <= 'f') || (chr >= 'A' && chr <= 'F');
+  }
+
+  private static AbstractOperator findOperator(final String text, final int start, final int end) {
+    switch (end - start) {
+      case 1: {
+        switch (text.charAt(start)) {
+          case '+':
+            return ADD;
+          case '-':
+            return SUB;
+          case '*':
+            return MUL;
+          case '/':
+            return DIV;
+          case '%':
+            return MOD;
+          case '!':
+            return NOT;
+          case '^':
+            return XOR;
+          case '<':
+            return LESS;
+          case '>':
+            return GREAT;
+          default:
+            return null;
+        }
+      }
+      case 2: {
+        final char second = text.charAt(start + 1);
+        switch (text.charAt(start)) {
+          case '=':
+            return second == '=' ? EQU : null;
+          case '!':
+            return second == '=' ? NOTEQU : null;
+          case '<':
+            return second == '=' ? LESSEQU : null;
+          case '>':
+            return second == '=' ? GREATEQU : null;
+          case '&':
+            return second == '&' ? AND : null;
+          case '|':
+            return second == '|' ? OR : null;
+          default:
+            return null;
+        }
+      }
+      default:
+        return null;
+    }
+  }
+
+  private static int hex2int(final PreprocessorContext context, final char chr) {
+    if (chr >= '0' && chr <= '9') {
+      return chr - '0';
+    } else if (chr >= 'a' && chr <= 'f') {
+      return 10 + (chr - 'a');
+    } else if (chr >= 'A' && chr <= 'F') {
+      return 10 + (chr - 'A');
+    } else {
+      throw context.makeException("Unexpected hex digit detected: " + chr, null);
+    }
+  }
+
+  /**
+   * Read the next item.
+   *
+   * @param context a preprocessor context
+   * @return a read expression item, it can be null if the end is reached
+   */
+  public ExpressionItem nextItem(final PreprocessorContext context) {
+    while (this.position < this.length && Character.isWhitespace(this.text.charAt(this.position))) {
+      this.position++;
+    }
+    if (this.position >= this.length) {
+      return null;
+    }
+
+    final int start = this.position;
+    final char chr = this.text.charAt(this.position++);
+    switch (chr) {
+      case ',':
+        return ExpressionParser.SpecialItem.COMMA;
+      case '(':
+        return ExpressionParser.SpecialItem.BRACKET_OPENING;
+      case ')':
+        return ExpressionParser.SpecialItem.BRACKET_CLOSING;
+      case '\"':
+        return readString(context);
+      case '.':
+        return readFloat(start);
+      default: {
+        if (Character.isDigit(chr)) {
+          return readNumber(chr, start);
+        } else if (Character.isLetter(chr) || chr == '$' || chr == '_') {
+          return readValueOrFunction(context, start);
+        } else if (isOperatorChar(chr)) {
+          return readOperator(context, start);
+        } else {
+          throw context
+              .makeException("Unsupported token character detected '" + chr + '\'', null);
+        }
+      }
+    }
+  }
+
+  private ExpressionItem readOperator(final PreprocessorContext context, final int start) {
+    while (this.position < this.length && isOperatorChar(this.text.charAt(this.position))) {
+      this.position++;
+    }
+    final AbstractOperator result = findOperator(this.text, start, this.position);
+    if (result == null) {
+      throw context.makeException(
+          "Unknown operator detected '" + this.text.substring(start, this.position) + '\'', null);
+    }
+    return result;
+  }
+
+  private int skipDigits() {
+    while (this.position < this.length && Character.isDigit(this.text.charAt(this.position))) {
+      this.position++;
+    }
+    return this.position;
+  }
+
+  private ExpressionItem readFloat(final int start) {
+    return Value.valueOf(Float.parseFloat(this.text.substring(start, skipDigits())));
+  }
+
+  private ExpressionItem readNumber(final char first, final int start) {
+    if (first == '0' && this.position < this.length) {
+      final char next = this.text.charAt(this.position);
+      if (next == 'x' || next == 'X') {
+        this.position++;
+        while (this.position < this.length && isHexDigit(this.text.charAt(this.position))) {
+          this.position++;
+        }
+        return Value.valueOf(Long.parseLong(this.text.substring(start + 2, this.position), 16));
+      }
+    }
+
+    skipDigits();
+    if (this.position < this.length && this.text.charAt(this.position) == '.') {
+      this.position++;
+      return readFloat(start);
+    }
+
+    if (this.position - start == 1 && first == '0') {
+      return Value.INT_ZERO;
+    }
+    return Value.valueOf(Long.parseLong(this.text.substring(start, this.position)));
+  }
+
+  private ExpressionItem readValueOrFunction(final PreprocessorContext context, final int start) {
+    while (this.position < this.length) {
+      final char chr = this.text.charAt(this.position);
+      if (Character.isWhitespace(chr) || isDelimiter(chr) || isOperatorChar(chr)) {
+        break;
+      }
+      this.position++;
+    }
+
+    final String str = this.text.substring(start, this.position).toLowerCase();
+    if (str.charAt(0) == '$') {
+
+      Objects.requireNonNull(context,
+          "There is not a preprocessor context to define a user function [" + str + ']');
+
+      final PreprocessorExtension extension = context.getPreprocessorExtension();
+      if (extension == null) {
+        throw context.makeException(
+            "There is not any defined preprocessor extension to get data about user functions [" +
+                str + ']', null);
+      }
+
+      final String userFunctionName = str.substring(1);
+
+      // user defined
+      return new FunctionDefinedByUser(userFunctionName,
+          extension.getUserFunctionArity(userFunctionName), context);
+    } else if ("true".equals(str)) {
+      return Value.BOOLEAN_TRUE;
+    } else if ("false".equals(str)) {
+      return Value.BOOLEAN_FALSE;
+    } else {
+      final AbstractFunction function = AbstractFunction.findForName(str);
+      return function == null ? new Variable(str) : function;
+    }
+  }
+
+  private ExpressionItem readString(final PreprocessorContext context) {
+    final int start = this.position;
+    while (this.position < this.length) {
+      final char chr = this.text.charAt(this.position);
+      if (chr == '\"') {
+        return Value.valueOf(this.text.substring(start, this.position++));
+      } else if (chr == '\\') {
+        break;
+      }
+      this.position++;
+    }
+
+    if (this.position >= this.length) {
+      // non-closed string at the end of expression is accepted as is
+      return Value.valueOf(this.text.substring(start));
+    }
+
+    final StringBuilder builder = new StringBuilder(this.position - start + 16);
+    builder.append(this.text, start, this.position);
+
+    while (this.position < this.length) {
+      final char chr = this.text.charAt(this.position++);
+      if (chr == '\"') {
+        return Value.valueOf(builder.toString());
+      } else if (chr == '\\') {
+        if (this.position >= this.length) {
+          throw context.makeException("Non-closed string has been detected", null);
+        }
+        final char special = this.text.charAt(this.position++);
+        switch (special) {
+          case 'n':
+            builder.append('\n');
+            break;
+          case 't':
+            builder.append('\t');
+            break;
+          case 'b':
+            builder.append('\b');
+            break;
+          case 'f':
+            builder.append('\f');
+            break;
+          case 'r':
+            builder.append('\r');
+            break;
+          case '\\':
+            builder.append('\\');
+            break;
+          case '\"':
+            builder.append('\"');
+            break;
+          case '\'':
+            builder.append('\'');
+            break;
+          case 'u': {
+            if (this.position + 4 > this.length) {
+              throw context.makeException("Non-completed unicode char has been detected", null);
+            }
+            int code = 0;
+            for (int i = 0; i < 4; i++) {
+              code = (code << 4) | hex2int(context, this.text.charAt(this.position++));
+            }
+            builder.append((char) code);
+          }
+          break;
+          default: {
+            throw context
+                .makeException("Unsupported special char detected '\\" + special + '\'', null);
+          }
+        }
+      } else {
+        builder.append(chr);
+      }
+    }
+    // non-closed string at the end of expression is accepted as is
+    return Value.valueOf(builder.toString());
+  }
+}
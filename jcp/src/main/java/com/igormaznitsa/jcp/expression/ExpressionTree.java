@@ -124,4 +124,14 @@ public class ExpressionTree {
     }
   }
 
+  /**
+   * Calculate constant sub-trees of the formed tree.
+   *
+   * @see ExpressionTreeElement#foldConstants()
+   * @since 7.0.6
+   */
+  public void foldConstants() {
+    getRoot().foldConstants();
+  }
+
 }
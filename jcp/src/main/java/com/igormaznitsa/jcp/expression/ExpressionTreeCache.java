@@ -0,0 +1,146 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.expression;
+
+import com.igormaznitsa.jcp.expression.functions.FunctionDefinedByUser;
+import com.igormaznitsa.jcp.extension.PreprocessorExtension;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded thread-safe cache of parsed expression trees with LRU eviction. Evaluation doesn't change a tree
+ * so it can be shared between contexts and threads. Parsing depends on the preprocessor extension only
+ * for user functions, so a tree containing user functions is valid only for the same extension which
+ * reports the same arities of the functions.
+ *
+ * @since 7.0.6
+ */
+final class ExpressionTreeCache {
+
+  /**
+   * Default max number of cached trees.
+   */
+  static final int DEFAULT_MAX_SIZE = 2048;
+
+  private final Map<String, CachedTree> cache;
+
+  ExpressionTreeCache(final int maxSize) {
+    this.cache = new LinkedHashMap<String, CachedTree>(64, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, CachedTree> eldest) {
+        return this.size() > maxSize;
+      }
+    };
+  }
+
+  private static void collectUserFunctions(final ExpressionTreeElement element,
+                                           final Map<String, Integer> result) {
+    if (element.isEmptySlot()) {
+      return;
+    }
+    final ExpressionItem item = element.getItem();
+    if (item instanceof FunctionDefinedByUser) {
+      result.put(((FunctionDefinedByUser) item).getName(), element.getArity());
+    }
+    for (int i = 0; i < element.getArity(); i++) {
+      collectUserFunctions(element.getChildForIndex(i), result);
+    }
+  }
+
+  /**
+   * Find cached tree for expression.
+   *
+   * @param expression normalized expression text, must not be null
+   * @param extension  current preprocessor extension, can be null
+   * @return found valid tree or null
+   */
+  ExpressionTree find(final String expression, final PreprocessorExtension extension) {
+    final CachedTree entry;
+    synchronized (this.cache) {
+      entry = this.cache.get(expression);
+    }
+    return entry == null || !entry.isValid(extension) ? null : entry.tree;
+  }
+
+  /**
+   * Put parsed tree into cache.
+   *
+   * @param expression normalized expression text, must not be null
+   * @param tree       parsed tree, must not be null
+   * @param extension  preprocessor extension used for parsing, can be null
+   */
+  void put(final String expression, final ExpressionTree tree,
+           final PreprocessorExtension extension) {
+    final Map<String, Integer> userFunctions = new HashMap<>();
+    collectUserFunctions(tree.getRoot(), userFunctions);
+    final CachedTree entry = userFunctions.isEmpty() ?
+        new CachedTree(tree, null, Collections.emptyMap()) :
+        new CachedTree(tree, new WeakReference<>(extension), userFunctions);
+    synchronized (this.cache) {
+      this.cache.put(expression, entry);
+    }
+  }
+
+  int size() {
+    synchronized (this.cache) {
+      return this.cache.size();
+    }
+  }
+
+  void clear() {
+    synchronized (this.cache) {
+      this.cache.clear();
+    }
+  }
+
+  private static final class CachedTree {
+    private final ExpressionTree tree;
+    private final WeakReference<PreprocessorExtension> extension;
+    private final Map<String, Integer> userFunctionArity;
+
+    private CachedTree(final ExpressionTree tree,
+                  final WeakReference<PreprocessorExtension> extension,
+                  final Map<String, Integer> userFunctionArity) {
+      this.tree = tree;
+      this.extension = extension;
+      this.userFunctionArity = userFunctionArity;
+    }
+
+    private boolean isValid(final PreprocessorExtension currentExtension) {
+      if (this.userFunctionArity.isEmpty()) {
+        return true;
+      }
+      if (currentExtension == null || currentExtension != this.extension.get()) {
+        return false;
+      }
+      for (final Map.Entry<String, Integer> e : this.userFunctionArity.entrySet()) {
+        if (currentExtension.getUserFunctionArity(e.getKey()) != e.getValue()) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -21,11 +21,13 @@
 
 package com.igormaznitsa.jcp.expression;
 
+import com.igormaznitsa.jcp.context.PreprocessorContext;
 import com.igormaznitsa.jcp.exceptions.FilePositionInfo;
 import com.igormaznitsa.jcp.exceptions.PreprocessorException;
 import com.igormaznitsa.jcp.expression.functions.AbstractFunction;
 import com.igormaznitsa.jcp.expression.operators.AbstractOperator;
 import com.igormaznitsa.jcp.expression.operators.OperatorSUB;
+import java.lang.invoke.MethodHandle;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
@@ -386,25 +388,13 @@ public class ExpressionTreeElement {
               final ExpressionItem item = left.getItem();
               if (item.getExpressionItemType() == ExpressionItemType.VALUE) {
                 final Value val = (Value) item;
-                switch (val.getType()) {
-                  case INT: {
-                    childElements = EMPTY;
-                    savedItem = Value.valueOf(-val.asLong());
-                    makeMaxPriority();
+                final Value negative = makeNegative(val);
+                if (negative == null) {
+                  if (!left.isEmptySlot()) {
+                    left.postProcess();
                   }
-                  break;
-                  case FLOAT: {
-                    childElements = EMPTY;
-                    savedItem = Value.valueOf(0.0f - val.asFloat());
-                    makeMaxPriority();
-                  }
-                  break;
-                  default: {
-                    if (!left.isEmptySlot()) {
-                      left.postProcess();
-                    }
-                  }
-                  break;
+                } else {
+                  replaceByValue(negative);
                 }
               }
             } else {
@@ -434,4 +424,136 @@ public class ExpressionTreeElement {
       }
     }
   }
+
+  /**
+   * Calculate sub-trees which contain only constant values, operators and pure functions, every
+   * calculated sub-tree is replaced by its result value. Also a binary operator is replaced by its
+   * short-circuit result if its left argument is constant. A sub-tree which can't be calculated (for
+   * instance because of division by zero or wrong argument types) is kept to report error during
+   * evaluation.
+   *
+   * @see AbstractFunction#isPure()
+   * @since 7.0.6
+   */
+  public void foldConstants() {
+    if (this.isEmptySlot()) {
+      return;
+    }
+
+    final ExpressionItemType type = savedItem.getExpressionItemType();
+    if (type == ExpressionItemType.OPERATOR || type == ExpressionItemType.FUNCTION) {
+      for (final ExpressionTreeElement element : childElements) {
+        element.foldConstants();
+      }
+
+      final Value result;
+      try {
+        result = type == ExpressionItemType.OPERATOR ? foldOperator((AbstractOperator) savedItem) :
+            foldFunction((AbstractFunction) savedItem);
+      } catch (Error ex) {
+        throw ex;
+      } catch (Throwable ex) {
+        return;
+      }
+
+      if (result != null) {
+        replaceByValue(result);
+      }
+    }
+  }
+
+  private Value foldOperator(final AbstractOperator operator) throws Throwable {
+    final Value left = findConstantChild(0);
+    if (left == null) {
+      return null;
+    }
+
+    if (operator.getArity() == 1) {
+      final MethodHandle executor = operator.findExecutor(left.getType(), null);
+      return executor == null ? null : (Value) executor.invokeExact(left);
+    }
+
+    if (childElements[1].isEmptySlot()) {
+      return operator == OPERATOR_SUB ? makeNegative(left) : null;
+    }
+
+    final Value shortCircuitResult = operator.findShortCircuitResult(left);
+    if (shortCircuitResult != null) {
+      return shortCircuitResult;
+    }
+
+    final Value right = findConstantChild(1);
+    if (right == null) {
+      return null;
+    }
+
+    final MethodHandle executor = operator.findExecutor(left.getType(), right.getType());
+    return executor == null ? null : (Value) executor.invokeExact(left, right);
+  }
+
+  private Value foldFunction(final AbstractFunction function) throws Throwable {
+    if (!function.isPure() || function.isLazyArguments()) {
+      return null;
+    }
+
+    final Value[] arguments = new Value[childElements.length];
+    for (int i = 0; i < arguments.length; i++) {
+      arguments[i] = findConstantChild(i);
+      if (arguments[i] == null) {
+        return null;
+      }
+    }
+
+    final ValueType[][] signatures = function.getAllowedArgumentTypes();
+    for (int i = 0; i < signatures.length; i++) {
+      if (isCompatible(signatures[i], arguments)) {
+        final MethodHandle executor = function.findExecutor(i);
+        if (executor == null) {
+          return null;
+        }
+        final Value result = (Value) executor.invokeExact((PreprocessorContext) null, arguments);
+        return result != null && result.getType().isCompatible(function.getResultType()) ? result :
+            null;
+      }
+    }
+    return null;
+  }
+
+  private static boolean isCompatible(final ValueType[] signature, final Value[] arguments) {
+    if (signature.length != arguments.length) {
+      return false;
+    }
+    for (int i = 0; i < signature.length; i++) {
+      if (!signature[i].isCompatible(arguments[i].getType())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Value findConstantChild(final int index) {
+    final ExpressionTreeElement element = childElements[index];
+    if (element.isEmptySlot() ||
+        element.savedItem.getExpressionItemType() != ExpressionItemType.VALUE) {
+      return null;
+    }
+    return (Value) element.savedItem;
+  }
+
+  private static Value makeNegative(final Value value) {
+    switch (value.getType()) {
+      case INT:
+        return Value.valueOf(-value.asLong());
+      case FLOAT:
+        return Value.valueOf(0.0f - value.asFloat());
+      default:
+        return null;
+    }
+  }
+
+  private void replaceByValue(final Value value) {
+    childElements = EMPTY;
+    savedItem = value;
+    makeMaxPriority();
+  }
 }
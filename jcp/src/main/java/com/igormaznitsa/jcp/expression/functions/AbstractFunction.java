@@ -21,9 +21,11 @@
 
 package com.igormaznitsa.jcp.expression.functions;
 
+import com.igormaznitsa.jcp.context.PreprocessorContext;
 import com.igormaznitsa.jcp.expression.ExpressionItem;
 import com.igormaznitsa.jcp.expression.ExpressionItemPriority;
 import com.igormaznitsa.jcp.expression.ExpressionItemType;
+import com.igormaznitsa.jcp.expression.Value;
 import com.igormaznitsa.jcp.expression.ValueType;
 import com.igormaznitsa.jcp.expression.functions.xml.FunctionXML_ATTR;
 import com.igormaznitsa.jcp.expression.functions.xml.FunctionXML_GET;
@@ -35,8 +37,15 @@ import com.igormaznitsa.jcp.expression.functions.xml.FunctionXML_SIZE;
 import com.igormaznitsa.jcp.expression.functions.xml.FunctionXML_TEXT;
 import com.igormaznitsa.jcp.expression.functions.xml.FunctionXML_XELEMENT;
 import com.igormaznitsa.jcp.expression.functions.xml.FunctionXML_XLIST;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -61,6 +70,11 @@ public abstract class AbstractFunction implements ExpressionItem {
   private static volatile AbstractFunction[] allFunctions;
   private static volatile Map<String, AbstractFunction> functionNameMap;
 
+  /**
+   * Executing method handles for allowed argument signatures, it is made on the first use
+   */
+  private volatile MethodHandle[] executors;
+
 
   public static AbstractFunction[] getAllFunctions() {
     if (allFunctions == null) {
@@ -173,6 +187,96 @@ public abstract class AbstractFunction implements ExpressionItem {
    */
   public abstract ValueType getResultType();
 
+  /**
+   * Make name of executing method for allowed argument signature.
+   *
+   * @param signature allowed argument types, must not be null
+   * @return name of the method, must not be null
+   * @since 7.0.6
+   */
+  public static String makeExecutorName(final ValueType[] signature) {
+    final StringBuilder result = new StringBuilder(EXECUTION_PREFIX);
+    for (final ValueType type : signature) {
+      result.append(type.getSignature());
+    }
+    return result.toString();
+  }
+
+  /**
+   * Find executing method for allowed argument signature, methods are resolved once for every signature.
+   *
+   * @param signatureIndex index of signature in {@link #getAllowedArgumentTypes()}
+   * @return method handle with type (PreprocessorContext,Value[])Value, null if there is not method
+   * @since 7.0.6
+   */
+  public MethodHandle findExecutor(final int signatureIndex) {
+    MethodHandle[] table = this.executors;
+    if (table == null) {
+      final ValueType[][] signatures = getAllowedArgumentTypes();
+      table = new MethodHandle[signatures.length];
+      for (int i = 0; i < signatures.length; i++) {
+        table[i] = findExecuteMethod(signatures[i]);
+      }
+      this.executors = table;
+    }
+    return table[signatureIndex];
+  }
+
+  private MethodHandle findExecuteMethod(final ValueType[] signature) {
+    final Class<?>[] argTypes = new Class<?>[signature.length + 1];
+    Arrays.fill(argTypes, Value.class);
+    argTypes[0] = PreprocessorContext.class;
+    try {
+      final Method method = this.getClass().getMethod(makeExecutorName(signature), argTypes);
+      return MethodHandles.publicLookup().unreflect(method).bindTo(this)
+          .asType(MethodType.methodType(Value.class, argTypes))
+          .asSpreader(Value[].class, signature.length);
+    } catch (NoSuchMethodException ex) {
+      return null;
+    } catch (IllegalAccessException ex) {
+      throw new IllegalStateException(
+          "Can't get access to function method: " + makeExecutorName(signature), ex);
+    }
+  }
+
+  /**
+   * Check that the function is pure one, its result depends only on its arguments and it doesn't use
+   * the preprocessor context. Calls of pure functions with constant arguments are calculated during
+   * expression tree optimization and the context is provided as null for such calls.
+   *
+   * @return true if the function is pure, false by default
+   * @since 7.0.6
+   */
+  public boolean isPure() {
+    return false;
+  }
+
+  /**
+   * Check that the function gets its arguments lazily. Such function is executed through
+   * {@link #executeLazy(PreprocessorContext, List)} and an argument is calculated only when the function
+   * requests it, so expensive sub-expressions can be skipped.
+   *
+   * @return true if the function gets lazy arguments, false by default
+   * @since 7.0.6
+   */
+  public boolean isLazyArguments() {
+    return false;
+  }
+
+  /**
+   * Execute the function with lazy arguments, it is called only if {@link #isLazyArguments()} returns
+   * true. Every argument is calculated once on the first request and checked against allowed types.
+   *
+   * @param context   preprocessor context, must not be null
+   * @param arguments suppliers of arguments, must not be null
+   * @return result of the function, must not be null
+   * @since 7.0.6
+   */
+  public Value executeLazy(final PreprocessorContext context,
+                           final List<Supplier<Value>> arguments) {
+    throw new UnsupportedOperationException("Function doesn't support lazy arguments: " + getName());
+  }
+
   /**
    * Get the priority of the function in the expression tree
    *
@@ -37,6 +37,11 @@ public abstract class AbstractStrConverter extends AbstractFunction {
 
   public abstract Value executeStr(final PreprocessorContext context, final Value stringToConvert);
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
+
   @Override
   public final int getArity() {
     return 1;
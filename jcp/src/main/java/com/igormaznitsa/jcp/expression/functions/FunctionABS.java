@@ -51,6 +51,11 @@ public final class FunctionABS extends AbstractFunction {
     return Value.valueOf(Math.abs(value.asFloat()));
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
+
   @Override
   public int getArity() {
     return 1;
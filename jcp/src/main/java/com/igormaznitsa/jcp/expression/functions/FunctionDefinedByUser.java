@@ -24,7 +24,10 @@ package com.igormaznitsa.jcp.expression.functions;
 import com.igormaznitsa.jcp.context.PreprocessorContext;
 import com.igormaznitsa.jcp.expression.Value;
 import com.igormaznitsa.jcp.expression.ValueType;
+import com.igormaznitsa.jcp.extension.PreprocessorExtension;
+import java.util.List;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 /**
  * The class implements the user defined function handler (a function which name
@@ -37,6 +40,7 @@ public final class FunctionDefinedByUser extends AbstractFunction {
   private final String name;
   private final int argsNumber;
   private final ValueType[][] argTypes;
+  private final boolean lazyArguments;
 
   public FunctionDefinedByUser(final String name, final int argsNumber,
                                final PreprocessorContext context) {
@@ -57,6 +61,9 @@ public final class FunctionDefinedByUser extends AbstractFunction {
       types[li] = ValueType.ANY;
     }
     this.argTypes = new ValueType[][] {types};
+
+    final PreprocessorExtension extension = context.getPreprocessorExtension();
+    this.lazyArguments = extension != null && extension.isLazyUserFunction(name);
   }
 
   @Override
@@ -77,6 +84,19 @@ public final class FunctionDefinedByUser extends AbstractFunction {
         .processUserFunction(name, values);
   }
 
+  @Override
+  public boolean isLazyArguments() {
+    return this.lazyArguments;
+  }
+
+  @Override
+  public Value executeLazy(final PreprocessorContext context,
+                           final List<Supplier<Value>> arguments) {
+    return Objects.requireNonNull(
+        context.getPreprocessorExtension(), "Preprocessor extension must not be null")
+        .processUserFunctionLazy(name, arguments);
+  }
+
   @Override
 
 
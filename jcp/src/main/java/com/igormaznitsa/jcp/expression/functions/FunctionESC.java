@@ -86,6 +86,11 @@ public final class FunctionESC extends AbstractFunction {
     return Value.valueOf(result.toString());
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
+
   @Override
   public int getArity() {
     return 1;
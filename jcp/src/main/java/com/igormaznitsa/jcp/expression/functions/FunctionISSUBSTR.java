@@ -49,6 +49,11 @@ public final class FunctionISSUBSTR extends AbstractFunction {
     return Value.valueOf(str.contains(subStr));
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
+
   @Override
   public int getArity() {
     return 2;
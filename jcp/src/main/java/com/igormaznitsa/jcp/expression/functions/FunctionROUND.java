@@ -51,6 +51,11 @@ public final class FunctionROUND extends AbstractFunction {
     return Value.valueOf(Long.valueOf(Math.round(value.asFloat())));
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
+
   @Override
   public int getArity() {
     return 1;
@@ -139,6 +139,11 @@ public final class FunctionSTR2GO extends AbstractFunction {
     }
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
+
   @Override
   public int getArity() {
     return 2;
@@ -75,6 +75,11 @@ public final class FunctionSTR2JAVA extends AbstractFunction {
     }
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
+
   @Override
   public int getArity() {
     return 2;
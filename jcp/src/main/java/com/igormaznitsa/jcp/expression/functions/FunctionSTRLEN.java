@@ -45,6 +45,11 @@ public final class FunctionSTRLEN extends AbstractFunction {
     return Value.valueOf(Long.valueOf(value.asString().length()));
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
+
   @Override
   public int getArity() {
     return 1;
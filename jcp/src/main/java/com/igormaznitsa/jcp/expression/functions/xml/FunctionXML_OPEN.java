@@ -24,11 +24,14 @@ package com.igormaznitsa.jcp.expression.functions.xml;
 import static com.igormaznitsa.jcp.utils.PreprocessorUtils.findFirstActiveFileContainer;
 
 
+import com.igormaznitsa.jcp.context.FileDataCache;
 import com.igormaznitsa.jcp.context.PreprocessorContext;
 import com.igormaznitsa.jcp.expression.Value;
 import com.igormaznitsa.jcp.expression.ValueType;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import org.w3c.dom.Document;
@@ -84,19 +87,45 @@ public final class FunctionXML_OPEN extends AbstractXMLFunction {
   }
 
 
-  private Document openFileAndParse(final PreprocessorContext context, final File file) {
+  private static DocumentBuilder makeDocumentBuilder() throws ParserConfigurationException {
     final DocumentBuilderFactory docBuilderFactory = DocumentBuilderFactory.newInstance();
     docBuilderFactory.setIgnoringComments(true);
     docBuilderFactory.setCoalescing(true);
     docBuilderFactory.setValidating(false);
+    return docBuilderFactory.newDocumentBuilder();
+  }
+
+  private static Document parseCached(final FileDataCache cache, final File file)
+      throws IOException {
+    final Document shared = cache.find("xml", file, Document.class, content -> {
+      try {
+        return makeDocumentBuilder()
+            .parse(new ByteArrayInputStream(content), file.toURI().toString());
+      } catch (ParserConfigurationException | SAXException ex) {
+        throw new IOException("Can't parse XML file", ex);
+      }
+    });
+    // DOM is not thread safe even for reading so that every call gets its own copy
+    synchronized (shared) {
+      return (Document) shared.cloneNode(true);
+    }
+  }
 
+  private Document openFileAndParse(final PreprocessorContext context, final File file) {
+    final FileDataCache cache = context.getFileDataCache();
     try {
-      return docBuilderFactory.newDocumentBuilder().parse(file);
+      return cache == null ? makeDocumentBuilder().parse(file) : parseCached(cache, file);
     } catch (ParserConfigurationException unexpected) {
       throw context.makeException("XML parser configuration exception", unexpected);
     } catch (SAXException unexpected) {
       throw context.makeException("Exception during XML parsing", unexpected);
     } catch (IOException unexpected) {
+      if (unexpected.getCause() instanceof ParserConfigurationException) {
+        throw context.makeException("XML parser configuration exception", unexpected.getCause());
+      }
+      if (unexpected.getCause() instanceof SAXException) {
+        throw context.makeException("Exception during XML parsing", unexpected.getCause());
+      }
       throw context.makeException("Can't read XML file", unexpected);
     }
   }
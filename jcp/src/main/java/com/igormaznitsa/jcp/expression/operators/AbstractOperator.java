@@ -23,6 +23,13 @@ package com.igormaznitsa.jcp.expression.operators;
 
 import com.igormaznitsa.jcp.expression.ExpressionItem;
 import com.igormaznitsa.jcp.expression.ExpressionItemType;
+import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.jcp.expression.ValueType;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Arrays;
 
 /**
  * The class is the base for all operator handlers
@@ -39,7 +46,14 @@ public abstract class AbstractOperator implements ExpressionItem {
   /**
    * The array contains all operators allowed by the preprocessor
    */
-  private static AbstractOperator[] allOperators;
+  private static volatile AbstractOperator[] allOperators;
+
+  private static final ValueType[] VALUE_TYPES = ValueType.values();
+
+  /**
+   * Table of executing method handles for all combinations of argument types, it is made on the first use
+   */
+  private volatile MethodHandle[] executors;
 
 
   public static AbstractOperator[] getAllOperators() {
@@ -81,6 +95,76 @@ public abstract class AbstractOperator implements ExpressionItem {
     return null;
   }
 
+  /**
+   * Find executing method for argument types. Methods are resolved once for every combination of argument
+   * types, the search order is exact types, ANY for the left argument, ANY for the right argument.
+   *
+   * @param left  type of the first argument, must not be null
+   * @param right type of the second argument, ignored for unary operators
+   * @return method handle with type (Value)Value or (Value,Value)Value, null if types are not supported
+   * @since 7.0.6
+   */
+  public MethodHandle findExecutor(final ValueType left, final ValueType right) {
+    MethodHandle[] table = this.executors;
+    if (table == null) {
+      table = makeExecutors();
+      this.executors = table;
+    }
+    return table[getArity() == 1 ? left.ordinal() :
+        left.ordinal() * VALUE_TYPES.length + right.ordinal()];
+  }
+
+  private MethodHandle[] makeExecutors() {
+    final String any = ValueType.ANY.getSignature();
+    final MethodHandle[] result;
+    if (getArity() == 1) {
+      result = new MethodHandle[VALUE_TYPES.length];
+      for (final ValueType type : VALUE_TYPES) {
+        result[type.ordinal()] = findExecuteMethod(type.getSignature(), any);
+      }
+    } else {
+      result = new MethodHandle[VALUE_TYPES.length * VALUE_TYPES.length];
+      for (final ValueType left : VALUE_TYPES) {
+        for (final ValueType right : VALUE_TYPES) {
+          result[left.ordinal() * VALUE_TYPES.length + right.ordinal()] = findExecuteMethod(
+              left.getSignature() + right.getSignature(),
+              any + right.getSignature(),
+              left.getSignature() + any);
+        }
+      }
+    }
+    return result;
+  }
+
+  private MethodHandle findExecuteMethod(final String... signatures) {
+    final Class<?>[] argTypes = new Class<?>[getArity()];
+    Arrays.fill(argTypes, Value.class);
+    for (final String signature : signatures) {
+      try {
+        final Method method = this.getClass().getMethod(EXECUTION_PREFIX + signature, argTypes);
+        return MethodHandles.publicLookup().unreflect(method).bindTo(this)
+            .asType(MethodType.methodType(Value.class, argTypes));
+      } catch (NoSuchMethodException ex) {
+        // try next signature
+      } catch (IllegalAccessException ex) {
+        throw new IllegalStateException("Can't get access to operator method: " + signature, ex);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Find result of binary operator which is defined by its left argument only, in the case the right
+   * argument is not calculated.
+   *
+   * @param left value of the left argument, must not be null
+   * @return the result or null if the right argument must be calculated
+   * @since 7.0.6
+   */
+  public Value findShortCircuitResult(final Value left) {
+    return null;
+  }
+
   /**
    * Get the expression item type
    *
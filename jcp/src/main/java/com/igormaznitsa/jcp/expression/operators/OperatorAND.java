@@ -23,6 +23,7 @@ package com.igormaznitsa.jcp.expression.operators;
 
 import com.igormaznitsa.jcp.expression.ExpressionItemPriority;
 import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.jcp.expression.ValueType;
 
 /**
  * The class implements the AND operator handler
@@ -58,6 +59,11 @@ public final class OperatorAND extends AbstractOperator {
     return Value.valueOf(arg1.asBoolean() && arg2.asBoolean());
   }
 
+  @Override
+  public Value findShortCircuitResult(final Value left) {
+    return left.getType() == ValueType.BOOLEAN && !left.asBoolean() ? Value.BOOLEAN_FALSE : null;
+  }
+
   @Override
 
   public ExpressionItemPriority getExpressionItemPriority() {
@@ -23,6 +23,7 @@ package com.igormaznitsa.jcp.expression.operators;
 
 import com.igormaznitsa.jcp.expression.ExpressionItemPriority;
 import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.jcp.expression.ValueType;
 
 /**
  * The class implements the OR operator handler
@@ -58,6 +59,11 @@ public final class OperatorOR extends AbstractOperator {
     return Value.valueOf(arg1.asBoolean() || arg2.asBoolean());
   }
 
+  @Override
+  public Value findShortCircuitResult(final Value left) {
+    return left.getType() == ValueType.BOOLEAN && left.asBoolean() ? Value.BOOLEAN_TRUE : null;
+  }
+
   @Override
 
   public ExpressionItemPriority getExpressionItemPriority() {
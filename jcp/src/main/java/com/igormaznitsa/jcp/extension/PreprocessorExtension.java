@@ -23,6 +23,8 @@ package com.igormaznitsa.jcp.extension;
 
 import com.igormaznitsa.jcp.context.PreprocessorContext;
 import com.igormaznitsa.jcp.expression.Value;
+import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * The interface describes an extension which can be connected to a preprocessor
@@ -63,4 +65,31 @@ public interface PreprocessorExtension {
    * @return the function arity (the argument number), zero or a great value
    */
   int getUserFunctionArity(String functionName);
+
+  /**
+   * Check that a user function gets its arguments lazily, an argument of such function is calculated
+   * only when it is requested during {@link #processUserFunctionLazy(String, List)}.
+   *
+   * @param functionName the function name without $ and in low case, must not be null
+   * @return true if the function gets lazy arguments, false by default
+   * @since 7.0.6
+   */
+  default boolean isLazyUserFunction(String functionName) {
+    return false;
+  }
+
+  /**
+   * Call to process a user function with lazy arguments, it is called only if
+   * {@link #isLazyUserFunction(String)} returns true for the function. By default all arguments are
+   * calculated and {@link #processUserFunction(String, Value[])} is called.
+   *
+   * @param functionName the name of the function (without $ and in low case), must not be null
+   * @param arguments    suppliers of the function arguments, must not be null
+   * @return a calculated value, it must not be null
+   * @since 7.0.6
+   */
+  default Value processUserFunctionLazy(String functionName, List<Supplier<Value>> arguments) {
+    return processUserFunction(functionName,
+        arguments.stream().map(Supplier::get).toArray(Value[]::new));
+  }
 }
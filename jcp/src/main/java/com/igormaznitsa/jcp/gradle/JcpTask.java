@@ -2,26 +2,23 @@ package com.igormaznitsa.jcp.gradle;
 
 import static java.util.Collections.emptyMap;
 
-
-import com.igormaznitsa.jcp.JcpPreprocessor;
-import com.igormaznitsa.jcp.context.PreprocessorContext;
-import com.igormaznitsa.jcp.expression.Value;
-import com.igormaznitsa.jcp.logger.PreprocessorLogger;
+import com.igormaznitsa.jcp.context.IncrementalManifest;
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 import javax.inject.Inject;
 import org.apache.commons.io.FilenameUtils;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.FileType;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.model.ObjectFactory;
 import org.gradle.api.provider.ListProperty;
@@ -29,7 +26,12 @@ import org.gradle.api.provider.MapProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.*;
 import org.gradle.execution.commandline.TaskConfigurationException;
+import org.gradle.work.FileChange;
+import org.gradle.work.Incremental;
+import org.gradle.work.InputChanges;
+import org.gradle.workers.WorkerExecutor;
 
+@CacheableTask
 public class JcpTask extends DefaultTask {
 
   public static final String ID = "preprocess";
@@ -139,6 +141,33 @@ public class JcpTask extends DefaultTask {
    * new result content.
    */
   private final Property<Boolean> dontOverwriteSameContent;
+  /**
+   * Number of threads to preprocess files in parallel, 0 means number of
+   * available processors. It doesn't change result so it is not an input of the task.
+   */
+  private final Property<Integer> threads;
+  /**
+   * Skip files which inputs are unchanged since the previous preprocessing also if Gradle can't provide
+   * changes of sources.
+   */
+  private final Property<Boolean> incremental;
+
+  /**
+   * Source folders resolved against the base folder, their files are tracked by Gradle to provide
+   * changes for incremental preprocessing.
+   */
+  private final ConfigurableFileCollection sourceFiles;
+
+  /**
+   * Configuration files resolved against the base folder.
+   */
+  private final ConfigurableFileCollection configFileSet;
+
+  /**
+   * File to save lists of used and produced files, it is declared as output to be restored from
+   * build cache together with the target folder.
+   */
+  private final Property<File> reportFile;
 
   /**
    * Collection of all files which have been generated during preprocessing.
@@ -150,8 +179,18 @@ public class JcpTask extends DefaultTask {
    */
   private final ConfigurableFileCollection incomingFiles;
 
+  /**
+   * Project folder captured during configuration to be used as default base folder.
+   */
+  private final File projectDir;
+
+  private final WorkerExecutor workerExecutor;
+
   @Inject
-  public JcpTask(final ObjectFactory factory) {
+  public JcpTask(final ObjectFactory factory, final WorkerExecutor workerExecutor) {
+    this.workerExecutor = workerExecutor;
+    this.projectDir = this.getProject().getProjectDir();
+
     this.allowWhitespaces = factory.property(Boolean.class).convention(false);
     this.careForLastEol = factory.property(Boolean.class).convention(false);
     this.clearTarget = factory.property(Boolean.class).convention(false);
@@ -164,6 +203,8 @@ public class JcpTask extends DefaultTask {
     this.preserveIndents = factory.property(Boolean.class).convention(false);
     this.unknownVarAsFalse = factory.property(Boolean.class).convention(false);
     this.verbose = factory.property(Boolean.class).convention(false);
+    this.threads = factory.property(Integer.class).convention(1);
+    this.incremental = factory.property(Boolean.class).convention(false);
 
     this.targetEncoding = factory.property(String.class).convention(StandardCharsets.UTF_8.name());
     this.sourceEncoding = factory.property(String.class).convention(StandardCharsets.UTF_8.name());
@@ -179,15 +220,36 @@ public class JcpTask extends DefaultTask {
     this.fileExtensions = factory.listProperty(String.class)
         .convention(new ArrayList<>(Arrays.asList("java", "txt", "htm", "html")));
 
-    this.baseDir = factory.property(File.class).convention(this.getProject().getProjectDir());
+    this.baseDir = factory.property(File.class).convention(this.projectDir);
     this.target = factory.property(File.class).convention(new File(this.getProject().getBuildDir(),
         "java-comment-preprocessor" + File.separatorChar + this.getTaskIdentity().name));
 
-    this.incomingFiles = factory.fileCollection();
-    this.outcomingFiles = factory.fileCollection();
+    this.reportFile = factory.property(File.class)
+        .convention(new File(this.getProject().getBuildDir(), "java-comment-preprocessor-reports"
+            + File.separatorChar + this.getTaskIdentity().name + ".txt"));
+
+    this.incomingFiles = factory.fileCollection()
+        .from((Callable<List<File>>) () -> JcpWorkAction
+            .readReport(this.reportFile.get(), findBaseDir(), false));
+    this.outcomingFiles = factory.fileCollection()
+        .from((Callable<List<File>>) () -> JcpWorkAction
+            .readReport(this.reportFile.get(), this.target.get(), true));
+
+    this.sourceFiles = factory.fileCollection().from(this.sources.map(
+        list -> list.stream().map(this::resolveFile).collect(Collectors.toList())));
+    this.configFileSet = factory.fileCollection().from(this.configFiles.map(
+        list -> list.stream().map(x -> resolveFile(new File(x))).collect(Collectors.toList())));
+  }
+
+  private File findBaseDir() {
+    return this.baseDir.getOrElse(this.projectDir);
+  }
+
+  private File resolveFile(final File file) {
+    return file.isAbsolute() ? file : new File(findBaseDir(), file.getPath());
   }
 
-  @OutputFiles
+  @Internal
   public FileCollection getOutcomingFiles() {
     return this.outcomingFiles;
   }
@@ -203,11 +265,24 @@ public class JcpTask extends DefaultTask {
     return "Preprocess sources and resources with JCP";
   }
 
-  @InputFiles
+  @Internal
   public ListProperty<File> getSources() {
     return this.sources;
   }
 
+  @Incremental
+  @PathSensitive(PathSensitivity.RELATIVE)
+  @InputFiles
+  public FileCollection getSourceFiles() {
+    return this.sourceFiles;
+  }
+
+  @PathSensitive(PathSensitivity.RELATIVE)
+  @InputFiles
+  public FileCollection getConfigFileSet() {
+    return this.configFileSet;
+  }
+
   @Input
   public Property<String> getEol() {
     return this.eol;
@@ -218,11 +293,16 @@ public class JcpTask extends DefaultTask {
     return this.keepAttributes;
   }
 
-  @Input
+  @OutputDirectory
   public Property<File> getTarget() {
     return this.target;
   }
 
+  @OutputFile
+  public Property<File> getReportFile() {
+    return this.reportFile;
+  }
+
   @Input
   public Property<String> getSourceEncoding() {
     return this.sourceEncoding;
@@ -268,7 +348,7 @@ public class JcpTask extends DefaultTask {
     return clearTarget;
   }
 
-  @Input
+  @Internal
   public Property<File> getBaseDir() {
     return baseDir;
   }
@@ -318,47 +398,29 @@ public class JcpTask extends DefaultTask {
     return dontOverwriteSameContent;
   }
 
-  @TaskAction
-  public void preprocessTask() throws IOException {
-    final Logger logger = getProject().getLogger();
-
-    final File baseDirFile;
-    if (this.baseDir.isPresent()) {
-      baseDirFile = this.baseDir.get();
-    } else {
-      baseDirFile = this.getProject().getProjectDir();
-    }
-    logger.info("Base folder: " + baseDirFile);
-    final PreprocessorContext preprocessorContext = new PreprocessorContext(baseDirFile);
-
-    preprocessorContext.setPreprocessorLogger(new PreprocessorLogger() {
-      @Override
-      public void error(final String message) {
-        logger.error(message);
-      }
+  @Internal
+  public Property<Integer> getThreads() {
+    return threads;
+  }
 
-      @Override
-      public void info(final String message) {
-        logger.info(message);
-      }
+  @Input
+  public Property<Boolean> getIncremental() {
+    return incremental;
+  }
 
-      @Override
-      public void debug(final String message) {
-        logger.debug(message);
-      }
+  @TaskAction
+  public void preprocessTask(final InputChanges inputChanges) {
+    final Logger logger = getLogger();
 
-      @Override
-      public void warning(final String message) {
-        logger.warn(message);
-      }
-    });
+    final File baseDirFile = findBaseDir();
+    logger.info("Base folder: " + baseDirFile);
 
-    List<String> configFilesList = this.configFiles.get();
-    configFilesList.forEach(x -> {
-      final File cfgFile = new File(baseDirFile, x);
+    final List<File> configFilesList = new ArrayList<>();
+    this.configFiles.get().forEach(x -> {
+      final File cfgFile = resolveFile(new File(x));
       if (cfgFile.isFile()) {
         logger.debug("Adding config file: " + cfgFile);
-        preprocessorContext.registerConfigFile(cfgFile);
+        configFilesList.add(cfgFile);
       } else {
         throw new TaskExecutionException(this, new IOException(
             "Can't find config file: " + FilenameUtils.normalize(cfgFile.getAbsolutePath())));
@@ -367,7 +429,6 @@ public class JcpTask extends DefaultTask {
 
     final File targetFolder = this.target.get();
     logger.info("Target folder: " + targetFolder);
-    preprocessorContext.setTarget(targetFolder);
 
     final List<File> sourcesList = this.sources.get();
     if (sourcesList.isEmpty()) {
@@ -375,10 +436,9 @@ public class JcpTask extends DefaultTask {
           "Source folder list must be defined as 'sources'", null);
     }
 
-    List<File> preparedSourcesList = new ArrayList<>();
+    final List<File> preparedSourcesList = new ArrayList<>();
     for (final File srcFolder : sourcesList) {
-      final File srcFolderFile =
-          srcFolder.isAbsolute() ? srcFolder : new File(baseDirFile, srcFolder.getPath());
+      final File srcFolderFile = resolveFile(srcFolder);
       if (!this.ignoreMissingSources.get() || srcFolderFile.isDirectory()) {
         preparedSourcesList.add(srcFolderFile);
       }
@@ -389,41 +449,49 @@ public class JcpTask extends DefaultTask {
 
     logger.info("Source folders in use: " + preparedSourcesList);
 
-    preprocessorContext.setSources(
-        preparedSourcesList.stream().map(File::getAbsolutePath).collect(Collectors.toList()));
-    preprocessorContext.setEol(this.eol.get());
-    preprocessorContext.setExcludeFolders(this.excludeFolders.get());
-    preprocessorContext.setDontOverwriteSameContent(this.dontOverwriteSameContent.get());
-    preprocessorContext.setClearTarget(this.clearTarget.get());
-    preprocessorContext.setCareForLastEol(this.careForLastEol.get());
-    preprocessorContext.setKeepComments(this.keepComments.get());
-    preprocessorContext.setDryRun(this.dryRun.get());
-    preprocessorContext.setKeepAttributes(this.keepAttributes.get());
-    preprocessorContext.setKeepLines(this.keepLines.get());
-    preprocessorContext.setAllowWhitespaces(this.allowWhitespaces.get());
-    preprocessorContext.setExcludeExtensions(this.excludeExtensions.get());
-    preprocessorContext.setExtensions(this.fileExtensions.get());
-    preprocessorContext.setPreserveIndents(this.preserveIndents.get());
-    preprocessorContext.setSourceEncoding(Charset.forName(this.sourceEncoding.get()));
-    preprocessorContext.setTargetEncoding(Charset.forName(this.targetEncoding.get()));
-    preprocessorContext.setUnknownVariableAsFalse(this.unknownVarAsFalse.get());
-    preprocessorContext.setVerbose(this.verbose.get());
-
-    this.vars.getOrElse(emptyMap()).forEach((key, value) -> {
-      logger.debug(String.format("Registering global variable: %s=%s", key, value));
-      preprocessorContext.setGlobalVariable(key, Value.recognizeRawString(value));
-    });
-
-    final JcpPreprocessor preprocessor = new JcpPreprocessor(preprocessorContext);
-
-    logger.debug("Preprocessing starting");
-    preprocessor.execute();
-
-    final Collection<File> foundAllGeneratedFiles =
-        preprocessor.getContext().findAllProducedFiles();
-    final Collection<File> foundAllInputFiles = preprocessor.getContext().findAllInputFiles();
+    final List<File> changedFiles;
+    if (inputChanges.isIncremental()) {
+      changedFiles = StreamSupport
+          .stream(inputChanges.getFileChanges(this.sourceFiles).spliterator(), false)
+          .filter(x -> x.getFileType() != FileType.DIRECTORY)
+          .map(FileChange::getFile)
+          .collect(Collectors.toList());
+      logger.info("Incremental preprocessing, changed files: " + changedFiles.size());
+    } else {
+      changedFiles = Collections.emptyList();
+    }
 
-    this.outcomingFiles.setFrom(foundAllGeneratedFiles);
-    this.incomingFiles.setFrom(foundAllInputFiles);
+    final File reportFile = this.reportFile.get();
+    this.workerExecutor.noIsolation().submit(JcpWorkAction.class, parameters -> {
+      parameters.getBaseDir().set(baseDirFile);
+      parameters.getSources().set(preparedSourcesList);
+      parameters.getConfigFiles().set(configFilesList);
+      parameters.getTarget().set(targetFolder);
+      parameters.getEol().set(this.eol);
+      parameters.getKeepAttributes().set(this.keepAttributes);
+      parameters.getSourceEncoding().set(this.sourceEncoding);
+      parameters.getTargetEncoding().set(this.targetEncoding);
+      parameters.getExcludeExtensions().set(this.excludeExtensions);
+      parameters.getFileExtensions().set(this.fileExtensions);
+      parameters.getUnknownVarAsFalse().set(this.unknownVarAsFalse);
+      parameters.getDryRun().set(this.dryRun);
+      parameters.getVerbose().set(this.verbose);
+      parameters.getClearTarget().set(this.clearTarget);
+      parameters.getCareForLastEol().set(this.careForLastEol);
+      parameters.getKeepComments().set(this.keepComments);
+      parameters.getVars().set(this.vars.getOrElse(emptyMap()));
+      parameters.getExcludeFolders().set(this.excludeFolders);
+      parameters.getKeepLines().set(this.keepLines);
+      parameters.getAllowWhitespaces().set(this.allowWhitespaces);
+      parameters.getPreserveIndents().set(this.preserveIndents);
+      parameters.getDontOverwriteSameContent().set(this.dontOverwriteSameContent);
+      parameters.getThreads().set(this.threads);
+      parameters.getIncremental().set(this.incremental);
+      parameters.getChangesKnown().set(inputChanges.isIncremental());
+      parameters.getChangedFiles().set(changedFiles);
+      parameters.getReportFile().set(reportFile);
+      parameters.getManifestFile()
+          .set(new File(this.getTemporaryDir(), IncrementalManifest.FILE_NAME));
+    });
   }
 }
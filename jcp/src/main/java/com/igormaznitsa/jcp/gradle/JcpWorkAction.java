@@ -0,0 +1,168 @@
+package com.igormaznitsa.jcp.gradle;
+
+import static java.util.Collections.emptyMap;
+
+
+import com.igormaznitsa.jcp.JcpPreprocessor;
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.jcp.logger.PreprocessorLogger;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.workers.WorkAction;
+
+/**
+ * Work action making preprocessing for {@link JcpTask}, it uses only isolated parameters so that it can be
+ * executed in parallel with other tasks and it is compatible with the configuration cache.
+ *
+ * @since 7.0.6
+ */
+public abstract class JcpWorkAction implements WorkAction<JcpWorkParameters> {
+
+  private static final String REPORT_INPUT_PREFIX = "I:";
+  private static final String REPORT_OUTPUT_PREFIX = "O:";
+
+  /**
+   * Read list of files from a report saved by the action. Paths are kept in the report relative to
+   * the base folder for used files and relative to the target folder for produced files, so that the
+   * report doesn't depend on location of the project.
+   *
+   * @param reportFile report file, must not be null
+   * @param folder     folder to resolve relative paths, the base folder for used files and the target
+   *                   folder for produced files, must not be null
+   * @param produced   true if produced files to be read, false if used files
+   * @return list of files, empty if there is no report, must not be null
+   * @throws IOException if the report can't be read
+   */
+  static List<File> readReport(final File reportFile, final File folder, final boolean produced)
+      throws IOException {
+    if (!reportFile.isFile()) {
+      return Collections.emptyList();
+    }
+    final String prefix = produced ? REPORT_OUTPUT_PREFIX : REPORT_INPUT_PREFIX;
+    return FileUtils.readLines(reportFile, StandardCharsets.UTF_8).stream()
+        .filter(x -> x.startsWith(prefix))
+        .map(x -> {
+          final File file = new File(FilenameUtils.separatorsToSystem(x.substring(prefix.length())));
+          return file.isAbsolute() ? file :
+              new File(FilenameUtils.normalize(new File(folder, file.getPath()).getAbsolutePath()));
+        })
+        .collect(Collectors.toList());
+  }
+
+  private static String makeReportPath(final File folder, final File file) {
+    final Path path = file.toPath().toAbsolutePath().normalize();
+    try {
+      return FilenameUtils.separatorsToUnix(
+          folder.toPath().toAbsolutePath().normalize().relativize(path).toString());
+    } catch (IllegalArgumentException ex) {
+      // file is placed on another root
+      return path.toString();
+    }
+  }
+
+  private static void writeReport(final File reportFile, final File baseFolder,
+                                  final File targetFolder, final Collection<File> used,
+                                  final Collection<File> produced) throws IOException {
+    final List<String> lines = new ArrayList<>();
+    used.forEach(x -> lines.add(REPORT_INPUT_PREFIX + makeReportPath(baseFolder, x)));
+    produced.forEach(x -> lines.add(REPORT_OUTPUT_PREFIX + makeReportPath(targetFolder, x)));
+    FileUtils.writeLines(reportFile, StandardCharsets.UTF_8.name(), lines, "\n");
+  }
+
+  @Override
+  public void execute() {
+    final JcpWorkParameters parameters = getParameters();
+    final Logger logger = Logging.getLogger(JcpTask.class);
+
+    final PreprocessorContext preprocessorContext =
+        new PreprocessorContext(parameters.getBaseDir().get());
+    preprocessorContext.setPreprocessorLogger(new PreprocessorLogger() {
+      @Override
+      public void error(final String message) {
+        logger.error(message);
+      }
+
+      @Override
+      public void info(final String message) {
+        logger.info(message);
+      }
+
+      @Override
+      public void debug(final String message) {
+        logger.debug(message);
+      }
+
+      @Override
+      public void warning(final String message) {
+        logger.warn(message);
+      }
+    });
+
+    parameters.getConfigFiles().get().forEach(preprocessorContext::registerConfigFile);
+    final File targetFolder = parameters.getTarget().get();
+    preprocessorContext.setTarget(targetFolder);
+    preprocessorContext.setSources(parameters.getSources().get().stream()
+        .map(File::getAbsolutePath).collect(Collectors.toList()));
+
+    final boolean changesKnown = parameters.getChangesKnown().get();
+
+    preprocessorContext.setEol(parameters.getEol().get());
+    preprocessorContext.setExcludeFolders(parameters.getExcludeFolders().get());
+    preprocessorContext
+        .setDontOverwriteSameContent(parameters.getDontOverwriteSameContent().get());
+    preprocessorContext.setClearTarget(parameters.getClearTarget().get() && !changesKnown);
+    preprocessorContext.setCareForLastEol(parameters.getCareForLastEol().get());
+    preprocessorContext.setKeepComments(parameters.getKeepComments().get());
+    preprocessorContext.setDryRun(parameters.getDryRun().get());
+    preprocessorContext.setKeepAttributes(parameters.getKeepAttributes().get());
+    preprocessorContext.setKeepLines(parameters.getKeepLines().get());
+    preprocessorContext.setAllowWhitespaces(parameters.getAllowWhitespaces().get());
+    preprocessorContext.setExcludeExtensions(parameters.getExcludeExtensions().get());
+    preprocessorContext.setExtensions(parameters.getFileExtensions().get());
+    preprocessorContext.setPreserveIndents(parameters.getPreserveIndents().get());
+    preprocessorContext
+        .setSourceEncoding(Charset.forName(parameters.getSourceEncoding().get()));
+    preprocessorContext
+        .setTargetEncoding(Charset.forName(parameters.getTargetEncoding().get()));
+    preprocessorContext.setUnknownVariableAsFalse(parameters.getUnknownVarAsFalse().get());
+    preprocessorContext.setVerbose(parameters.getVerbose().get());
+    preprocessorContext.setThreads(parameters.getThreads().get());
+    preprocessorContext.setIncremental(true);
+    final File manifestFile = parameters.getManifestFile().get();
+    preprocessorContext.setManifestFile(manifestFile);
+
+    parameters.getVars().getOrElse(emptyMap()).forEach((key, value) -> {
+      logger.debug(String.format("Registering global variable: %s=%s", key, value));
+      preprocessorContext.setGlobalVariable(key, Value.recognizeRawString(value));
+    });
+
+    if (!changesKnown && !parameters.getIncremental().get() && manifestFile.isFile()
+        && !manifestFile.delete()) {
+      logger.warn("Can't delete incremental manifest: " + manifestFile);
+    }
+
+    final JcpPreprocessor preprocessor = new JcpPreprocessor(preprocessorContext);
+    logger.debug("Preprocessing starting");
+    try {
+      preprocessor.execute(changesKnown ? parameters.getChangedFiles().get() : null);
+      writeReport(parameters.getReportFile().get(), parameters.getBaseDir().get(), targetFolder,
+          preprocessorContext.findAllInputFiles(), preprocessorContext.findAllProducedFiles());
+    } catch (IOException ex) {
+      throw new GradleException("Error during preprocessing", ex);
+    }
+  }
+}
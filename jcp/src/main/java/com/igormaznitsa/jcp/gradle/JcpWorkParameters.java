@@ -0,0 +1,87 @@
+package com.igormaznitsa.jcp.gradle;
+
+import java.io.File;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkParameters;
+
+/**
+ * Parameters of preprocessing work, they are captured from {@link JcpTask} during its execution and
+ * isolated from the project model.
+ *
+ * @since 7.0.6
+ */
+public interface JcpWorkParameters extends WorkParameters {
+
+  Property<File> getBaseDir();
+
+  ListProperty<File> getSources();
+
+  ListProperty<File> getConfigFiles();
+
+  Property<File> getTarget();
+
+  Property<String> getEol();
+
+  Property<Boolean> getKeepAttributes();
+
+  Property<String> getSourceEncoding();
+
+  Property<String> getTargetEncoding();
+
+  ListProperty<String> getExcludeExtensions();
+
+  ListProperty<String> getFileExtensions();
+
+  Property<Boolean> getUnknownVarAsFalse();
+
+  Property<Boolean> getDryRun();
+
+  Property<Boolean> getVerbose();
+
+  Property<Boolean> getClearTarget();
+
+  Property<Boolean> getCareForLastEol();
+
+  Property<Boolean> getKeepComments();
+
+  MapProperty<String, String> getVars();
+
+  ListProperty<String> getExcludeFolders();
+
+  Property<Boolean> getKeepLines();
+
+  Property<Boolean> getAllowWhitespaces();
+
+  Property<Boolean> getPreserveIndents();
+
+  Property<Boolean> getDontOverwriteSameContent();
+
+  Property<Integer> getThreads();
+
+  Property<Boolean> getIncremental();
+
+  /**
+   * Flag shows that changed files are provided by Gradle and other files are unchanged.
+   *
+   * @return property of the flag
+   */
+  Property<Boolean> getChangesKnown();
+
+  ListProperty<File> getChangedFiles();
+
+  /**
+   * File to keep incremental manifest, it must be outside of the target folder.
+   *
+   * @return property of the manifest file
+   */
+  Property<File> getManifestFile();
+
+  /**
+   * File to save lists of used and produced files for the task.
+   *
+   * @return property of the report file
+   */
+  Property<File> getReportFile();
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Logger collects messages in memory to be printed later through another logger,
+ * it allows to keep stable order of output for files preprocessed in parallel.
+ *
+ * @since 7.0.6
+ */
+public final class BufferedLogger implements PreprocessorLogger {
+
+  private final List<Record> records = new ArrayList<>();
+
+  @Override
+  public synchronized void error(final String message) {
+    this.records.add(new Record(Level.ERROR, message));
+  }
+
+  @Override
+  public synchronized void info(final String message) {
+    this.records.add(new Record(Level.INFO, message));
+  }
+
+  @Override
+  public synchronized void debug(final String message) {
+    this.records.add(new Record(Level.DEBUG, message));
+  }
+
+  @Override
+  public synchronized void warning(final String message) {
+    this.records.add(new Record(Level.WARNING, message));
+  }
+
+  /**
+   * Print all collected messages through a logger in the order they were logged and clear the buffer.
+   *
+   * @param logger logger to get messages, can be null and in the case messages are just dropped
+   */
+  public synchronized void flushTo(final PreprocessorLogger logger) {
+    if (logger != null) {
+      for (final Record record : this.records) {
+        switch (record.level) {
+          case ERROR:
+            logger.error(record.message);
+            break;
+          case INFO:
+            logger.info(record.message);
+            break;
+          case DEBUG:
+            logger.debug(record.message);
+            break;
+          case WARNING:
+            logger.warning(record.message);
+            break;
+          default:
+            throw new Error("Unexpected level: " + record.level);
+        }
+      }
+    }
+    this.records.clear();
+  }
+
+  private enum Level {
+    ERROR,
+    INFO,
+    DEBUG,
+    WARNING
+  }
+
+  private static final class Record {
+    private final Level level;
+    private final String message;
+
+    private Record(final Level level, final String message) {
+      this.level = level;
+      this.message = message;
+    }
+  }
+}
@@ -31,6 +31,7 @@ import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import org.apache.maven.execution.MavenSession;
@@ -76,6 +77,18 @@ public class MavenPropertiesImporter implements SpecialVariableProcessor {
           "project.organization.name",
           "project.organization.url"};
 
+  /**
+   * Found getters for classes, they are shared by importers of all modules. Class value doesn't keep
+   * class loaders of classes alive.
+   */
+  private static final ClassValue<Map<String, Method>> GETTER_CACHE =
+      new ClassValue<Map<String, Method>>() {
+        @Override
+        protected Map<String, Method> computeValue(final Class<?> type) {
+          return new ConcurrentHashMap<>();
+        }
+      };
+
   private final Map<String, Value> insideVarMap = new HashMap<>();
   private final MavenProject project;
   private final MavenSession session;
@@ -137,7 +150,7 @@ public class MavenPropertiesImporter implements SpecialVariableProcessor {
                 "Unsupported root object detected [" + splitted[0] + ']');
       } else {
         for (int i = 1; i < splitted.length - 1; i++) {
-          final Method getter = root.getClass().getMethod(normalizeGetter(splitted[i]));
+          final Method getter = findGetter(root.getClass(), splitted[i]);
           root = getter.invoke(root);
           if (root == null) {
             return "";
@@ -145,7 +158,7 @@ public class MavenPropertiesImporter implements SpecialVariableProcessor {
         }
 
         final Method finalStringGetter =
-                root.getClass().getMethod(normalizeGetter(splitted[splitted.length - 1]));
+                findGetter(root.getClass(), splitted[splitted.length - 1]);
         final Object result = finalStringGetter.invoke(root);
         return result == null ? "" : result.toString();
       }
@@ -159,6 +172,17 @@ public class MavenPropertiesImporter implements SpecialVariableProcessor {
   }
 
 
+  private static Method findGetter(final Class<?> type, final String name)
+      throws NoSuchMethodException {
+    final Map<String, Method> getters = GETTER_CACHE.get(type);
+    Method result = getters.get(name);
+    if (result == null) {
+      result = type.getMethod(normalizeGetter(name));
+      getters.put(name, result);
+    }
+    return result;
+  }
+
   static String normalizeGetter(final String str) {
     return "get" + Character.toUpperCase(str.charAt(0)) + str.substring(1);
   }
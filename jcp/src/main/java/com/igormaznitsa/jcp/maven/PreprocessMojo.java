@@ -25,6 +25,7 @@ import static com.igormaznitsa.jcp.utils.GetUtils.ensureNonNull;
 
 
 import com.igormaznitsa.jcp.JcpPreprocessor;
+import com.igormaznitsa.jcp.context.IncrementalManifest;
 import com.igormaznitsa.jcp.context.PreprocessorContext;
 import com.igormaznitsa.jcp.exceptions.PreprocessorException;
 import com.igormaznitsa.jcp.expression.Value;
@@ -50,10 +51,13 @@ import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.Scanner;
+import org.sonatype.plexus.build.incremental.BuildContext;
 
 /**
  * Mojo to preprocess either standard maven project source roots or custom source roots and place prepsocessed result into defined target folder.
@@ -299,6 +303,52 @@ public class PreprocessMojo extends AbstractMojo implements PreprocessorLogger {
   @Parameter(alias = "dontOverwriteSameContent", defaultValue = "false")
   private boolean dontOverwriteSameContent = false;
 
+  /**
+   * Number of threads to preprocess files in parallel, 0 means number of available processors.
+   * Result is the same as for sequential preprocessing.
+   *
+   * @since 7.0.6
+   */
+  @Parameter(alias = "threads", defaultValue = "1")
+  private int threads = 1;
+
+  /**
+   * Skip files which inputs are unchanged since the previous preprocessing, state is kept in the manifest
+   * file.
+   *
+   * @since 7.0.6
+   */
+  @Parameter(alias = "incremental", defaultValue = "false")
+  private boolean incremental = false;
+
+  /**
+   * Skip preprocessing if sources and configuration are unchanged since the previous execution, else
+   * preprocess only changed files and files which depend on them. It turns on incremental mode, the target
+   * folder is not cleared if the incremental manifest is valid.
+   *
+   * @since 7.0.6
+   */
+  @Parameter(alias = "skipUnchanged", property = "jcp.preprocess.skipUnchanged", defaultValue = "false")
+  private boolean skipUnchanged = false;
+
+  /**
+   * File to keep state of incremental preprocessing, if not defined then it is placed in the build folder
+   * of the project so that it is not packed together with preprocessed sources and resources.
+   *
+   * @since 7.0.6
+   */
+  @Parameter(alias = "manifestFile")
+  private File manifestFile = null;
+
+  /**
+   * Build context to get changed files during incremental builds in IDE and to notify IDE about results.
+   *
+   * @since 7.0.6
+   */
+  @Setter(AccessLevel.NONE)
+  @Component
+  private BuildContext buildContext;
+
 
   private List<String> formSourceRootList() {
     List<String> result = Collections.emptyList();
@@ -359,6 +409,7 @@ public class PreprocessMojo extends AbstractMojo implements PreprocessorLogger {
   PreprocessorContext makePreprocessorContext() throws IOException {
     final PreprocessorContext context = new PreprocessorContext(this.getBaseDir());
     context.setPreprocessorLogger(this);
+    context.setFileDataCache(ReactorFileCache.forSession(this.session));
 
     if (this.project != null) {
       final MavenPropertiesImporter mavenPropertiesImporter =
@@ -390,6 +441,9 @@ public class PreprocessMojo extends AbstractMojo implements PreprocessorLogger {
     info("Target folder: " + context.getTarget());
 
     context.setUnknownVariableAsFalse(this.isUnknownVarAsFalse());
+    context.setThreads(this.getThreads());
+    context.setIncremental(this.isIncremental());
+    context.setManifestFile(findManifestFile());
     context.setDontOverwriteSameContent(this.isDontOverwriteSameContent());
     context.setClearTarget(this.isClearTarget());
     context.setCareForLastEol(this.isCareForLastEol());
@@ -413,6 +467,68 @@ public class PreprocessMojo extends AbstractMojo implements PreprocessorLogger {
     return context;
   }
 
+  private File findManifestFile() {
+    if (this.getManifestFile() != null) {
+      return this.getManifestFile();
+    }
+    if (this.project == null || this.project.getBuild() == null
+        || this.project.getBuild().getDirectory() == null) {
+      return null;
+    }
+    return new File(new File(this.project.getBuild().getDirectory(), "jcp-manifests"),
+        (this.isUseTestSources() ? "test" : "main") + IncrementalManifest.FILE_NAME);
+  }
+
+  private List<File> findBuildContextChanges(final List<File> sourceFolders,
+                                             final List<File> configFiles) {
+    for (final File file : configFiles) {
+      if (this.buildContext.hasDelta(file)) {
+        return null;
+      }
+    }
+    final List<File> result = new ArrayList<>();
+    for (final File folder : sourceFolders) {
+      if (folder.isDirectory() && this.buildContext.hasDelta(folder)) {
+        addScannedFiles(folder, this.buildContext.newScanner(folder), result);
+        addScannedFiles(folder, this.buildContext.newDeleteScanner(folder), result);
+      }
+    }
+    return result;
+  }
+
+  private static void addScannedFiles(final File folder, final Scanner scanner,
+                                      final List<File> result) {
+    scanner.scan();
+    for (final String path : scanner.getIncludedFiles()) {
+      result.add(new File(folder, path));
+    }
+  }
+
+  private void preprocessIncrementally(final JcpPreprocessor preprocessor) throws IOException {
+    final PreprocessorContext context = preprocessor.getContext();
+    context.setIncremental(true);
+
+    List<File> changedFiles = null;
+    if (this.buildContext != null && this.buildContext.isIncremental()
+        && context.findManifestFile().isFile()) {
+      changedFiles = findBuildContextChanges(context.getSources().stream()
+          .map(PreprocessorContext.SourceFolder::getAsFile)
+          .collect(Collectors.toList()), context.getConfigFiles());
+    }
+
+    if (changedFiles == null) {
+      preprocessor.execute();
+    } else {
+      info("Changed files since the previous preprocessing: " + changedFiles.size());
+      context.setClearTarget(false);
+      preprocessor.execute(changedFiles);
+    }
+
+    if (this.buildContext != null) {
+      this.buildContext.refresh(context.getTarget());
+    }
+  }
+
   @Override
   public void execute() throws MojoExecutionException, MojoFailureException {
     if (this.isSkip()) {
@@ -439,7 +555,11 @@ public class PreprocessMojo extends AbstractMojo implements PreprocessorLogger {
       } else {
         try {
           final JcpPreprocessor preprocessor = new JcpPreprocessor(context);
-          preprocessor.execute();
+          if (this.isSkipUnchanged() && !context.isDryRun()) {
+            preprocessIncrementally(preprocessor);
+          } else {
+            preprocessor.execute();
+          }
           if (this.isReplaceSources()) {
             replaceSourceRootByPreprocessingDestinationFolder(context);
           }
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.maven;
+
+import com.igormaznitsa.jcp.context.FileDataCache;
+import java.util.Map;
+import java.util.WeakHashMap;
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Keeper of file data caches shared between all modules of a build. Maven 3.0 doesn't provide
+ * session scope for components so that caches are kept for execution requests, the request is the
+ * same for all session clones made for parallel module builds and it is released after the build.
+ */
+final class ReactorFileCache {
+
+  private static final Map<Object, FileDataCache> CACHES = new WeakHashMap<>();
+
+  private ReactorFileCache() {
+  }
+
+  /**
+   * Get file data cache for build session.
+   *
+   * @param session build session, can be null
+   * @return cache shared by all modules of the session build, null if there is not any request
+   */
+  static FileDataCache forSession(final MavenSession session) {
+    if (session == null || session.getRequest() == null) {
+      return null;
+    }
+    synchronized (CACHES) {
+      return CACHES.computeIfAbsent(session.getRequest(), x -> new FileDataCache());
+    }
+  }
+}
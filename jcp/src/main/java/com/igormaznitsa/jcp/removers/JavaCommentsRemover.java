@@ -27,12 +27,15 @@ import java.io.Writer;
 import java.util.Objects;
 
 /**
- * A remover allows to cut off all Java like comments from a reader and write the result into a writer
+ * A remover allows to cut off all Java like comments from a reader and write the result into a writer,
+ * chars are read by blocks and processed through {@link JavaCommentsRemovingWriter}
  *
  * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
  */
 public class JavaCommentsRemover {
 
+  private static final int BUFFER_SIZE = 8192;
+
   private final Reader srcReader;
   private final Writer dstWriter;
 
@@ -43,120 +46,17 @@ public class JavaCommentsRemover {
     this.dstWriter = dst;
   }
 
-  private void skipUntilNextString() throws IOException {
-    while (!Thread.currentThread().isInterrupted()) {
-      final int chr = srcReader.read();
-      if (chr < 0) {
-        return;
-      }
-
-      if (chr == '\n') {
-        this.dstWriter.write(chr);
-        return;
-      }
-    }
-  }
-
-  private void skipUntilClosingComments() throws IOException {
-    boolean starFound = false;
-
-    while (!Thread.currentThread().isInterrupted()) {
-      final int chr = srcReader.read();
-      if (chr < 0) {
-        return;
-      }
-      if (starFound) {
-        if (chr == '/') {
-          return;
-        } else {
-          starFound = chr == '*';
-        }
-      } else if (chr == '*') {
-        starFound = true;
-      }
-    }
-  }
-
-
   public Writer process() throws IOException {
-    final int STATE_NORMAL = 0;
-    final int STATE_INSIDE_STRING = 1;
-    final int STATE_NEXT_SPECIAL_CHAR = 2;
-    final int STATE_FORWARD_SLASH = 3;
-
-    int state = STATE_NORMAL;
-
+    final JavaCommentsRemovingWriter filter = new JavaCommentsRemovingWriter(this.dstWriter);
+    final char[] buffer = new char[BUFFER_SIZE];
     while (!Thread.currentThread().isInterrupted()) {
-      final int chr = this.srcReader.read();
-      if (chr < 0) {
-        break;
-      }
-
-      switch (state) {
-        case STATE_NORMAL: {
-          switch (chr) {
-            case '\"': {
-              dstWriter.write(chr);
-              state = STATE_INSIDE_STRING;
-            }
-            break;
-            case '/': {
-              state = STATE_FORWARD_SLASH;
-            }
-            break;
-            default: {
-              dstWriter.write(chr);
-            }
-            break;
-          }
-        }
-        break;
-        case STATE_FORWARD_SLASH: {
-          switch (chr) {
-            case '*': {
-              skipUntilClosingComments();
-              state = STATE_NORMAL;
-            }
-            break;
-            case '/': {
-              skipUntilNextString();
-              state = STATE_NORMAL;
-            }
-            break;
-            default: {
-              dstWriter.write('/');
-              dstWriter.write(chr);
-              state = STATE_NORMAL;
-            }
-            break;
-          }
-        }
-        break;
-        case STATE_INSIDE_STRING: {
-          switch (chr) {
-            case '\\': {
-              state = STATE_NEXT_SPECIAL_CHAR;
-            }
-            break;
-            case '\"': {
-              state = STATE_NORMAL;
-            }
-            break;
-            default:
-              break;
-          }
-          dstWriter.write(chr);
-        }
-        break;
-        case STATE_NEXT_SPECIAL_CHAR: {
-          dstWriter.write(chr);
-          state = STATE_INSIDE_STRING;
-        }
+      final int read = this.srcReader.read(buffer);
+      if (read < 0) {
         break;
-        default:
-          throw new IllegalStateException("Unexpected state: " + state);
       }
+      filter.write(buffer, 0, read);
     }
-    return dstWriter;
+    filter.finish();
+    return this.dstWriter;
   }
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.removers;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Objects;
+
+/**
+ * Writer filter cuts off all Java like comments from written chars and passes the rest into the
+ * destination writer. Chars are processed by blocks, so runs of code, string content and comments are
+ * scanned without per-char calls. Char sequence can be split between writes in any place.
+ *
+ * @since 7.0.6
+ */
+public class JavaCommentsRemovingWriter extends Writer {
+
+  private static final int STATE_NORMAL = 0;
+  private static final int STATE_INSIDE_STRING = 1;
+  private static final int STATE_NEXT_SPECIAL_CHAR = 2;
+  private static final int STATE_FORWARD_SLASH = 3;
+  private static final int STATE_LINE_COMMENT = 4;
+  private static final int STATE_BLOCK_COMMENT = 5;
+  private static final int STATE_BLOCK_COMMENT_STAR = 6;
+
+  private final Writer dstWriter;
+  private final char[] singleChar = new char[1];
+  private int state = STATE_NORMAL;
+  private boolean finished;
+
+  public JavaCommentsRemovingWriter(final Writer dst) {
+    this.dstWriter = Objects.requireNonNull(dst, "The writer is null");
+  }
+
+  @Override
+  public void write(final int chr) throws IOException {
+    this.singleChar[0] = (char) chr;
+    write(this.singleChar, 0, 1);
+  }
+
+  @Override
+  public void write(final char[] buffer, final int offset, final int length) throws IOException {
+    final int end = offset + length;
+    int index = offset;
+    while (index < end) {
+      switch (this.state) {
+        case STATE_NORMAL: {
+          final int start = index;
+          while (index < end && buffer[index] != '\"' && buffer[index] != '/') {
+            index++;
+          }
+          if (index < end && buffer[index] == '\"') {
+            index++;
+            this.state = STATE_INSIDE_STRING;
+          }
+          if (index > start) {
+            this.dstWriter.write(buffer, start, index - start);
+          }
+          if (index < end && this.state == STATE_NORMAL) {
+            index++;
+            this.state = STATE_FORWARD_SLASH;
+          }
+        }
+        break;
+        case STATE_FORWARD_SLASH: {
+          final char chr = buffer[index++];
+          if (chr == '*') {
+            this.state = STATE_BLOCK_COMMENT;
+          } else if (chr == '/') {
+            this.state = STATE_LINE_COMMENT;
+          } else {
+            this.dstWriter.write('/');
+            this.dstWriter.write(chr);
+            this.state = STATE_NORMAL;
+          }
+        }
+        break;
+        case STATE_LINE_COMMENT: {
+          while (index < end && buffer[index] != '\n') {
+            index++;
+          }
+          if (index < end) {
+            index++;
+            this.dstWriter.write('\n');
+            this.state = STATE_NORMAL;
+          }
+        }
+        break;
+        case STATE_BLOCK_COMMENT: {
+          while (index < end && buffer[index] != '*') {
+            index++;
+          }
+          if (index < end) {
+            index++;
+            this.state = STATE_BLOCK_COMMENT_STAR;
+          }
+        }
+        break;
+        case STATE_BLOCK_COMMENT_STAR: {
+          final char chr = buffer[index++];
+          if (chr == '/') {
+            this.state = STATE_NORMAL;
+          } else if (chr != '*') {
+            this.state = STATE_BLOCK_COMMENT;
+          }
+        }
+        break;
+        case STATE_INSIDE_STRING: {
+          final int start = index;
+          while (index < end && buffer[index] != '\\' && buffer[index] != '\"') {
+            index++;
+          }
+          if (index < end) {
+            this.state = buffer[index] == '\\' ? STATE_NEXT_SPECIAL_CHAR : STATE_NORMAL;
+            index++;
+          }
+          this.dstWriter.write(buffer, start, index - start);
+        }
+        break;
+        case STATE_NEXT_SPECIAL_CHAR: {
+          this.dstWriter.write(buffer[index++]);
+          this.state = STATE_INSIDE_STRING;
+        }
+        break;
+        default:
+          throw new IllegalStateException("Unexpected state: " + this.state);
+      }
+    }
+  }
+
+  /**
+   * Write pending chars at the end of text into the destination writer without its closing, forward
+   * slash at the end of text is not a comment start and it is written as is.
+   *
+   * @throws IOException if any error during writing
+   */
+  public void finish() throws IOException {
+    if (!this.finished) {
+      this.finished = true;
+      if (this.state == STATE_FORWARD_SLASH) {
+        this.dstWriter.write('/');
+      }
+      this.state = STATE_NORMAL;
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    this.dstWriter.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      finish();
+    } finally {
+      this.dstWriter.close();
+    }
+  }
+}
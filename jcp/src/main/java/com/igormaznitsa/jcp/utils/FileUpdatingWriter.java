@@ -0,0 +1,209 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * Writer encodes chars into bytes and puts them into a file. If the file should be overwritten only
+ * for changed content then encoded bytes are compared with the existing file content chunk by chunk and
+ * writing starts only from the first different chunk, so the same content is not written at all and
+ * any full copy of content is not made.
+ *
+ * @since 7.0.6
+ */
+public final class FileUpdatingWriter extends Writer {
+
+  private final FileChannel channel;
+  private final CharsetEncoder encoder;
+  private final CharBuffer chars;
+  private final ByteBuffer bytes;
+  private final ByteBuffer existing;
+  private long position;
+  private boolean changed;
+  private boolean closed;
+
+  /**
+   * Open file for writing.
+   *
+   * @param file          target file, must not be null
+   * @param charset       charset for encoding, must not be null
+   * @param onlyIfChanged true if the file should not be touched for the same content
+   * @param bufferSize    size of inside buffers in chars and bytes
+   * @throws IOException if the file can't be opened
+   */
+  public FileUpdatingWriter(final File file, final Charset charset, final boolean onlyIfChanged,
+                            final int bufferSize) throws IOException {
+    Objects.requireNonNull(file, "File is null");
+    this.encoder = Objects.requireNonNull(charset, "Charset is null").newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    this.changed = !onlyIfChanged || !file.isFile();
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    final int size = Math.max(64, bufferSize);
+    this.chars = CharBuffer.allocate(size);
+    this.bytes = ByteBuffer.allocate(
+        Math.max(size, (int) Math.ceil(size * (double) this.encoder.maxBytesPerChar())));
+    this.existing = this.changed ? null : ByteBuffer.allocate(this.bytes.capacity());
+  }
+
+  /**
+   * Check that the file content has been changed, the result is actual after close.
+   *
+   * @return true if bytes have been written into the file
+   */
+  public boolean isChanged() {
+    return this.changed;
+  }
+
+  @Override
+  public void write(final int chr) throws IOException {
+    if (!this.chars.hasRemaining()) {
+      encodeChars(false);
+    }
+    this.chars.put((char) chr);
+  }
+
+  @Override
+  public void write(final char[] buffer, final int offset, final int length) throws IOException {
+    int index = offset;
+    final int end = offset + length;
+    while (index < end) {
+      if (!this.chars.hasRemaining()) {
+        encodeChars(false);
+      }
+      final int portion = Math.min(end - index, this.chars.remaining());
+      this.chars.put(buffer, index, portion);
+      index += portion;
+    }
+  }
+
+  @Override
+  public void write(final String text, final int offset, final int length) throws IOException {
+    int index = offset;
+    final int end = offset + length;
+    while (index < end) {
+      if (!this.chars.hasRemaining()) {
+        encodeChars(false);
+      }
+      final int portion = Math.min(end - index, this.chars.remaining());
+      this.chars.put(text, index, index + portion);
+      index += portion;
+    }
+  }
+
+  @Override
+  public Writer append(final CharSequence text) throws IOException {
+    if (text instanceof CharBuffer) {
+      final CharBuffer source = ((CharBuffer) text).duplicate();
+      final int end = source.limit();
+      while (source.position() < end) {
+        if (!this.chars.hasRemaining()) {
+          encodeChars(false);
+        }
+        source.limit(Math.min(end, source.position() + this.chars.remaining()));
+        this.chars.put(source);
+      }
+    } else {
+      final CharSequence sequence = text == null ? "null" : text;
+      for (int i = 0; i < sequence.length(); i++) {
+        write(sequence.charAt(i));
+      }
+    }
+    return this;
+  }
+
+  private void encodeChars(final boolean endOfInput) throws IOException {
+    this.chars.flip();
+    while (true) {
+      final CoderResult result = this.encoder.encode(this.chars, this.bytes, endOfInput);
+      if (result.isOverflow()) {
+        writeBytes();
+      } else if (result.isUnderflow()) {
+        break;
+      } else {
+        result.throwException();
+      }
+    }
+    this.chars.compact();
+  }
+
+  private void writeBytes() throws IOException {
+    this.bytes.flip();
+    if (!this.changed) {
+      this.existing.clear().limit(this.bytes.remaining());
+      while (this.existing.hasRemaining()) {
+        if (this.channel.read(this.existing, this.position + this.existing.position()) < 0) {
+          break;
+        }
+      }
+      this.existing.flip();
+      this.changed = !this.existing.equals(this.bytes);
+    }
+    if (this.changed) {
+      while (this.bytes.hasRemaining()) {
+        this.position += this.channel.write(this.bytes, this.position);
+      }
+    } else {
+      this.position += this.bytes.remaining();
+    }
+    this.bytes.clear();
+  }
+
+  @Override
+  public void flush() {
+    // content is written on close
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+    try {
+      encodeChars(true);
+      while (this.encoder.flush(this.bytes).isOverflow()) {
+        writeBytes();
+      }
+      writeBytes();
+      if (this.channel.size() != this.position) {
+        this.changed = true;
+        this.channel.truncate(this.position);
+      }
+    } finally {
+      this.channel.close();
+    }
+  }
+}
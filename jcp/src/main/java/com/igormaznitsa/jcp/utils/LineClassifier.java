@@ -0,0 +1,238 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.utils;
+
+/**
+ * Scanner to classify a left trimmed source line by its preprocessor prefix and to find parts of the
+ * line without regular expressions. If whitespaces are allowed then whitespaces are allowed between
+ * the comment and the marker char, like in {@code // #if}.
+ *
+ * @since 7.0.6
+ */
+public final class LineClassifier {
+
+  private LineClassifier() {
+  }
+
+  /**
+   * Find position of marker char, it is the first char after the line comment and allowed
+   * whitespaces.
+   *
+   * @param line              the line to be checked, must not be null
+   * @param allowWhitespaces  allow whitespaces before and after the line comment
+   * @return position of the marker char or -1 if the line is not started by line comment or if the
+   * line contains line terminator chars which are not allowed in a directive line
+   */
+  private static int findMarker(final String line, final boolean allowWhitespaces) {
+    final int length = line.length();
+    if (allowWhitespaces) {
+      int index = skipWhitespaces(line, 0);
+      if (index + 2 > length || line.charAt(index) != '/' || line.charAt(index + 1) != '/') {
+        return -1;
+      }
+      index = skipWhitespaces(line, index + 2);
+      return index < length && !hasLineTerminator(line, index) ? index : -1;
+    } else {
+      return length > 2 && line.charAt(0) == '/' && line.charAt(1) == '/' ? 2 : -1;
+    }
+  }
+
+  private static boolean isWhitespace(final char chr) {
+    switch (chr) {
+      case ' ':
+      case '\t':
+      case '\n':
+      case '\u000B':
+      case '\f':
+      case '\r':
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static int skipWhitespaces(final String line, final int from) {
+    int index = from;
+    while (index < line.length() && isWhitespace(line.charAt(index))) {
+      index++;
+    }
+    return index;
+  }
+
+  private static boolean hasLineTerminator(final String line, final int from) {
+    for (int i = from; i < line.length(); i++) {
+      switch (line.charAt(i)) {
+        case '\n':
+        case '\r':
+        case '\u0085':
+        case '\u2028':
+        case '\u2029':
+          return true;
+        default:
+          break;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Classify line by its prefix.
+   *
+   * @param line             the left trimmed line, must not be null
+   * @param allowWhitespaces allow whitespaces between the line comment and the marker char
+   * @return the line type, must not be null
+   */
+  public static LineType classify(final String line, final boolean allowWhitespaces) {
+    final int marker = findMarker(line, allowWhitespaces);
+    if (marker < 0) {
+      return LineType.TEXT;
+    }
+    switch (line.charAt(marker)) {
+      case '#':
+        return LineType.DIRECTIVE;
+      case '$':
+        return marker + 1 < line.length() && line.charAt(marker + 1) == '$' ?
+            LineType.TWO_DOLLARS : LineType.SINGLE_DOLLAR;
+      default:
+        return LineType.TEXT;
+    }
+  }
+
+  /**
+   * Check that the line is hash prefixed comment which contains whitespaces between the line comment
+   * and the hash char, like {@code // #if}.
+   *
+   * @param line the left trimmed line, must not be null
+   * @return true if the line is hash prefixed comment with whitespaces
+   */
+  public static boolean isHashPrefixedWithWhitespaces(final String line) {
+    if (!line.startsWith("// ")) {
+      return false;
+    }
+    final int marker = findMarker(line, true);
+    return marker >= 0 && line.charAt(marker) == '#';
+  }
+
+  /**
+   * Extract the tail after prefix of the classified line.
+   *
+   * @param line             the left trimmed line, must not be null
+   * @param type             the type of the line which is not {@link LineType#TEXT}, for
+   *                         {@link LineType#SINGLE_DOLLAR} only the first dollar is removed
+   * @param allowWhitespaces allow whitespaces between the line comment and the marker char
+   * @return the tail of the line after the prefix
+   * @throws IllegalArgumentException if the line doesn't have the prefix
+   */
+  public static String extractTail(final String line, final LineType type,
+                                   final boolean allowWhitespaces) {
+    final int marker = findMarker(line, allowWhitespaces);
+    if (marker < 0) {
+      throw new IllegalArgumentException("Line doesn't have prefix: " + line);
+    }
+    final int markerLength;
+    switch (type) {
+      case DIRECTIVE:
+        markerLength = 1;
+        break;
+      case TWO_DOLLARS:
+        markerLength = 2;
+        break;
+      case SINGLE_DOLLAR:
+        markerLength = 1;
+        break;
+      default:
+        throw new IllegalArgumentException("Unexpected line type: " + type);
+    }
+    return line.substring(marker + markerLength);
+  }
+
+  /**
+   * Check that the line can contain macros, it means that the line contains the macros start
+   * {@code /*$}, with whitespaces before the dollar if they are allowed.
+   *
+   * @param line             the line to be checked, must not be null
+   * @param allowWhitespaces allow whitespaces between the comment start and the dollar
+   * @return true if the line may contain macros, false if the line definitely doesn't contain macros
+   */
+  public static boolean hasMacros(final String line, final boolean allowWhitespaces) {
+    if (!allowWhitespaces) {
+      return line.contains("/*$");
+    }
+    int index = line.indexOf("/*");
+    while (index >= 0) {
+      final int next = skipWhitespaces(line, index + 2);
+      if (next < line.length() && line.charAt(next) == '$') {
+        return true;
+      }
+      index = line.indexOf("/*", index + 2);
+    }
+    return false;
+  }
+
+  /**
+   * Find the tail remover {@code /*-*}{@code /}, with whitespaces around the minus if they are
+   * allowed.
+   *
+   * @param line             the line to be checked, must not be null
+   * @param allowWhitespaces allow whitespaces around the minus
+   * @return start position of the first tail remover or -1 if not found
+   */
+  public static int findTailRemover(final String line, final boolean allowWhitespaces) {
+    if (!allowWhitespaces) {
+      return line.indexOf("/*-*/");
+    }
+    int index = line.indexOf("/*");
+    while (index >= 0) {
+      int next = skipWhitespaces(line, index + 2);
+      if (next < line.length() && line.charAt(next) == '-') {
+        next = skipWhitespaces(line, next + 1);
+        if (line.startsWith("*/", next)) {
+          return index;
+        }
+      }
+      index = line.indexOf("/*", index + 1);
+    }
+    return -1;
+  }
+
+  /**
+   * Types of source lines.
+   */
+  public enum LineType {
+    /**
+     * Line is a preprocessor directive, prefixed by {@code //#}
+     */
+    DIRECTIVE,
+    /**
+     * Line to be printed without comment and macros processing, prefixed by {@code //$$}
+     */
+    TWO_DOLLARS,
+    /**
+     * Line to be printed without comment, prefixed by {@code //$}
+     */
+    SINGLE_DOLLAR,
+    /**
+     * Any other line
+     */
+    TEXT
+  }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.utils;
+
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.removers.JavaCommentsRemovingWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.StringBuilderWriter;
+
+/**
+ * Fast path for source files which don't contain any preprocessor marker. Such files are detected by
+ * byte scan and written into the target without line by line processing, they are copied as bytes if
+ * the result is the same as the source one.
+ *
+ * @since 7.0.6
+ */
+public final class MarkerFreeFileWriter {
+
+  private static final String ASCII_PROBE = "/*-$#\t\r\n azAZ09";
+  private static final Map<Charset, Boolean> ASCII_COMPATIBLE = new ConcurrentHashMap<>();
+
+  private MarkerFreeFileWriter() {
+  }
+
+  /**
+   * Check that charset encodes ASCII chars as the same single bytes, markers can be detected in bytes
+   * only for such charsets.
+   *
+   * @param charset charset to be checked, must not be null
+   * @return true if the charset is ASCII compatible one
+   */
+  public static boolean isAsciiCompatible(final Charset charset) {
+    return ASCII_COMPATIBLE.computeIfAbsent(charset, x -> x.canEncode() &&
+        Arrays.equals(ASCII_PROBE.getBytes(StandardCharsets.US_ASCII), ASCII_PROBE.getBytes(x)));
+  }
+
+  /**
+   * Find any char sequence which can be a directive ({@code //#}), a dollar-prefixed line
+   * ({@code //$}), a macros ({@code /*$}) or a tail remover ({@code /*-}). Whitespaces between comment
+   * start and marker char are skipped in any mode, so the scan can give false positive but never misses
+   * marker.
+   *
+   * @param data bytes to be scanned, must not be null
+   * @return true if there is any possible marker
+   */
+  public static boolean hasMarkers(final byte[] data) {
+    final int last = data.length - 2;
+    for (int i = 0; i < last; i++) {
+      if (data[i] != '/') {
+        continue;
+      }
+      final byte next = data[i + 1];
+      if (next == '/' || next == '*') {
+        int index = i + 2;
+        while (index < data.length && isInLineWhitespace(data[index])) {
+          index++;
+        }
+        if (index < data.length) {
+          final byte marker = data[index];
+          if (marker == '#' || marker == '$' || marker == '-') {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean isInLineWhitespace(final byte value) {
+    return value == ' ' || value == '\t' || value == '\r' || value == 0x0B || value == '\f';
+  }
+
+  /**
+   * Check that line by line processing of marker-free content gives the same bytes.
+   *
+   * @param content        source content, must not be null
+   * @param inCharset      charset of source, must not be null
+   * @param outCharset     charset of result, must not be null
+   * @param eol            next line chars for result, must not be null
+   * @param careForLastEol true if next line is not added after the last line if it is absent in source
+   * @param keepComments   true if comments are kept
+   * @return true if the content can be copied as bytes
+   */
+  static boolean isByteCopyPossible(final byte[] content, final Charset inCharset,
+                                    final Charset outCharset, final String eol,
+                                    final boolean careForLastEol, final boolean keepComments) {
+    if (!keepComments) {
+      return false;
+    }
+    if (content.length == 0) {
+      return true;
+    }
+
+    final byte lastByte = content[content.length - 1];
+    if (lastByte == '\r' || (lastByte != '\n' && !careForLastEol)) {
+      return false;
+    }
+
+    final boolean lf = "\n".equals(eol);
+    final boolean crlf = "\r\n".equals(eol);
+    boolean ascii = true;
+    for (int i = 0; i < content.length; i++) {
+      final byte value = content[i];
+      if (value == '\n') {
+        final boolean precededByCr = i > 0 && content[i - 1] == '\r';
+        if (!(lf && !precededByCr) && !(crlf && precededByCr)) {
+          return false;
+        }
+      } else if (value < 0) {
+        ascii = false;
+      }
+    }
+
+    if (ascii && isAsciiCompatible(outCharset)) {
+      return true;
+    }
+    if (!inCharset.equals(outCharset)) {
+      return false;
+    }
+    try {
+      inCharset.newDecoder()
+          .onMalformedInput(CodingErrorAction.REPORT)
+          .onUnmappableCharacter(CodingErrorAction.REPORT)
+          .decode(ByteBuffer.wrap(content));
+      return true;
+    } catch (CharacterCodingException ex) {
+      return false;
+    }
+  }
+
+  /**
+   * Make result text for marker-free content in the same way as it is made by line by line
+   * processing.
+   *
+   * @param content marker-free source content, must not be null
+   * @param context preprocessor context, must not be null
+   * @return result bytes in the target charset, must not be null
+   * @throws IOException if any error during comment removing
+   */
+  static byte[] makeResult(final byte[] content, final PreprocessorContext context)
+      throws IOException {
+    final TextLineIndex lines = TextLineIndex.decode(ByteBuffer.wrap(content),
+        context.getSourceEncoding());
+    final String eol = context.getEol();
+    final StringBuilder buffer = new StringBuilder(content.length + lines.size() * eol.length());
+    for (int i = 0; i < lines.size(); i++) {
+      lines.appendLine(i, buffer);
+      if (i < lines.size() - 1 || lines.isEndedByNextLine() || !context.isCareForLastEol()) {
+        buffer.append(eol);
+      }
+    }
+
+    if (!context.isKeepComments()) {
+      final StringBuilderWriter result = new StringBuilderWriter(buffer.length());
+      try (JavaCommentsRemovingWriter filter = new JavaCommentsRemovingWriter(result)) {
+        filter.append(buffer);
+      }
+      return result.toString().getBytes(context.getTargetEncoding());
+    }
+    return buffer.toString().getBytes(context.getTargetEncoding());
+  }
+
+  /**
+   * Write result for marker-free source content into target file, options of the context are
+   * respected in the same way as for line by line processing.
+   *
+   * @param content marker-free source content, must not be null
+   * @param target  target file, must not be null
+   * @param context preprocessor context, must not be null
+   * @return true if the target file has been written, false if it has the same content
+   * @throws IOException if any error during writing
+   */
+  public static boolean write(final byte[] content, final File target,
+                              final PreprocessorContext context) throws IOException {
+    final byte[] result = isByteCopyPossible(content, context.getSourceEncoding(),
+        context.getTargetEncoding(), context.getEol(), context.isCareForLastEol(),
+        context.isKeepComments()) ? content : makeResult(content, context);
+
+    final File path = target.getParentFile();
+    if (path != null && !path.mkdirs() && !path.isDirectory()) {
+      throw new IOException("Can't make directory [" + PreprocessorUtils.getFilePath(path) + ']');
+    }
+
+    if (context.isDontOverwriteSameContent() && target.isFile() &&
+        target.length() == result.length &&
+        Arrays.equals(result, FileUtils.readFileToByteArray(target))) {
+      context.logDebug(
+          "Ignore writing data for " + target + " because its content has not been changed");
+      return false;
+    }
+
+    try (FileChannel channel = new FileOutputStream(target, false).getChannel()) {
+      final ByteBuffer buffer = ByteBuffer.wrap(result);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+    return true;
+  }
+}
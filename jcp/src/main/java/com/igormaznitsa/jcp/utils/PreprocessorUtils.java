@@ -144,7 +144,7 @@ public final class PreprocessorUtils {
       throw new IllegalArgumentException("Source file is directory");
     }
 
-    if (!dest.getParentFile().exists() && !dest.getParentFile().mkdirs()) {
+    if (!dest.getParentFile().mkdirs() && !dest.getParentFile().isDirectory()) {
       throw new IOException("Can't make directory [" + getFilePath(dest.getParentFile()) + ']');
     }
 
@@ -254,62 +254,11 @@ public final class PreprocessorUtils {
       throws IOException {
     checkFile(file);
 
-    final List<String> strContainer = new ArrayList<>(1024);
-    try (BufferedReader srcBufferedReader = PreprocessorUtils
-        .makeFileReader(file, encoding == null ? StandardCharsets.UTF_8 : encoding,
-            (int) file.length())) {
-      final StringBuilder buffer = new StringBuilder();
-
-      boolean stringEndedByNextLine = false;
-
-      boolean meetCR = false;
-
-      while (!Thread.currentThread().isInterrupted()) {
-        final int chr = srcBufferedReader.read();
-        if (chr < 0) {
-          break;
-        }
-
-        switch (chr) {
-          case '\n': {
-            stringEndedByNextLine = true;
-            strContainer.add(buffer.toString());
-            buffer.setLength(0);
-            meetCR = false;
-          }
-          break;
-          case '\r': {
-            if (meetCR) {
-              buffer.append((char) chr);
-            } else {
-              stringEndedByNextLine = false;
-              meetCR = true;
-            }
-          }
-          break;
-          default: {
-            if (meetCR) {
-              buffer.append('\r');
-            }
-            meetCR = false;
-            stringEndedByNextLine = false;
-            buffer.append((char) chr);
-          }
-          break;
-        }
-      }
-
-      if (buffer.length() != 0) {
-        strContainer.add(buffer.toString());
-        buffer.setLength(0);
-      }
-
-      if (endedByNextLine != null) {
-        endedByNextLine.set(stringEndedByNextLine);
-      }
+    final TextLineIndex lines = TextLineIndex.read(file, encoding);
+    if (endedByNextLine != null) {
+      endedByNextLine.set(lines.isEndedByNextLine());
     }
-
-    return strContainer.toArray(new String[0]);
+    return lines.toArray();
   }
 
   public static String[] splitForEqualChar(final String string) {
@@ -21,51 +21,77 @@
 
 package com.igormaznitsa.jcp.utils;
 
-import java.io.CharArrayWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
 
 /**
- * The class implements a resetable char printer
+ * The class implements a resetable char printer, it is not thread safe one and keeps printed chars
+ * in growable array without synchronization
  *
  * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
  */
 public class ResetablePrinter {
 
-  private final CharArrayWriter outStream;
+  private char[] buffer;
+  private int size;
 
   public ResetablePrinter(final int initialCapacity) {
-    outStream = new CharArrayWriter(initialCapacity);
+    this.buffer = new char[Math.max(16, initialCapacity)];
   }
 
   public boolean isEmpty() {
-    return outStream.size() == 0;
+    return this.size == 0;
   }
 
   public void writeBufferTo(final Writer writer) throws IOException {
-    outStream.flush();
-    writer.write(outStream.toCharArray());
+    writer.write(this.buffer, 0, this.size);
     writer.flush();
   }
 
+  /**
+   * Get read only view of printed chars without copying, it is valid until next print or reset.
+   *
+   * @return char buffer contains printed chars, must not be null
+   * @since 7.0.6
+   */
+  public CharBuffer asCharBuffer() {
+    return CharBuffer.wrap(this.buffer, 0, this.size).asReadOnlyBuffer();
+  }
+
   public int getSize() {
-    return outStream.size();
+    return this.size;
   }
 
   public void reset() {
-    outStream.reset();
+    this.size = 0;
   }
 
   public void print(final String text) throws IOException {
-    for (final char chr : text.toCharArray()) {
-      outStream.write(chr);
-    }
+    append(text);
   }
 
   public void println(final String text, final String eol) throws IOException {
-    for (final char chr : text.toCharArray()) {
-      this.outStream.write(chr);
+    append(text);
+    append(eol);
+  }
+
+  private void append(final String text) {
+    final int length = text.length();
+    ensureCapacity(this.size + length);
+    text.getChars(0, length, this.buffer, this.size);
+    this.size += length;
+  }
+
+  private void ensureCapacity(final int required) {
+    if (required < 0) {
+      throw new OutOfMemoryError("Too many chars in printer");
+    }
+    if (required > this.buffer.length) {
+      final int doubled = this.buffer.length << 1;
+      final int capacity = doubled < 0 ? Integer.MAX_VALUE - 8 : doubled;
+      this.buffer = Arrays.copyOf(this.buffer, Math.max(capacity, required));
     }
-    outStream.write(eol, 0, eol.length());
   }
 }
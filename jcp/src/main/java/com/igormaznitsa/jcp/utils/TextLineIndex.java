@@ -0,0 +1,271 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Text decoded into one char buffer with index of line offsets, lines are made as strings only on
+ * request. Lines are split by LF, single CR before LF is removed, CR at the end of text is ignored and
+ * empty tail after the last LF is not a line. The index is read only one and it can be shared between
+ * threads, lazily made line strings are immutable ones.
+ *
+ * @since 7.0.6
+ */
+public final class TextLineIndex {
+
+  private static final int[] EMPTY = new int[0];
+
+  private final char[] chars;
+  private final int[] lineStarts;
+  private final int[] lineEnds;
+  private final String[] lines;
+  private final boolean endedByNextLine;
+
+  private TextLineIndex(final char[] chars, final int length) {
+    this.chars = chars;
+
+    int[] starts = new int[Math.max(16, length / 32)];
+    int[] ends = new int[starts.length];
+    int count = 0;
+
+    int start = 0;
+    for (int i = 0; i <= length; i++) {
+      if (i == length || chars[i] == '\n') {
+        int end = i;
+        if (end > start && chars[end - 1] == '\r') {
+          end--;
+        }
+        if (i < length || end > start) {
+          if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+          }
+          starts[count] = start;
+          ends[count] = end;
+          count++;
+        }
+        start = i + 1;
+      }
+    }
+
+    this.lineStarts = count == starts.length ? starts : Arrays.copyOf(starts, count);
+    this.lineEnds = count == ends.length ? ends : Arrays.copyOf(ends, count);
+    this.lines = new String[count];
+    this.endedByNextLine = length > 0 && chars[length - 1] == '\n';
+  }
+
+  private TextLineIndex(final String[] lines, final boolean endedByNextLine) {
+    this.chars = null;
+    this.lineStarts = EMPTY;
+    this.lineEnds = EMPTY;
+    this.lines = lines.clone();
+    this.endedByNextLine = endedByNextLine;
+  }
+
+  /**
+   * Make index over already split lines.
+   *
+   * @param lines           lines of text, must not be null
+   * @param endedByNextLine true if the text is ended by next line char
+   * @return the index, must not be null
+   */
+  public static TextLineIndex of(final String[] lines, final boolean endedByNextLine) {
+    return new TextLineIndex(Objects.requireNonNull(lines, "Lines must not be null"),
+        endedByNextLine);
+  }
+
+  /**
+   * Make index over lines of text.
+   *
+   * @param text text to be indexed, must not be null
+   * @return the index, must not be null
+   */
+  public static TextLineIndex of(final CharSequence text) {
+    final char[] chars = text.toString().toCharArray();
+    return new TextLineIndex(chars, chars.length);
+  }
+
+  /**
+   * Read whole file, decode it in bulk and make index over its lines. Malformed and unmappable
+   * input is replaced by the charset replacement like it is made by readers.
+   *
+   * @param file    the file to be read, must not be null
+   * @param charset the charset of the file, if null then UTF-8 will be used
+   * @return the index, must not be null
+   * @throws IOException if there is error during reading
+   */
+  public static TextLineIndex read(final File file, final Charset charset) throws IOException {
+    Objects.requireNonNull(file, "File is null");
+    if (!file.isFile()) {
+      throw new FileNotFoundException(
+          "File " + PreprocessorUtils.getFilePath(file) + " doesn't exist");
+    }
+
+    ByteBuffer bytes;
+    try (FileChannel channel = new FileInputStream(file).getChannel()) {
+      final long size = channel.size();
+      if (size >= Integer.MAX_VALUE) {
+        throw new IOException("File is too big: " + PreprocessorUtils.getFilePath(file));
+      }
+      // one byte more to detect growing of the file without extra read
+      bytes = ByteBuffer.allocate((int) size + 1);
+      while (channel.read(bytes) >= 0) {
+        if (!bytes.hasRemaining()) {
+          bytes.flip();
+          bytes = ByteBuffer.allocate(bytes.capacity() * 2).put(bytes);
+        }
+      }
+      bytes.flip();
+    }
+
+    return decode(bytes, charset);
+  }
+
+  /**
+   * Decode bytes in bulk and make index over lines. Malformed and unmappable input is replaced by
+   * the charset replacement like it is made by readers.
+   *
+   * @param bytes   bytes of text, must not be null
+   * @param charset the charset of the text, if null then UTF-8 will be used
+   * @return the index, must not be null
+   */
+  public static TextLineIndex decode(final ByteBuffer bytes, final Charset charset) {
+    final CharBuffer decoded;
+    try {
+      decoded = (charset == null ? StandardCharsets.UTF_8 : charset)
+          .newDecoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE)
+          .decode(bytes);
+    } catch (CharacterCodingException ex) {
+      throw new IllegalStateException("Unexpected coding error for replacing decoder", ex);
+    }
+
+    if (decoded.hasArray() && decoded.arrayOffset() == 0) {
+      return new TextLineIndex(decoded.array(), decoded.limit());
+    } else {
+      final char[] chars = new char[decoded.remaining()];
+      decoded.get(chars);
+      return new TextLineIndex(chars, chars.length);
+    }
+  }
+
+  /**
+   * Get approximate number of bytes occupied by the index in memory, line strings made on request are
+   * counted only if they have been made.
+   *
+   * @return approximate memory size in bytes
+   */
+  public long estimateMemorySize() {
+    long result = 64L + (this.lineStarts.length + this.lineEnds.length) * 4L
+        + this.lines.length * 8L;
+    if (this.chars != null) {
+      result += this.chars.length * 2L;
+    }
+    for (final String line : this.lines) {
+      if (line != null) {
+        result += 56L + line.length() * 2L;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Get number of lines.
+   *
+   * @return number of lines
+   */
+  public int size() {
+    return this.lines.length;
+  }
+
+  /**
+   * Check that the last char of the text is next line char.
+   *
+   * @return true if the text is ended by next line char
+   */
+  public boolean isEndedByNextLine() {
+    return this.endedByNextLine;
+  }
+
+  /**
+   * Get line for index, the line string is made once on the first request.
+   *
+   * @param index index of line
+   * @return the line without next line chars, must not be null
+   * @throws IndexOutOfBoundsException if wrong index
+   */
+  public String getLine(final int index) {
+    String result = this.lines[index];
+    if (result == null) {
+      final int start = this.lineStarts[index];
+      result = new String(this.chars, start, this.lineEnds[index] - start);
+      this.lines[index] = result;
+    }
+    return result;
+  }
+
+  /**
+   * Append line for index to buffer without making its string.
+   *
+   * @param index  index of line
+   * @param buffer buffer to append the line, must not be null
+   * @return the buffer
+   * @throws IndexOutOfBoundsException if wrong index
+   */
+  public StringBuilder appendLine(final int index, final StringBuilder buffer) {
+    final String line = this.lines[index];
+    if (line == null) {
+      final int start = this.lineStarts[index];
+      buffer.append(this.chars, start, this.lineEnds[index] - start);
+    } else {
+      buffer.append(line);
+    }
+    return buffer;
+  }
+
+  /**
+   * Get all lines as array.
+   *
+   * @return new array contains all lines, must not be null
+   */
+  public String[] toArray() {
+    final String[] result = new String[this.lines.length];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = getLine(i);
+    }
+    return result;
+  }
+}
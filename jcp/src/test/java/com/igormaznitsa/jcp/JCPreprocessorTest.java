@@ -22,26 +22,43 @@
 package com.igormaznitsa.jcp;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 
 import com.igormaznitsa.jcp.cmdline.CommandLineHandler;
+import com.igormaznitsa.jcp.containers.FileInfoContainer;
+import com.igormaznitsa.jcp.context.FileDataCache;
+import com.igormaznitsa.jcp.context.IncrementalManifest;
 import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.context.SpecialVariableProcessor;
 import com.igormaznitsa.jcp.exceptions.PreprocessorException;
 import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.jcp.logger.PreprocessorLogger;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public final class JCPreprocessorTest {
 
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
   private void assertGVDFPreprocessorException(final String file,
                                                final int stringIndexStartedFromOne)
       throws Exception {
@@ -75,6 +92,21 @@ public final class JCPreprocessorTest {
         context.getSourceEncoding());
   }
 
+  @Test
+  public void testProcessGlobalVarDefiningFiles_SharedCache() throws Exception {
+    final File configFile = new File(this.getClass().getResource("./global_ok.txt").toURI());
+    final FileDataCache cache = new FileDataCache();
+    for (int i = 0; i < 2; i++) {
+      final PreprocessorContext context =
+          new PreprocessorContext(new File("some_impossible_folder_121212"));
+      context.setFileDataCache(cache);
+      context.registerConfigFile(configFile);
+      new JcpPreprocessor(context).processConfigFiles();
+      assertEquals("hello world", context.findVariableForName("globalVar1", true).asString());
+    }
+    assertEquals(1, cache.size());
+  }
+
   @Test
   public void testProcessGlobalVarDefiningFiles_ATsymbol() throws Exception {
     assertGVDFPreprocessorException("global_error_at.txt", 8);
@@ -136,6 +168,499 @@ public final class JCPreprocessorTest {
     }
   }
 
+  @Test
+  public void testScanOfSourceFolder_ExcludedFoldersAndStableOrder() throws Exception {
+    final File srcFolder = tempFolder.newFolder("src");
+    for (final String path : Arrays
+        .asList("z.java", "a.java", "sub/b.java", "skip/c.java", "sub/skip/d.java", "empty.java")) {
+      final File file = new File(srcFolder, path);
+      FileUtils.writeStringToFile(file, path.equals("empty.java") ? "" : "hello",
+          StandardCharsets.UTF_8);
+    }
+
+    final List<String> addedFiles = new ArrayList<>();
+    final PreprocessorContext context =
+        new PreprocessorContext(new File("some_impossible_folder_121212"));
+    context.setSources(Collections.singletonList(srcFolder.getAbsolutePath()));
+    context.setTarget(tempFolder.newFolder("target"));
+    context.setExcludeFolders(Collections.singletonList("**/skip"));
+    context.setDryRun(true);
+    context.setPreprocessorLogger(new PreprocessorLogger() {
+      @Override
+      public void error(final String message) {
+      }
+
+      @Override
+      public void info(final String message) {
+      }
+
+      @Override
+      public void debug(final String message) {
+        if (message.startsWith("File added to preprocess list")) {
+          addedFiles.add(message.substring(message.lastIndexOf('=') + 1));
+        }
+      }
+
+      @Override
+      public void warning(final String message) {
+      }
+    });
+
+    final JcpPreprocessor.Statistics stat = new JcpPreprocessor(context).execute();
+    assertEquals(3, stat.getPreprocessed());
+
+    assertEquals(Arrays.asList("a.java", "empty.java", "b.java", "z.java"), addedFiles);
+
+    final Set<File> inputFiles = context.findAllInputFiles();
+    assertTrue(inputFiles.contains(new File(srcFolder, "sub/b.java")));
+    assertFalse(inputFiles.contains(new File(srcFolder, "skip/c.java")));
+    assertFalse(inputFiles.contains(new File(srcFolder, "sub/skip/d.java")));
+  }
+
+  private static PreprocessorContext makeIncrementalContext(final File srcFolder,
+                                                            final File targetFolder) {
+    final PreprocessorContext context =
+        new PreprocessorContext(new File("some_impossible_folder_121212"));
+    context.setSources(Collections.singletonList(srcFolder.getAbsolutePath()));
+    context.setTarget(targetFolder);
+    context.setIncremental(true);
+    return context;
+  }
+
+  @Test
+  public void testIncrementalPreprocessing() throws Exception {
+    final File srcFolder = tempFolder.newFolder("src");
+    final File targetFolder = tempFolder.newFolder("target");
+    final File fileA = new File(srcFolder, "a.java");
+    final File fileB = new File(srcFolder, "b.java");
+    FileUtils.writeStringToFile(fileA, "//#global VAL=10\nA\n", StandardCharsets.UTF_8);
+    FileUtils.writeStringToFile(fileB, "//$ /*$VAL$*/\n", StandardCharsets.UTF_8);
+    FileUtils.writeStringToFile(new File(srcFolder, "c.bin"), "binary", StandardCharsets.UTF_8);
+
+    JcpPreprocessor.Statistics stat =
+        new JcpPreprocessor(makeIncrementalContext(srcFolder, targetFolder)).execute();
+    assertEquals(new JcpPreprocessor.Statistics(2, 1, 0, 0), stat);
+    assertTrue(new File(targetFolder, ".jcp-manifest").isFile());
+    assertEquals("10", FileUtils.readFileToString(new File(targetFolder, "b.java"),
+        StandardCharsets.UTF_8).trim());
+
+    stat = new JcpPreprocessor(makeIncrementalContext(srcFolder, targetFolder)).execute();
+    assertEquals(new JcpPreprocessor.Statistics(0, 0, 0, 3), stat);
+
+    FileUtils.writeStringToFile(fileA, "//#global VAL=20\nA\n", StandardCharsets.UTF_8);
+    assertTrue(fileA.setLastModified(fileA.lastModified() + 2000L));
+    final PreprocessorContext context = makeIncrementalContext(srcFolder, targetFolder);
+    stat = new JcpPreprocessor(context).execute();
+    assertEquals(new JcpPreprocessor.Statistics(2, 0, 0, 1), stat);
+    assertEquals("20", FileUtils.readFileToString(new File(targetFolder, "b.java"),
+        StandardCharsets.UTF_8).trim());
+    assertEquals(3, context.findAllProducedFiles().size());
+
+    FileUtils.writeStringToFile(fileB, "//$ /*$VAL+1$*/\n", StandardCharsets.UTF_8);
+    stat = new JcpPreprocessor(makeIncrementalContext(srcFolder, targetFolder)).execute();
+    assertEquals(new JcpPreprocessor.Statistics(1, 0, 0, 2), stat);
+    assertEquals("21", FileUtils.readFileToString(new File(targetFolder, "b.java"),
+        StandardCharsets.UTF_8).trim());
+  }
+
+  @Test
+  public void testIncrementalPreprocessing_NothingChanged() throws Exception {
+    final File srcFolder = tempFolder.newFolder("src");
+    final File targetFolder = tempFolder.newFolder("target");
+    FileUtils.writeStringToFile(new File(srcFolder, "a.java"), "//$ /*$VAL$*/\n",
+        StandardCharsets.UTF_8);
+    FileUtils.writeStringToFile(new File(srcFolder, "b.java"), "//#excludeif true\nB\n",
+        StandardCharsets.UTF_8);
+
+    PreprocessorContext context = makeIncrementalContext(srcFolder, targetFolder);
+    context.setGlobalVariable("VAL", Value.INT_ONE);
+    assertEquals(new JcpPreprocessor.Statistics(1, 0, 1, 0),
+        new JcpPreprocessor(context).execute());
+
+    for (int i = 0; i < 2; i++) {
+      context = makeIncrementalContext(srcFolder, targetFolder);
+      context.setGlobalVariable("VAL", Value.INT_ONE);
+      assertEquals(new JcpPreprocessor.Statistics(0, 0, 1, 1),
+          new JcpPreprocessor(context).execute());
+      assertEquals(1, context.findAllProducedFiles().size());
+      assertEquals("a.java", context.findAllProducedFiles().iterator().next().getName());
+    }
+
+    context = makeIncrementalContext(srcFolder, targetFolder);
+    context.setGlobalVariable("VAL", Value.INT_TWO);
+    assertEquals(new JcpPreprocessor.Statistics(1, 0, 1, 0),
+        new JcpPreprocessor(context).execute());
+    assertEquals("2", FileUtils.readFileToString(new File(targetFolder, "a.java"),
+        StandardCharsets.UTF_8).trim());
+
+    FileUtils.writeStringToFile(new File(srcFolder, "c.java"), "C\n", StandardCharsets.UTF_8);
+    context = makeIncrementalContext(srcFolder, targetFolder);
+    context.setGlobalVariable("VAL", Value.INT_TWO);
+    assertEquals(new JcpPreprocessor.Statistics(1, 0, 1, 1),
+        new JcpPreprocessor(context).execute());
+  }
+
+  @Test
+  public void testIncrementalPreprocessing_ThreadsChangeKeepsManifest() throws Exception {
+    final File srcFolder = tempFolder.newFolder("src");
+    final File targetFolder = tempFolder.newFolder("target");
+    FileUtils.writeStringToFile(new File(srcFolder, "a.java"), "//$ /*$1+2$*/\n",
+        StandardCharsets.UTF_8);
+
+    PreprocessorContext context = makeIncrementalContext(srcFolder, targetFolder);
+    assertEquals(new JcpPreprocessor.Statistics(1, 0, 0, 0),
+        new JcpPreprocessor(context).execute());
+
+    context = makeIncrementalContext(srcFolder, targetFolder);
+    context.setThreads(4);
+    assertEquals(new JcpPreprocessor.Statistics(0, 0, 0, 1),
+        new JcpPreprocessor(context).execute());
+  }
+
+  @Test
+  public void testLocalVariableConflictsWithGlobalDefinedByOtherFile() throws Exception {
+    final File srcFolder = tempFolder.newFolder("src");
+    final File targetFolder = tempFolder.newFolder("target");
+    FileUtils.writeStringToFile(new File(srcFolder, "a.java"), "//#define BAR 1\n",
+        StandardCharsets.UTF_8);
+    FileUtils.writeStringToFile(new File(srcFolder, "b.java"), "//#local BAR=2\n",
+        StandardCharsets.UTF_8);
+
+    for (final int threads : new int[] {1, 4}) {
+      final PreprocessorContext context = makeIncrementalContext(srcFolder, targetFolder);
+      context.setIncremental(false);
+      context.setThreads(threads);
+      try {
+        new JcpPreprocessor(context).execute();
+        fail("Must throw a PreprocessorException for threads " + threads);
+      } catch (PreprocessorException ex) {
+        // expected
+      }
+    }
+  }
+
+  private static SpecialVariableProcessor makeVersionProcessor(final String version) {
+    return new SpecialVariableProcessor() {
+      @Override
+      public String[] getVariableNames() {
+        return new String[] {"project.version"};
+      }
+
+      @Override
+      public Value getVariable(final String varName, final PreprocessorContext context) {
+        return Value.valueOf(version);
+      }
+
+      @Override
+      public void setVariable(final String varName, final Value value,
+                              final PreprocessorContext context) {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Test
+  public void testIncrementalPreprocessing_ChangedSpecialVariable() throws Exception {
+    final File srcFolder = tempFolder.newFolder("src");
+    final File targetFolder = tempFolder.newFolder("target");
+    FileUtils.writeStringToFile(new File(srcFolder, "a.java"), "//$ /*$project.version$*/\n",
+        StandardCharsets.UTF_8);
+    FileUtils.writeStringToFile(new File(srcFolder, "b.java"), "//$ /*$__line__$*/\n",
+        StandardCharsets.UTF_8);
+
+    PreprocessorContext context = makeIncrementalContext(srcFolder, targetFolder);
+    context.registerSpecialVariableProcessor(makeVersionProcessor("1.0"));
+    assertEquals(new JcpPreprocessor.Statistics(2, 0, 0, 0),
+        new JcpPreprocessor(context).execute());
+
+    context = makeIncrementalContext(srcFolder, targetFolder);
+    context.registerSpecialVariableProcessor(makeVersionProcessor("1.0"));
+    assertEquals(new JcpPreprocessor.Statistics(0, 0, 0, 2),
+        new JcpPreprocessor(context).execute());
+
+    context = makeIncrementalContext(srcFolder, targetFolder);
+    context.registerSpecialVariableProcessor(makeVersionProcessor("1.1"));
+    assertEquals(new JcpPreprocessor.Statistics(1, 0, 0, 1),
+        new JcpPreprocessor(context).execute());
+    assertEquals("1.1", FileUtils.readFileToString(new File(targetFolder, "a.java"),
+        StandardCharsets.UTF_8).trim());
+  }
+
+  @Test
+  public void testIncrementalPreprocessing_ManifestOutsideTarget() throws Exception {
+    final File srcFolder = tempFolder.newFolder("src");
+    final File targetFolder = tempFolder.newFolder("target");
+    final File manifestFile = new File(tempFolder.newFolder("tmp"), IncrementalManifest.FILE_NAME);
+    FileUtils.writeStringToFile(new File(srcFolder, "a.java"), "//$ /*$1+2$*/\n",
+        StandardCharsets.UTF_8);
+
+    PreprocessorContext context = makeIncrementalContext(srcFolder, targetFolder);
+    context.setManifestFile(manifestFile);
+    assertEquals(new JcpPreprocessor.Statistics(1, 0, 0, 0),
+        new JcpPreprocessor(context).execute());
+    assertTrue(manifestFile.isFile());
+    assertFalse(new File(targetFolder, IncrementalManifest.FILE_NAME).exists());
+
+    context = makeIncrementalContext(srcFolder, targetFolder);
+    context.setManifestFile(manifestFile);
+    assertEquals(new JcpPreprocessor.Statistics(0, 0, 0, 1),
+        new JcpPreprocessor(context).execute());
+  }
+
+  @Test
+  public void testIncrementalPreprocessing_ClearTargetWithValidManifest() throws Exception {
+    final File srcFolder = tempFolder.newFolder("src");
+    final File targetFolder = tempFolder.newFolder("target");
+    final File fileB = new File(srcFolder, "b.java");
+    FileUtils.writeStringToFile(new File(srcFolder, "a.java"), "//$ /*$1+2$*/\n",
+        StandardCharsets.UTF_8);
+    FileUtils.writeStringToFile(fileB, "//$ /*$3+4$*/\n", StandardCharsets.UTF_8);
+    final File foreign = new File(targetFolder, "foreign.txt");
+    FileUtils.writeStringToFile(foreign, "foreign", StandardCharsets.UTF_8);
+
+    PreprocessorContext context = makeIncrementalContext(srcFolder, targetFolder);
+    context.setClearTarget(true);
+    assertEquals(new JcpPreprocessor.Statistics(2, 0, 0, 0),
+        new JcpPreprocessor(context).execute());
+    assertFalse(foreign.exists());
+    assertTrue(new File(targetFolder, "b.java").isFile());
+
+    assertTrue(fileB.delete());
+    context = makeIncrementalContext(srcFolder, targetFolder);
+    context.setClearTarget(true);
+    assertEquals(new JcpPreprocessor.Statistics(0, 0, 0, 1),
+        new JcpPreprocessor(context).execute());
+    assertEquals("3", FileUtils.readFileToString(new File(targetFolder, "a.java"),
+        StandardCharsets.UTF_8).trim());
+    assertFalse(new File(targetFolder, "b.java").exists());
+  }
+
+  @Test
+  public void testMarkerScanResultKeptInFileContainer() throws Exception {
+    final File srcFolder = tempFolder.newFolder("src");
+    final File targetFolder = tempFolder.newFolder("target");
+    final File plain = new File(srcFolder, "plain.java");
+    final File marked = new File(srcFolder, "marked.java");
+    FileUtils.writeStringToFile(plain, "class Plain {}\n", StandardCharsets.UTF_8);
+    FileUtils.writeStringToFile(marked, "//#global X=1\n//$ /*$X$*/\n", StandardCharsets.UTF_8);
+
+    final PreprocessorContext context = makeIncrementalContext(srcFolder, targetFolder);
+    context.setIncremental(false);
+    new JcpPreprocessor(context).execute();
+
+    final FileInfoContainer plainInfo = context.findFileInfoContainer(plain).get();
+    final FileInfoContainer markedInfo = context.findFileInfoContainer(marked).get();
+    assertTrue(plainInfo.getMarkerFree());
+    assertFalse(markedInfo.getMarkerFree());
+    assertNull(plainInfo.getSourceContent());
+    assertNull(markedInfo.getSourceContent());
+    assertEquals("class Plain {}", FileUtils.readFileToString(new File(targetFolder, "plain.java"),
+        StandardCharsets.UTF_8).trim());
+    assertEquals("1", FileUtils.readFileToString(new File(targetFolder, "marked.java"),
+        StandardCharsets.UTF_8).trim());
+  }
+
+  @Test
+  public void testReadVariablesNotTrackedInNonIncrementalMode() throws Exception {
+    final File srcFolder = tempFolder.newFolder("src");
+    final File targetFolder = tempFolder.newFolder("target");
+    FileUtils.writeStringToFile(new File(srcFolder, "a.java"), "//$ /*$X$*/\n",
+        StandardCharsets.UTF_8);
+
+    final PreprocessorContext context = makeIncrementalContext(srcFolder, targetFolder);
+    context.setIncremental(false);
+    context.setGlobalVariable("x", Value.valueOf(1L));
+    new JcpPreprocessor(context).execute();
+    assertTrue(context.findFileInfoContainer(new File(srcFolder, "a.java")).get()
+        .getReadGlobalVariables().isEmpty());
+  }
+
+  @Test
+  public void testIncrementalPreprocessing_OnlyFilesReadChangedVariable() throws Exception {
+    final File srcFolder = tempFolder.newFolder("src");
+    final File targetFolder = tempFolder.newFolder("target");
+    FileUtils.writeStringToFile(new File(srcFolder, "a.java"), "//$ /*$X$*/\n",
+        StandardCharsets.UTF_8);
+    FileUtils.writeStringToFile(new File(srcFolder, "b.java"), "//#if Y>1\n//$ /*$Y$*/\n//#endif\n",
+        StandardCharsets.UTF_8);
+
+    PreprocessorContext context = makeIncrementalContext(srcFolder, targetFolder);
+    context.setGlobalVariable("x", Value.valueOf(1L));
+    context.setGlobalVariable("y", Value.valueOf(2L));
+    assertEquals(new JcpPreprocessor.Statistics(2, 0, 0, 0),
+        new JcpPreprocessor(context).execute());
+    assertEquals(new HashSet<>(Collections.singletonList("x")),
+        context.findFileInfoContainer(new File(srcFolder, "a.java")).get()
+            .getReadGlobalVariables());
+
+    context = makeIncrementalContext(srcFolder, targetFolder);
+    context.setGlobalVariable("x", Value.valueOf(5L));
+    context.setGlobalVariable("y", Value.valueOf(2L));
+    context.setGlobalVariable("z", Value.valueOf(3L));
+    assertEquals(new JcpPreprocessor.Statistics(1, 0, 0, 1),
+        new JcpPreprocessor(context).execute());
+    assertEquals("5", FileUtils.readFileToString(new File(targetFolder, "a.java"),
+        StandardCharsets.UTF_8).trim());
+
+    context = makeIncrementalContext(srcFolder, targetFolder);
+    context.setGlobalVariable("x", Value.valueOf(5L));
+    context.setGlobalVariable("y", Value.valueOf(7L));
+    assertEquals(new JcpPreprocessor.Statistics(1, 0, 0, 1),
+        new JcpPreprocessor(context).execute());
+    assertEquals("7", FileUtils.readFileToString(new File(targetFolder, "b.java"),
+        StandardCharsets.UTF_8).trim());
+  }
+
+  @Test
+  public void testIncrementalPreprocessing_KnownChanges() throws Exception {
+    final File srcFolder = tempFolder.newFolder("src");
+    final File targetFolder = tempFolder.newFolder("target");
+    final File fileA = new File(srcFolder, "a.java");
+    final File fileB = new File(srcFolder, "b.java");
+    FileUtils.writeStringToFile(fileA, "//$ /*$1+1$*/\n", StandardCharsets.UTF_8);
+    FileUtils.writeStringToFile(fileB, "//$ /*$2+2$*/\n", StandardCharsets.UTF_8);
+
+    assertEquals(new JcpPreprocessor.Statistics(2, 0, 0, 0),
+        new JcpPreprocessor(makeIncrementalContext(srcFolder, targetFolder)).execute());
+    assertTrue(new File(targetFolder, "b.java").isFile());
+
+    FileUtils.writeStringToFile(fileA, "//$ /*$3+3$*/\n", StandardCharsets.UTF_8);
+    assertTrue(fileB.delete());
+    assertEquals(new JcpPreprocessor.Statistics(1, 0, 0, 0),
+        new JcpPreprocessor(makeIncrementalContext(srcFolder, targetFolder))
+            .execute(Arrays.asList(fileA, fileB)));
+    assertEquals("6", FileUtils.readFileToString(new File(targetFolder, "a.java"),
+        StandardCharsets.UTF_8).trim());
+    assertFalse(new File(targetFolder, "b.java").exists());
+
+    FileUtils.writeStringToFile(fileA, "//$ /*$4+4$*/\n", StandardCharsets.UTF_8);
+    assertEquals(new JcpPreprocessor.Statistics(0, 0, 0, 1),
+        new JcpPreprocessor(makeIncrementalContext(srcFolder, targetFolder))
+            .execute(Collections.emptyList()));
+  }
+
+  @Test
+  public void testWatchSession_OnlyChangedAndIncludingFiles() throws Exception {
+    final File srcFolder = tempFolder.newFolder("src");
+    final File targetFolder = tempFolder.newFolder("target");
+    final File part = new File(srcFolder, "part.inc");
+    FileUtils.writeStringToFile(part, "PART1\n", StandardCharsets.UTF_8);
+    FileUtils.writeStringToFile(new File(srcFolder, "a.java"), "//#include \"./part.inc\"\n",
+        StandardCharsets.UTF_8);
+    final File fileB = new File(srcFolder, "b.java");
+    FileUtils.writeStringToFile(fileB, "//$ /*$VAL$*/\n", StandardCharsets.UTF_8);
+
+    final PreprocessorContext context = makeIncrementalContext(srcFolder, targetFolder);
+    context.setIncremental(false);
+    context.setWatch(true);
+    context.setGlobalVariable("val", Value.valueOf(1L));
+    final JcpPreprocessor preprocessor = new JcpPreprocessor(context);
+    final JcpPreprocessor.WatchSession session = preprocessor.new WatchSession();
+
+    assertEquals(new JcpPreprocessor.Statistics(2, 1, 0, 0), session.start());
+    assertFalse(new File(targetFolder, ".jcp-manifest").exists());
+
+    FileUtils.writeStringToFile(part, "PART2\n", StandardCharsets.UTF_8);
+    assertEquals(new JcpPreprocessor.Statistics(1, 1, 0, 1),
+        session.runCycle(Collections.singleton(part)));
+    assertEquals("PART2", FileUtils.readFileToString(new File(targetFolder, "a.java"),
+        StandardCharsets.UTF_8).trim());
+    assertEquals("1", FileUtils.readFileToString(new File(targetFolder, "b.java"),
+        StandardCharsets.UTF_8).trim());
+
+    FileUtils.writeStringToFile(fileB, "//$ /*$VAL+1$*/\n", StandardCharsets.UTF_8);
+    assertEquals(new JcpPreprocessor.Statistics(1, 0, 0, 2),
+        session.runCycle(Collections.singleton(fileB)));
+    assertEquals("2", FileUtils.readFileToString(new File(targetFolder, "b.java"),
+        StandardCharsets.UTF_8).trim());
+    assertEquals(3, context.findAllProducedFiles().size());
+
+    assertEquals(new JcpPreprocessor.Statistics(0, 0, 0, 3), session.runCycle(null));
+  }
+
+  @Test(timeout = 30000L)
+  public void testWatch_PreprocessChangedFile() throws Exception {
+    final File srcFolder = tempFolder.newFolder("src");
+    final File targetFolder = tempFolder.newFolder("target");
+    final File fileA = new File(srcFolder, "a.java");
+    FileUtils.writeStringToFile(fileA, "//$ /*$1+1$*/\n", StandardCharsets.UTF_8);
+    final File resultA = new File(targetFolder, "a.java");
+
+    final PreprocessorContext context = makeIncrementalContext(srcFolder, targetFolder);
+    context.setIncremental(false);
+    context.setWatch(true);
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    final Thread thread = new Thread(() -> {
+      try {
+        new JcpPreprocessor(context).watch();
+      } catch (Throwable ex) {
+        error.set(ex);
+      }
+    }, "jcp-watch-test");
+    thread.setDaemon(true);
+    thread.start();
+    try {
+      while (!resultA.isFile()) {
+        Thread.sleep(50L);
+      }
+      assertEquals("2", FileUtils.readFileToString(resultA, StandardCharsets.UTF_8).trim());
+      Thread.sleep(500L);
+
+      FileUtils.writeStringToFile(fileA, "//$ /*$2+2$*/\n", StandardCharsets.UTF_8);
+      while (!"4".equals(FileUtils.readFileToString(resultA, StandardCharsets.UTF_8).trim())) {
+        Thread.sleep(50L);
+      }
+    } finally {
+      thread.interrupt();
+      thread.join(10000L);
+    }
+    assertFalse(thread.isAlive());
+    assertNull(error.get());
+  }
+
+  @Test(timeout = 30000L)
+  public void testWatch_PreprocessFileIncludingFileOutsideSources() throws Exception {
+    final File srcFolder = tempFolder.newFolder("src");
+    final File incFolder = tempFolder.newFolder("inc");
+    final File targetFolder = tempFolder.newFolder("target");
+    final File part = new File(incFolder, "part.inc");
+    FileUtils.writeStringToFile(part, "PART1\n", StandardCharsets.UTF_8);
+    FileUtils.writeStringToFile(new File(srcFolder, "a.java"), "//#include \"../inc/part.inc\"\n",
+        StandardCharsets.UTF_8);
+    final File resultA = new File(targetFolder, "a.java");
+
+    final PreprocessorContext context = makeIncrementalContext(srcFolder, targetFolder);
+    context.setIncremental(false);
+    context.setWatch(true);
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    final Thread thread = new Thread(() -> {
+      try {
+        new JcpPreprocessor(context).watch();
+      } catch (Throwable ex) {
+        error.set(ex);
+      }
+    }, "jcp-watch-test");
+    thread.setDaemon(true);
+    thread.start();
+    try {
+      while (!resultA.isFile()) {
+        Thread.sleep(50L);
+      }
+      assertEquals("PART1", FileUtils.readFileToString(resultA, StandardCharsets.UTF_8).trim());
+      Thread.sleep(500L);
+
+      FileUtils.writeStringToFile(part, "PART2\n", StandardCharsets.UTF_8);
+      while (!"PART2".equals(FileUtils.readFileToString(resultA, StandardCharsets.UTF_8).trim())) {
+        Thread.sleep(50L);
+      }
+    } finally {
+      thread.interrupt();
+      thread.join(10000L);
+    }
+    assertFalse(thread.isAlive());
+    assertNull(error.get());
+  }
+
   @Test
   public void testCLIHandlerNameConflicts() {
     final List<String> checked = new ArrayList<>();
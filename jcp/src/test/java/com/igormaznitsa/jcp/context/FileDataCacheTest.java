@@ -0,0 +1,121 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileDataCacheTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static String parse(final AtomicInteger counter, final byte[] content) {
+    counter.incrementAndGet();
+    return new String(content, StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testDataReusedForUnchangedFile() throws Exception {
+    final File file = tempFolder.newFile("some.txt");
+    FileUtils.writeStringToFile(file, "hello", StandardCharsets.UTF_8);
+    final AtomicInteger counter = new AtomicInteger();
+    final FileDataCache cache = new FileDataCache();
+
+    final String first = cache.find("str", file, String.class, x -> parse(counter, x));
+    final String second = cache.find("str", file, String.class, x -> parse(counter, x));
+    assertEquals("hello", first);
+    assertSame(first, second);
+    assertEquals(1, counter.get());
+
+    cache.find("other", file, String.class, x -> parse(counter, x));
+    assertEquals(2, counter.get());
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void testDataReusedForTouchedFileWithSameContent() throws Exception {
+    final File file = tempFolder.newFile("some.txt");
+    FileUtils.writeStringToFile(file, "hello", StandardCharsets.UTF_8);
+    final AtomicInteger counter = new AtomicInteger();
+    final FileDataCache cache = new FileDataCache();
+
+    final String first = cache.find("str", file, String.class, x -> parse(counter, x));
+    file.setLastModified(file.lastModified() - 10000L);
+    assertSame(first, cache.find("str", file, String.class, x -> parse(counter, x)));
+    assertEquals(1, counter.get());
+  }
+
+  @Test
+  public void testDataParsedForChangedFile() throws Exception {
+    final File file = tempFolder.newFile("some.txt");
+    FileUtils.writeStringToFile(file, "hello", StandardCharsets.UTF_8);
+    final AtomicInteger counter = new AtomicInteger();
+    final FileDataCache cache = new FileDataCache();
+
+    final long modified = file.lastModified();
+    final String first = cache.find("str", file, String.class, x -> parse(counter, x));
+    FileUtils.writeStringToFile(file, "world", StandardCharsets.UTF_8);
+    file.setLastModified(modified - 10000L);
+    final String second = cache.find("str", file, String.class, x -> parse(counter, x));
+    assertNotSame(first, second);
+    assertEquals("world", second);
+    assertEquals(2, counter.get());
+  }
+
+  @Test
+  public void testIncludeFileCacheKeptAndCleared() throws Exception {
+    final File file = tempFolder.newFile("some.txt");
+    FileUtils.writeStringToFile(file, "hello", StandardCharsets.UTF_8);
+    final FileDataCache cache = new FileDataCache();
+    final IncludeFileCache includeFileCache = cache.getIncludeFileCache();
+    assertSame(includeFileCache, cache.getIncludeFileCache());
+
+    includeFileCache.read(file, StandardCharsets.UTF_8);
+    assertEquals(1, includeFileCache.size());
+    cache.clear();
+    assertEquals(0, includeFileCache.size());
+  }
+
+  @Test
+  public void testMaxEntries() throws Exception {
+    final FileDataCache cache = new FileDataCache(2);
+    final AtomicInteger counter = new AtomicInteger();
+    for (int i = 0; i < 4; i++) {
+      final File file = tempFolder.newFile("file" + i + ".txt");
+      FileUtils.writeStringToFile(file, "text" + i, StandardCharsets.UTF_8);
+      cache.find("str", file, String.class, x -> parse(counter, x));
+    }
+    assertEquals(2, cache.size());
+    cache.clear();
+    assertEquals(0, cache.size());
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.context;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.igormaznitsa.jcp.utils.TextLineIndex;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IncludeFileCacheTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File makeFile(final String name, final String text, final long modified)
+      throws Exception {
+    final File result = new File(tempFolder.getRoot(), name);
+    Files.write(result.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    assertTrue(result.setLastModified(modified));
+    return result;
+  }
+
+  @Test
+  public void testReuseAndInvalidation() throws Exception {
+    final IncludeFileCache cache = new IncludeFileCache(IncludeFileCache.DEFAULT_MAX_MEMORY);
+    final File file = makeFile("header.java", "line1\nline2\n", 100000L);
+
+    final TextLineIndex first = cache.read(file, StandardCharsets.UTF_8);
+    assertArrayEquals(new String[] {"line1", "line2"}, first.toArray());
+    assertSame(first, cache.read(file, StandardCharsets.UTF_8));
+    assertSame(first, cache.read(new File(tempFolder.getRoot(), "./header.java"),
+        StandardCharsets.UTF_8));
+    assertNotSame(first, cache.read(file, StandardCharsets.ISO_8859_1));
+    assertEquals(2, cache.size());
+
+    makeFile("header.java", "line3\n", 200000L);
+    final TextLineIndex changed = cache.read(file, StandardCharsets.UTF_8);
+    assertNotSame(first, changed);
+    assertArrayEquals(new String[] {"line3"}, changed.toArray());
+    assertSame(changed, cache.read(file, StandardCharsets.UTF_8));
+    assertEquals(2, cache.size());
+
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0L, cache.getUsedMemory());
+  }
+
+  @Test
+  public void testMemoryBoundAndLruEviction() throws Exception {
+    final StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      text.append("some line of included text ").append(i).append('\n');
+    }
+    final File file1 = makeFile("file1.java", text.toString(), 100000L);
+    final File file2 = makeFile("file2.java", text.toString(), 100000L);
+    final File file3 = makeFile("file3.java", text.toString(), 100000L);
+
+    final long entrySize =
+        TextLineIndex.read(file1, StandardCharsets.UTF_8).estimateMemorySize();
+    final IncludeFileCache cache = new IncludeFileCache(entrySize * 2 + entrySize / 2);
+
+    final TextLineIndex text1 = cache.read(file1, StandardCharsets.UTF_8);
+    final TextLineIndex text2 = cache.read(file2, StandardCharsets.UTF_8);
+    assertSame(text1, cache.read(file1, StandardCharsets.UTF_8));
+
+    cache.read(file3, StandardCharsets.UTF_8);
+    assertEquals(2, cache.size());
+    assertTrue(cache.getUsedMemory() <= entrySize * 2 + entrySize / 2);
+    assertSame(text1, cache.read(file1, StandardCharsets.UTF_8));
+    assertNotSame(text2, cache.read(file2, StandardCharsets.UTF_8));
+
+    final IncludeFileCache tooSmall = new IncludeFileCache(entrySize / 2);
+    tooSmall.read(file1, StandardCharsets.UTF_8);
+    assertEquals(0, tooSmall.size());
+  }
+
+  @Test
+  public void testMemoryUpdatedForMadeLines() throws Exception {
+    final File file = makeFile("file.java", "line 1\nline 2\nline 3\n", 100000L);
+    final IncludeFileCache cache = new IncludeFileCache(IncludeFileCache.DEFAULT_MAX_MEMORY);
+
+    final TextLineIndex text = cache.read(file, StandardCharsets.UTF_8);
+    final long memory = cache.getUsedMemory();
+    assertEquals(text.estimateMemorySize(), memory);
+
+    text.toArray();
+    assertSame(text, cache.read(file, StandardCharsets.UTF_8));
+    assertTrue(cache.getUsedMemory() > memory);
+    assertEquals(text.estimateMemorySize(), cache.getUsedMemory());
+  }
+
+  @Test
+  public void testParallelReading() throws Exception {
+    final IncludeFileCache cache = new IncludeFileCache(IncludeFileCache.DEFAULT_MAX_MEMORY);
+    final List<File> files = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      files.add(makeFile("file" + i + ".java", "text " + i + "\nend\n", 100000L));
+    }
+
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<?>> tasks = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        tasks.add(executor.submit(() -> {
+          for (int i = 0; i < 200; i++) {
+            final int index = i % files.size();
+            final TextLineIndex text = cache.read(files.get(index), StandardCharsets.UTF_8);
+            assertEquals("text " + index, text.getLine(0));
+            assertEquals("end", text.getLine(1));
+          }
+          return null;
+        }));
+      }
+      for (final Future<?> task : tasks) {
+        task.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(files.size(), cache.size());
+  }
+}
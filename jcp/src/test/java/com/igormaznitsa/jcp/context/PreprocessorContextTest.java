@@ -24,11 +24,13 @@ package com.igormaznitsa.jcp.context;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 
+import com.igormaznitsa.jcp.containers.FileInfoContainer;
 import com.igormaznitsa.jcp.expression.Value;
 import com.igormaznitsa.jcp.extension.PreprocessorExtension;
 import com.igormaznitsa.jcp.logger.PreprocessorLogger;
@@ -147,7 +149,7 @@ public class PreprocessorContextTest {
         detected++;
       }
     }
-    assertEquals(4, detected);
+    assertEquals(5, detected);
   }
 
   private static void assertContextEquals(final Map<Field, Object> etalon, final Map<Field, Object> value) {
@@ -269,6 +271,12 @@ public class PreprocessorContextTest {
         };
 
         f.set(context, exx);
+      } else if (type == VariableAccessRecord.class) {
+        f.set(context, new VariableAccessRecord());
+      } else if (type == FileDataCache.class) {
+        f.set(context, new FileDataCache());
+      } else if (type == IncludeFileCache.class) {
+        f.set(context, new IncludeFileCache(IncludeFileCache.DEFAULT_MAX_MEMORY));
       } else if (type.isAssignableFrom(List.class) || type.isAssignableFrom(Set.class)) {
         // ignored
       } else {
@@ -327,4 +335,53 @@ public class PreprocessorContextTest {
     }
   }
 
+  @Test
+  public void testIncludeFileCacheMadeForEveryContext() {
+    final PreprocessorContext first =
+        new PreprocessorContext(new File("some_impossible_folder_121212"));
+    final PreprocessorContext second =
+        new PreprocessorContext(new File("some_impossible_folder_121212"));
+    assertNotSame(first.getIncludeFileCache(), second.getIncludeFileCache());
+    assertSame(first.getIncludeFileCache(), first.makeWorkerCopy(null).getIncludeFileCache());
+    assertSame(first.getIncludeFileCache(), new PreprocessorContext(first).getIncludeFileCache());
+  }
+
+  @Test
+  public void testIncludeFileCacheSharedThroughFileDataCache() {
+    final FileDataCache cache = new FileDataCache();
+    final PreprocessorContext first =
+        new PreprocessorContext(new File("some_impossible_folder_121212"));
+    final PreprocessorContext second =
+        new PreprocessorContext(new File("some_impossible_folder_121212"));
+    first.setFileDataCache(cache);
+    second.setFileDataCache(cache);
+    assertSame(cache.getIncludeFileCache(), first.getIncludeFileCache());
+    assertSame(first.getIncludeFileCache(), second.getIncludeFileCache());
+  }
+
+  @Test
+  public void testFindFileInfoContainer() throws Exception {
+    final PreprocessorContext context = new PreprocessorContext(new File("base"));
+    final FileInfoContainer first = new FileInfoContainer(new File("src/a.java"), "a.java", false);
+    final FileInfoContainer second = new FileInfoContainer(new File("src/a.java"), "a2.java", false);
+    final FileInfoContainer third = new FileInfoContainer(new File("src/b.java"), "b.java", true);
+
+    assertFalse(context.findFileInfoContainer(null).isPresent());
+    assertFalse(context.findFileInfoContainer(new File("src/a.java")).isPresent());
+
+    context.addPreprocessedResource(first);
+    context.addAllPreprocessedResources(Arrays.asList(second, third));
+
+    assertSame(first, context.findFileInfoContainer(new File("src/a.java")).get());
+    assertSame(third, context.findFileInfoContainer(new File("src/b.java")).get());
+    assertFalse(context.findFileInfoContainer(new File("src/c.java")).isPresent());
+    assertEquals(3, context.findPreprocessedResources().size());
+
+    final PreprocessorContext copy = context.makeWorkerCopy(context.getPreprocessorLogger());
+    final FileInfoContainer fourth = new FileInfoContainer(new File("src/c.java"), "c.java", false);
+    copy.addPreprocessedResource(fourth);
+    assertSame(fourth, context.findFileInfoContainer(new File("src/c.java")).get());
+    assertSame(first, new PreprocessorContext(context)
+        .findFileInfoContainer(new File("src/a.java")).get());
+  }
 }
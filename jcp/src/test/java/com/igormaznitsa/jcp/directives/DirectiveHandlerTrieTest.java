@@ -0,0 +1,70 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.directives;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DirectiveHandlerTrieTest {
+
+  private static AbstractDirectiveHandler findSequentially(final String directiveString) {
+    for (final AbstractDirectiveHandler handler : AbstractDirectiveHandler.getAllDirectives()) {
+      if (directiveString.startsWith(handler.getName())) {
+        return handler;
+      }
+    }
+    return null;
+  }
+
+  @Test
+  public void testSameResultAsSequentialSearch() {
+    final DirectiveHandlerTrie trie =
+        new DirectiveHandlerTrie(AbstractDirectiveHandler.getAllDirectives());
+    for (final AbstractDirectiveHandler handler : AbstractDirectiveHandler.getAllDirectives()) {
+      for (final String tail : new String[] {"", " ", "x", " a==b", "def", "if true"}) {
+        final String directive = handler.getName() + tail;
+        assertSame(directive, findSequentially(directive), trie.find(directive));
+      }
+    }
+  }
+
+  @Test
+  public void testPrefixOrdering() {
+    assertEquals(IfDefinedDirectiveHandler.class,
+        AbstractDirectiveHandler.findForDirective("ifdefined name").getClass());
+    assertEquals(IfDefDirectiveHandler.class,
+        AbstractDirectiveHandler.findForDirective("ifdef name").getClass());
+    assertEquals(IfDirectiveHandler.class,
+        AbstractDirectiveHandler.findForDirective("if true").getClass());
+    assertEquals(DefinelDirectiveHandler.class,
+        AbstractDirectiveHandler.findForDirective("definel a").getClass());
+    assertEquals(DefineDirectiveHandler.class,
+        AbstractDirectiveHandler.findForDirective("define a").getClass());
+  }
+
+  @Test
+  public void testUnknownDirective() {
+    assertNull(AbstractDirectiveHandler.findForDirective(""));
+    assertNull(AbstractDirectiveHandler.findForDirective("unknown"));
+  }
+}
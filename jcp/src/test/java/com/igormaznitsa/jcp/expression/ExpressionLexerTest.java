@@ -0,0 +1,117 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.expression;
+
+import com.igormaznitsa.jcp.AbstractMockPreprocessorContextTest;
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.exceptions.PreprocessorException;
+import com.igormaznitsa.jcp.expression.operators.AbstractOperator;
+import com.igormaznitsa.jcp.expression.operators.OperatorAND;
+import com.igormaznitsa.jcp.expression.operators.OperatorGREATEQU;
+import com.igormaznitsa.jcp.expression.operators.OperatorNOT;
+import com.igormaznitsa.jcp.expression.operators.OperatorNOTEQU;
+import com.igormaznitsa.jcp.expression.operators.OperatorOR;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ExpressionLexerTest extends AbstractMockPreprocessorContextTest {
+
+  private static void assertItems(final PreprocessorContext context, final String text,
+                                  final ExpressionItem... items) {
+    final ExpressionLexer lexer = new ExpressionLexer(text);
+    int index = 0;
+    for (final ExpressionItem item : items) {
+      final ExpressionItem read = lexer.nextItem(context);
+      if (item instanceof Variable) {
+        assertTrue("Position " + index + " must be variable", read instanceof Variable);
+        assertEquals(((Variable) item).getName(), ((Variable) read).getName());
+      } else {
+        assertEquals("Position " + index + " must be equal", item, read);
+      }
+      index++;
+    }
+    assertNull(lexer.nextItem(context));
+  }
+
+  @Test
+  public void testOperators() throws Exception {
+    final PreprocessorContext context = prepareMockContext();
+    assertItems(context, "!a!=b>=c&&d|| !e",
+        AbstractOperator.findForClass(OperatorNOT.class),
+        new Variable("a"),
+        AbstractOperator.findForClass(OperatorNOTEQU.class),
+        new Variable("b"),
+        AbstractOperator.findForClass(OperatorGREATEQU.class),
+        new Variable("c"),
+        AbstractOperator.findForClass(OperatorAND.class),
+        new Variable("d"),
+        AbstractOperator.findForClass(OperatorOR.class),
+        AbstractOperator.findForClass(OperatorNOT.class),
+        new Variable("e"));
+  }
+
+  @Test(expected = PreprocessorException.class)
+  public void testUnknownOperator() throws Exception {
+    final PreprocessorContext context = prepareMockContext();
+    final ExpressionLexer lexer = new ExpressionLexer("1 =< 2");
+    assertEquals(Value.INT_ONE, lexer.nextItem(context));
+    lexer.nextItem(context);
+  }
+
+  @Test
+  public void testNumbers() throws Exception {
+    final PreprocessorContext context = prepareMockContext();
+    assertItems(context, "0 012 0XfF 0x1A 1.5 .25 0.5",
+        Value.INT_ZERO,
+        Value.valueOf(12L),
+        Value.valueOf(255L),
+        Value.valueOf(26L),
+        Value.valueOf(1.5f),
+        Value.valueOf(0.25f),
+        Value.valueOf(0.5f));
+  }
+
+  @Test
+  public void testStrings() throws Exception {
+    final PreprocessorContext context = prepareMockContext();
+    assertItems(context, "\"plain\" \"esc\\t\\\"\\u00e9\\u00C9\" \"\"",
+        Value.valueOf("plain"),
+        Value.valueOf("esc\t\"\u00e9\u00c9"),
+        Value.valueOf(""));
+  }
+
+  @Test(expected = PreprocessorException.class)
+  public void testNonCompletedUnicodeChar() throws Exception {
+    new ExpressionLexer("\"\\u00\"").nextItem(prepareMockContext());
+  }
+
+  @Test
+  public void testVariableNamesInLowerCase() throws Exception {
+    final PreprocessorContext context = prepareMockContext();
+    assertItems(context, "Some.Var TRUE,False",
+        new Variable("some.var"),
+        Value.BOOLEAN_TRUE,
+        ExpressionParser.SpecialItem.COMMA,
+        Value.BOOLEAN_FALSE);
+  }
+}
@@ -36,9 +36,6 @@ import com.igormaznitsa.jcp.expression.operators.OperatorMUL;
 import com.igormaznitsa.jcp.expression.operators.OperatorSUB;
 import org.junit.Test;
 
-import java.io.PushbackReader;
-import java.io.StringReader;
-
 import static org.junit.Assert.*;
 
 public class ExpressionParserTest extends AbstractMockPreprocessorContextTest {
@@ -68,74 +65,74 @@ public class ExpressionParserTest extends AbstractMockPreprocessorContextTest {
   public void testNextItem_zero() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("0"));
-    assertEquals("Must be 0", Value.INT_ZERO, ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+    final ExpressionLexer lexer = new ExpressionLexer("0");
+    assertEquals("Must be 0", Value.INT_ZERO, lexer.nextItem(context));
+    assertNull("Must be null", lexer.nextItem(context));
   }
 
   @Test
   public void testNextItem_negativeNumber() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("-1"));
-    assertEquals("Must be SUB", AbstractOperator.findForClass(OperatorSUB.class), ExpressionParser.getInstance().nextItem(reader, context));
-    assertEquals("Must be 1", Value.INT_ONE, ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+    final ExpressionLexer lexer = new ExpressionLexer("-1");
+    assertEquals("Must be SUB", AbstractOperator.findForClass(OperatorSUB.class), lexer.nextItem(context));
+    assertEquals("Must be 1", Value.INT_ONE, lexer.nextItem(context));
+    assertNull("Must be null", lexer.nextItem(context));
   }
 
   @Test
   public void testNextItem_zeroLess() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("0<"));
-    assertEquals("Must be 0", Value.INT_ZERO, ExpressionParser.getInstance().nextItem(reader, context));
-    assertEquals("Must be LESS", AbstractOperator.findForClass(OperatorLESS.class), ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+    final ExpressionLexer lexer = new ExpressionLexer("0<");
+    assertEquals("Must be 0", Value.INT_ZERO, lexer.nextItem(context));
+    assertEquals("Must be LESS", AbstractOperator.findForClass(OperatorLESS.class), lexer.nextItem(context));
+    assertNull("Must be null", lexer.nextItem(context));
   }
 
   @Test
   public void testNextItem_oneValue() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("3"));
-    assertEquals("Must be 3", Value.INT_THREE, ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+    final ExpressionLexer lexer = new ExpressionLexer("3");
+    assertEquals("Must be 3", Value.INT_THREE, lexer.nextItem(context));
+    assertNull("Must be null", lexer.nextItem(context));
   }
 
   @Test
   public void testNextItem_oneHexValue() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("0xfF"));
-    assertEquals("Must be 255", Value.valueOf(255L), ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+    final ExpressionLexer lexer = new ExpressionLexer("0xfF");
+    assertEquals("Must be 255", Value.valueOf(255L), lexer.nextItem(context));
+    assertNull("Must be null", lexer.nextItem(context));
   }
 
   @Test
   public void testNextItem_oneBooleanTrueValue() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("true"));
-    assertEquals("Must be TRUE", Value.BOOLEAN_TRUE, ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+    final ExpressionLexer lexer = new ExpressionLexer("true");
+    assertEquals("Must be TRUE", Value.BOOLEAN_TRUE, lexer.nextItem(context));
+    assertNull("Must be null", lexer.nextItem(context));
   }
 
   @Test
   public void testNextItem_oneBooleanFalseValue() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("false"));
-    assertEquals("Must be FALSE", Value.BOOLEAN_FALSE, ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+    final ExpressionLexer lexer = new ExpressionLexer("false");
+    assertEquals("Must be FALSE", Value.BOOLEAN_FALSE, lexer.nextItem(context));
+    assertNull("Must be null", lexer.nextItem(context));
   }
 
   @Test
   public void testNextItem_oneOperator() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("/"));
-    assertEquals("Must be DIV", AbstractOperator.findForClass(OperatorDIV.class), ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+    final ExpressionLexer lexer = new ExpressionLexer("/");
+    assertEquals("Must be DIV", AbstractOperator.findForClass(OperatorDIV.class), lexer.nextItem(context));
+    assertNull("Must be null", lexer.nextItem(context));
   }
 
   @Test
@@ -143,7 +140,7 @@ public class ExpressionParserTest extends AbstractMockPreprocessorContextTest {
 
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("xml_attr(1.3%abs(1+2)*3/4,\"hello\"==\"\nworld\t\")"));
+    final ExpressionLexer lexer = new ExpressionLexer("xml_attr(1.3%abs(1+2)*3/4,\"hello\"==\"\nworld\t\")");
 
     final ExpressionItem[] items = new ExpressionItem[] {
         AbstractFunction.findForClass(FunctionXML_ATTR.class),
@@ -169,10 +166,10 @@ public class ExpressionParserTest extends AbstractMockPreprocessorContextTest {
 
     int index = 0;
     for (final ExpressionItem item : items) {
-      assertEquals("Position " + index + " must be equal", item, ExpressionParser.getInstance().nextItem(reader, context));
+      assertEquals("Position " + index + " must be equal", item, lexer.nextItem(context));
       index++;
     }
-    assertNull(ExpressionParser.getInstance().nextItem(reader, context));
+    assertNull(lexer.nextItem(context));
   }
 
   @Test
@@ -302,4 +299,59 @@ public class ExpressionParserTest extends AbstractMockPreprocessorContextTest {
     final ExpressionTree tree = parser.parse("()", context);
     assertTrue("Must be empty", tree.getRoot().isEmptySlot());
   }
+
+  @Test
+  public void testFoldConstants_ConstantExpression() throws Exception {
+    final PreprocessorContext context = prepareMockContext();
+
+    final ExpressionTree tree =
+        ExpressionParser.getInstance().parse("(-(1+2*(3-4)))*abs(-3)+strlen(\"hello\"+\"world\")", context);
+    tree.foldConstants();
+
+    final ExpressionTreeElement root = tree.getRoot();
+    assertEquals(Value.valueOf(13L), root.getItem());
+    assertEquals(0, root.getArity());
+  }
+
+  @Test
+  public void testFoldConstants_KeepVariablesAndNotPureFunctions() throws Exception {
+    final PreprocessorContext context = prepareMockContext();
+
+    final OperatorADD ADD = AbstractOperator.findForClass(OperatorADD.class);
+    final OperatorMUL MUL = AbstractOperator.findForClass(OperatorMUL.class);
+
+    final ExpressionTree tree =
+        ExpressionParser.getInstance().parse("var1*(2+3)+xml_attr(\"a\"+\"b\",\"c\")", context);
+    tree.foldConstants();
+
+    final ExpressionTreeElement root = tree.getRoot();
+    assertEquals(ADD, root.getItem());
+
+    final ExpressionTreeElement left = root.getChildForIndex(0);
+    assertEquals(MUL, left.getItem());
+    assertEquals(ExpressionItemType.VARIABLE, left.getChildForIndex(0).getItem().getExpressionItemType());
+    assertEquals(Value.valueOf(5L), left.getChildForIndex(1).getItem());
+
+    final ExpressionTreeElement right = root.getChildForIndex(1);
+    assertEquals(AbstractFunction.findForClass(FunctionXML_ATTR.class), right.getItem());
+    assertEquals(Value.valueOf("ab"), right.getChildForIndex(0).getItem());
+  }
+
+  @Test
+  public void testFoldConstants_ShortCircuitAndErrors() throws Exception {
+    final PreprocessorContext context = prepareMockContext();
+
+    final ExpressionTree shortCircuit =
+        ExpressionParser.getInstance().parse("false && var1", context);
+    shortCircuit.foldConstants();
+    assertEquals(Value.BOOLEAN_FALSE, shortCircuit.getRoot().getItem());
+
+    final ExpressionTree divByZero = ExpressionParser.getInstance().parse("1/0", context);
+    divByZero.foldConstants();
+    assertEquals(AbstractOperator.findForClass(OperatorDIV.class), divByZero.getRoot().getItem());
+
+    final ExpressionTree wrongTypes = ExpressionParser.getInstance().parse("true+1", context);
+    wrongTypes.foldConstants();
+    assertEquals(AbstractOperator.findForClass(OperatorADD.class), wrongTypes.getRoot().getItem());
+  }
 }
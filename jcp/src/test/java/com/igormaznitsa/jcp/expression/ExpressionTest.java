@@ -22,6 +22,11 @@
 package com.igormaznitsa.jcp.expression;
 
 import com.igormaznitsa.jcp.AbstractSpyPreprocessorContextTest;
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.expression.functions.AbstractFunction;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
@@ -32,4 +37,54 @@ public class ExpressionTest extends AbstractSpyPreprocessorContextTest {
   public void testSimpleExpression() throws Exception {
     assertEquals("Must be equal", Value.INT_TWO, Expression.evalExpression("40/4-2*4", preparePreprocessorContext(getCurrentTestFolder())));
   }
+
+  @Test
+  public void testLazyFunctionArguments() throws Exception {
+    final AbstractFunction lazyIf = new AbstractFunction() {
+      @Override
+      public String getName() {
+        return "lazyif";
+      }
+
+      @Override
+      public String getReference() {
+        return "test function";
+      }
+
+      @Override
+      public int getArity() {
+        return 3;
+      }
+
+      @Override
+      public ValueType[][] getAllowedArgumentTypes() {
+        return new ValueType[][] {{ValueType.BOOLEAN, ValueType.ANY, ValueType.ANY}};
+      }
+
+      @Override
+      public ValueType getResultType() {
+        return ValueType.ANY;
+      }
+
+      @Override
+      public boolean isLazyArguments() {
+        return true;
+      }
+
+      @Override
+      public Value executeLazy(final PreprocessorContext context,
+                               final List<Supplier<Value>> arguments) {
+        return arguments.get(0).get().asBoolean() ? arguments.get(1).get() : arguments.get(2).get();
+      }
+    };
+
+    final PreprocessorContext context = preparePreprocessorContext(getCurrentTestFolder());
+    final ExpressionParser parser = ExpressionParser.getInstance();
+    final ExpressionTree tree = new ExpressionTree();
+    tree.addItem(lazyIf);
+    tree.getRoot().fillArguments(Arrays.asList(parser.parse("1 < 2", context),
+        parser.parse("\"yes\"", context), parser.parse("1/0", context)));
+
+    assertEquals(Value.valueOf("yes"), Expression.evalTree(tree, context));
+  }
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.extension.PreprocessorExtension;
+import java.io.File;
+import org.junit.Test;
+
+public class ExpressionTreeCacheTest {
+
+  private static ExpressionTree parse(final String expression, final PreprocessorContext context)
+      throws Exception {
+    return ExpressionParser.getInstance().parse(expression, context);
+  }
+
+  @Test
+  public void testFindAndEviction() throws Exception {
+    final PreprocessorContext context = new PreprocessorContext(new File("some_impossible_folder"));
+    final ExpressionTreeCache cache = new ExpressionTreeCache(2);
+
+    final ExpressionTree tree = parse("1+2", context);
+    cache.put("1+2", tree, null);
+    assertSame(tree, cache.find("1+2", null));
+    assertSame(tree, cache.find("1+2", mock(PreprocessorExtension.class)));
+
+    cache.put("2+3", parse("2+3", context), null);
+    cache.find("1+2", null);
+    cache.put("3+4", parse("3+4", context), null);
+
+    assertEquals(2, cache.size());
+    assertNotNull(cache.find("1+2", null));
+    assertNull(cache.find("2+3", null));
+    assertNotNull(cache.find("3+4", null));
+
+    cache.clear();
+    assertNull(cache.find("1+2", null));
+  }
+
+  @Test
+  public void testUserFunctionArityAndExtensionChange() throws Exception {
+    final PreprocessorExtension extension = mock(PreprocessorExtension.class);
+    when(extension.getUserFunctionArity(eq("test"))).thenReturn(2);
+    final PreprocessorContext context = new PreprocessorContext(new File("some_impossible_folder"));
+    context.setPreprocessorExtension(extension);
+
+    final ExpressionTreeCache cache = new ExpressionTreeCache(16);
+    final ExpressionTree tree = parse("$test(1,2)", context);
+    cache.put("$test(1,2)", tree, extension);
+
+    assertSame(tree, cache.find("$test(1,2)", extension));
+    assertNull(cache.find("$test(1,2)", null));
+    assertNull(cache.find("$test(1,2)", mock(PreprocessorExtension.class)));
+
+    when(extension.getUserFunctionArity(eq("test"))).thenReturn(3);
+    assertNull(cache.find("$test(1,2)", extension));
+  }
+
+  @Test
+  public void testErrorPositionForCachedExpression() throws Exception {
+    final PreprocessorContext context = new PreprocessorContext(new File("some_impossible_folder"));
+    assertEquals(Value.INT_THREE, Expression.evalExpression(" 1 + 2 ", context));
+    assertEquals(Value.INT_THREE, Expression.evalExpression("1 + 2", context));
+
+    context.setGlobalVariable("a", Value.valueOf(1L));
+    assertEquals(Value.INT_TWO, Expression.evalExpression("a+1", context));
+    context.setGlobalVariable("a", Value.valueOf("x"));
+    assertEquals(Value.valueOf("x1"), Expression.evalExpression("a+1", context));
+  }
+}
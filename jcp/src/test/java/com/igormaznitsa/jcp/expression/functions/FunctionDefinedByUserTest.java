@@ -26,6 +26,8 @@ import com.igormaznitsa.jcp.context.PreprocessorContext;
 import com.igormaznitsa.jcp.expression.Expression;
 import com.igormaznitsa.jcp.expression.Value;
 import com.igormaznitsa.jcp.extension.PreprocessorExtension;
+import java.util.List;
+import java.util.function.Supplier;
 import org.junit.Test;
 import org.mockito.AdditionalMatchers;
 
@@ -75,4 +77,39 @@ public class FunctionDefinedByUserTest extends AbstractSpyPreprocessorContextTes
 
     verify(mock).processUserFunction(eq("test"), AdditionalMatchers.aryEq(new Value[0]));
   }
+
+  @Test
+  public void testExecution_lazyArguments() throws Exception {
+    final PreprocessorContext context = preparePreprocessorContext(getCurrentTestFolder());
+    context.setPreprocessorExtension(new PreprocessorExtension() {
+      @Override
+      public boolean processAction(final PreprocessorContext context, final Value[] parameters) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public Value processUserFunction(final String functionName, final Value[] arguments) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public int getUserFunctionArity(final String functionName) {
+        return 3;
+      }
+
+      @Override
+      public boolean isLazyUserFunction(final String functionName) {
+        return "iif".equals(functionName);
+      }
+
+      @Override
+      public Value processUserFunctionLazy(final String functionName,
+                                           final List<Supplier<Value>> arguments) {
+        return arguments.get(0).get().asBoolean() ? arguments.get(1).get() : arguments.get(2).get();
+      }
+    });
+    context.setGlobalVariable("zero", Value.INT_ZERO);
+
+    assertEquals(Value.INT_ONE, Expression.evalExpression("$iif(true,1,1/zero)", context));
+  }
 }
@@ -45,13 +45,21 @@ public class OperatorANDTest extends AbstractOperatorTest {
     assertExecution(Value.valueOf(Boolean.TRUE), "true && true && true");
   }
 
+  @Test
+  public void testExecution_ShortCircuit() throws Exception {
+    assertExecution(Value.BOOLEAN_FALSE, "false && 1.3");
+    assertExecution(Value.BOOLEAN_FALSE, "false && 1/0 == 1");
+    assertExecution(Value.BOOLEAN_FALSE, "false && unknown_variable");
+    assertExecution(Value.BOOLEAN_FALSE, "1 == 2 && (1/0 == 1)");
+  }
+
   @Override
   public void testExecution_PreprocessorException() throws Exception {
     assertPreprocessorException("&&");
     assertPreprocessorException("true &&");
     assertPreprocessorException("&& false");
     assertPreprocessorException("\"test\" && true");
-    assertPreprocessorException("false && 1.3");
+    assertPreprocessorException("true && 1.3");
   }
 
   @Override
@@ -23,6 +23,7 @@ package com.igormaznitsa.jcp.expression.operators;
 
 import com.igormaznitsa.jcp.expression.ExpressionItemPriority;
 import com.igormaznitsa.jcp.expression.Value;
+import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 
@@ -59,12 +60,19 @@ public class OperatorORTest extends AbstractOperatorTest {
     assertExecution(Value.valueOf(3L), "1||2");
   }
 
+  @Test
+  public void testExecution_ShortCircuit() throws Exception {
+    assertExecution(Value.BOOLEAN_TRUE, "true||1");
+    assertExecution(Value.BOOLEAN_TRUE, "true||1/0==1");
+    assertExecution(Value.BOOLEAN_TRUE, "true||unknown_variable");
+  }
+
   @Override
   public void testExecution_PreprocessorException() throws Exception {
     assertPreprocessorException("||");
     assertPreprocessorException("true||");
     assertPreprocessorException("\"test\"||true");
-    assertPreprocessorException("true||1");
+    assertPreprocessorException("false||1");
     assertPreprocessorException("1.2||1.1");
     assertPreprocessorException("||false");
   }
@@ -77,6 +77,7 @@ public final class PreprocessMojoTest extends AbstractMojoTestCase {
     assertNotNull("Must not be null", mojo);
 
     assertFalse(mojo.isSkip());
+    assertFalse(mojo.isSkipUnchanged());
     mojo.setSkip(true);
     assertTrue(mojo.isSkip());
 
@@ -89,6 +90,7 @@ public final class PreprocessMojoTest extends AbstractMojoTestCase {
 
     assertArrayEqualsWithoutOrders(new String[] {"/", "/some", "/another/some"}, sources);
     assertEquals("destination_dir", context.getTarget().getName());
+    assertEquals("state.manifest", context.findManifestFile().getName());
     assertArrayEqualsWithoutOrders(new String[] {"xml", "html"}, context.getExcludeExtensions().toArray());
     assertArrayEqualsWithoutOrders(new String[] {"java", "txt"}, context.getExtensions().toArray());
     assertEquals(StandardCharsets.UTF_16, context.getSourceEncoding());
@@ -80,4 +80,28 @@ public class JavaCommentsRemoverTest {
 
     assertEquals("Must be the same", DST, writer.toString());
   }
+
+  @Test
+  public void testTrailingSlashIsKept() throws Exception {
+    final StringWriter writer = new StringWriter(256);
+    new JavaCommentsRemover(new StringReader("a = b /"), writer).process();
+    assertEquals("a = b /", writer.toString());
+  }
+
+  @Test
+  public void testWriterFilterForAnySplitOfText() throws Exception {
+    final String SRC = "class main() {/**\ntest\n**/\n// hello\r\nString s = \"a\\\"/*b*/\\\\\";/* c **/x/y;//z";
+    final String DST = "class main() {\n\nString s = \"a\\\"/*b*/\\\\\";x/y;";
+
+    for (int split = 0; split <= SRC.length(); split++) {
+      final StringWriter result = new StringWriter();
+      try (JavaCommentsRemovingWriter filter = new JavaCommentsRemovingWriter(result)) {
+        filter.write(SRC, 0, split);
+        for (int i = split; i < SRC.length(); i++) {
+          filter.write(SRC.charAt(i));
+        }
+      }
+      assertEquals("Split at " + split, DST, result.toString());
+    }
+  }
 }
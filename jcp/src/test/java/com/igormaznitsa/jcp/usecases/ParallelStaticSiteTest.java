@@ -0,0 +1,47 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.usecases;
+
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import java.io.File;
+import org.junit.Before;
+
+/**
+ * Preprocess the static site sources in parallel mode and check that result is the same as for sequential one.
+ */
+public class ParallelStaticSiteTest extends StaticSiteTest {
+
+  @Before
+  @Override
+  public void before() throws Exception {
+    super.before();
+    final File base =
+        new File(this.sourceFolder.getParentFile().getParentFile(), StaticSiteTest.class.getSimpleName());
+    this.sourceFolder = new File(base, "src");
+    this.etalonFolder = new File(base, "etl");
+  }
+
+  @Override
+  protected void tuneContext(final PreprocessorContext context) {
+    context.setThreads(4);
+  }
+}
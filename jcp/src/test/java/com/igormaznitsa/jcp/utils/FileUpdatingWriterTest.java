@@ -0,0 +1,117 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileUpdatingWriterTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static boolean write(final File file, final String text, final boolean onlyIfChanged,
+                               final Charset charset) throws Exception {
+    final FileUpdatingWriter writer = new FileUpdatingWriter(file, charset, onlyIfChanged, 64);
+    try {
+      // mix different ways of writing to check joints of buffers
+      final int third = text.length() / 3;
+      writer.write(text, 0, third);
+      for (int i = third; i < third * 2; i++) {
+        writer.write(text.charAt(i));
+      }
+      writer.append(CharBuffer.wrap(text.substring(third * 2)).asReadOnlyBuffer());
+    } finally {
+      writer.close();
+    }
+    return writer.isChanged();
+  }
+
+  private static String makeText(final int lines, final String variable) {
+    final StringBuilder result = new StringBuilder();
+    for (int i = 0; i < lines; i++) {
+      result.append("line ").append(i).append(" Привет мир 😀 ").append(variable)
+          .append('\n');
+    }
+    return result.toString();
+  }
+
+  private static String read(final File file, final Charset charset) throws Exception {
+    return new String(Files.readAllBytes(file.toPath()), charset);
+  }
+
+  @Test
+  public void testWriteOnlyChangedContent() throws Exception {
+    final File file = new File(tempFolder.getRoot(), "result.txt");
+    final String text = makeText(300, "a");
+
+    assertTrue(write(file, text, true, StandardCharsets.UTF_8));
+    assertEquals(text, read(file, StandardCharsets.UTF_8));
+
+    assertTrue(file.setLastModified(1000L));
+    assertFalse(write(file, text, true, StandardCharsets.UTF_8));
+    assertEquals(1000L, file.lastModified());
+    assertEquals(text, read(file, StandardCharsets.UTF_8));
+
+    final String changedInMiddle = text.replace("line 150 ", "line 150x");
+    assertTrue(write(file, changedInMiddle, true, StandardCharsets.UTF_8));
+    assertEquals(changedInMiddle, read(file, StandardCharsets.UTF_8));
+
+    final String shorter = changedInMiddle.substring(0, changedInMiddle.length() - 100);
+    assertTrue(write(file, shorter, true, StandardCharsets.UTF_8));
+    assertEquals(shorter, read(file, StandardCharsets.UTF_8));
+
+    final String longer = shorter + makeText(10, "b");
+    assertTrue(write(file, longer, true, StandardCharsets.UTF_8));
+    assertEquals(longer, read(file, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testAlwaysWrite() throws Exception {
+    final File file = new File(tempFolder.getRoot(), "result.txt");
+    final String text = makeText(100, "c");
+    assertTrue(write(file, text, false, StandardCharsets.UTF_16));
+    assertTrue(write(file, text, false, StandardCharsets.UTF_16));
+    assertEquals(text, read(file, StandardCharsets.UTF_16));
+  }
+
+  @Test
+  public void testEmptyContent() throws Exception {
+    final File file = new File(tempFolder.getRoot(), "result.txt");
+    assertTrue(write(file, "", true, StandardCharsets.UTF_8));
+    assertTrue(file.isFile());
+    assertFalse(write(file, "", true, StandardCharsets.UTF_8));
+    Files.write(file.toPath(), new byte[] {1, 2, 3});
+    assertTrue(write(file, "", true, StandardCharsets.UTF_8));
+    assertEquals(0L, file.length());
+  }
+}
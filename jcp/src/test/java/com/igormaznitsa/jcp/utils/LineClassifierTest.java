@@ -0,0 +1,120 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.igormaznitsa.jcp.utils.LineClassifier.LineType;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+public class LineClassifierTest {
+
+  private static final Pattern HASH = Pattern.compile("^\\s*//\\s*#(.*)$");
+  private static final Pattern TWO_DOLLARS = Pattern.compile("^\\s*//\\s*\\$\\$(.*)$");
+  private static final Pattern SINGLE_DOLLAR = Pattern.compile("^\\s*//\\s*\\$(.*)$");
+  private static final Pattern TAIL_REMOVER = Pattern.compile("\\/\\*\\s*-\\s*\\*\\/");
+  private static final Pattern MACROS = Pattern.compile("\\/\\*\\s*\\$(.*?)\\$\\s*\\*\\/");
+
+  private static final String[] LINES = new String[] {
+      "", "/", "//", "//#", "//#if true", "// #if true", "//\t \t#ifdef a", "//  $$hello",
+      "//$$", "//$", "//$hello", "// $ hello", "//$ $", "//  #if", "//#a\u0085", "# //",
+      "/ /#", "//\u0001#if", "int a = 1; /*-*/ tail", "a /* - */ b /*-*/", "a /*  -  */", "a /*- */",
+      "a /* -- */ b", "a /*/*-*/", "a */ /*", "/*$a$*/ text", "text /* $a$ */", "text /*a$*/",
+      "text /* * $ */"
+  };
+
+  private static LineType classifyByRegex(final String line) {
+    if (HASH.matcher(line).matches()) {
+      return LineType.DIRECTIVE;
+    } else if (TWO_DOLLARS.matcher(line).matches()) {
+      return LineType.TWO_DOLLARS;
+    } else if (SINGLE_DOLLAR.matcher(line).matches()) {
+      return LineType.SINGLE_DOLLAR;
+    } else {
+      return LineType.TEXT;
+    }
+  }
+
+  @Test
+  public void testClassifyAsRegexWithWhitespaces() {
+    for (final String line : LINES) {
+      final LineType expected = classifyByRegex(line);
+      assertEquals(line, expected, LineClassifier.classify(line, true));
+      if (expected != LineType.TEXT) {
+        final Matcher matcher = (expected == LineType.DIRECTIVE ? HASH :
+            expected == LineType.TWO_DOLLARS ? TWO_DOLLARS : SINGLE_DOLLAR).matcher(line);
+        assertTrue(matcher.matches());
+        assertEquals(line, matcher.group(1), LineClassifier.extractTail(line, expected, true));
+      }
+    }
+  }
+
+  @Test
+  public void testClassifyWithoutWhitespaces() {
+    assertEquals(LineType.DIRECTIVE, LineClassifier.classify("//#if", false));
+    assertEquals(LineType.TEXT, LineClassifier.classify("// #if", false));
+    assertEquals(LineType.TWO_DOLLARS, LineClassifier.classify("//$$a", false));
+    assertEquals(LineType.SINGLE_DOLLAR, LineClassifier.classify("//$a", false));
+    assertEquals(LineType.TEXT, LineClassifier.classify("// $a", false));
+    assertEquals(LineType.TEXT, LineClassifier.classify("//", false));
+    assertEquals("if", LineClassifier.extractTail("//#if", LineType.DIRECTIVE, false));
+    assertEquals("$a", LineClassifier.extractTail("//$$a", LineType.SINGLE_DOLLAR, false));
+    assertEquals("a", LineClassifier.extractTail("//$$a", LineType.TWO_DOLLARS, false));
+  }
+
+  @Test
+  public void testHashPrefixedWithWhitespaces() {
+    assertTrue(LineClassifier.isHashPrefixedWithWhitespaces("// #if"));
+    assertTrue(LineClassifier.isHashPrefixedWithWhitespaces("//  \t#if"));
+    assertFalse(LineClassifier.isHashPrefixedWithWhitespaces("//#if"));
+    assertFalse(LineClassifier.isHashPrefixedWithWhitespaces("//\t#if"));
+    assertFalse(LineClassifier.isHashPrefixedWithWhitespaces("// comment"));
+  }
+
+  @Test
+  public void testFindTailRemoverAsRegex() {
+    for (final String line : LINES) {
+      final Matcher matcher = TAIL_REMOVER.matcher(line);
+      assertEquals(line, matcher.find() ? matcher.start() : -1,
+          LineClassifier.findTailRemover(line, true));
+      assertEquals(line, line.indexOf("/*-*/"), LineClassifier.findTailRemover(line, false));
+    }
+  }
+
+  @Test
+  public void testHasMacrosAsRegex() {
+    for (final String line : LINES) {
+      if (MACROS.matcher(line).find()) {
+        assertTrue(line, LineClassifier.hasMacros(line, true));
+      }
+      if (line.contains("/*$")) {
+        assertTrue(line, LineClassifier.hasMacros(line, false));
+      }
+    }
+    assertFalse(LineClassifier.hasMacros("text /* comment */", true));
+    assertFalse(LineClassifier.hasMacros("text /* $ comment */", false));
+  }
+}
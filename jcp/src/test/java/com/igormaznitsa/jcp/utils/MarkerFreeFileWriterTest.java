@@ -0,0 +1,166 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.igormaznitsa.jcp.containers.FileInfoContainer;
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MarkerFreeFileWriterTest {
+
+  private static final String[] TEXTS = new String[] {
+      "a", "a\n", "a\r\n", "a\n\n", "\n", "a\r", "a\r\r\nb", "a\rb\nc",
+      "class A {\n  int a = 1; // comment\n}\n",
+      "class A {\r\n  /* comment */ int a;\r\n}",
+      "line1\r\nline2\nline3\r\n", "Здравствуй\nмир\n", "x = a / b * c;\n/ /#\n"
+  };
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static boolean hasMarkers(final String text) {
+    return MarkerFreeFileWriter.hasMarkers(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testHasMarkers() {
+    assertFalse(hasMarkers(""));
+    assertFalse(hasMarkers("/"));
+    assertFalse(hasMarkers("//"));
+    assertFalse(hasMarkers("// comment /* comment */ a / b"));
+    assertFalse(hasMarkers("/ /# / *$"));
+
+    assertTrue(hasMarkers("//#if true"));
+    assertTrue(hasMarkers("  //$$text"));
+    assertTrue(hasMarkers("a /*$var$*/ b"));
+    assertTrue(hasMarkers("a /*-*/ b"));
+    assertTrue(hasMarkers("// \t#if true"));
+    assertTrue(hasMarkers("/*  $var$*/"));
+    assertTrue(hasMarkers("text\n//#"));
+  }
+
+  @Test
+  public void testIsAsciiCompatible() {
+    assertTrue(MarkerFreeFileWriter.isAsciiCompatible(StandardCharsets.UTF_8));
+    assertTrue(MarkerFreeFileWriter.isAsciiCompatible(StandardCharsets.ISO_8859_1));
+    assertFalse(MarkerFreeFileWriter.isAsciiCompatible(StandardCharsets.UTF_16));
+    assertFalse(MarkerFreeFileWriter.isAsciiCompatible(StandardCharsets.UTF_16LE));
+  }
+
+  @Test
+  public void testIsByteCopyPossible() {
+    final Charset utf8 = StandardCharsets.UTF_8;
+    final Charset latin = StandardCharsets.ISO_8859_1;
+    assertTrue(MarkerFreeFileWriter.isByteCopyPossible(bytes("a\nb\n"), utf8, utf8, "\n", false, true));
+    assertTrue(MarkerFreeFileWriter.isByteCopyPossible(bytes("a\nb"), utf8, utf8, "\n", true, true));
+    assertTrue(MarkerFreeFileWriter.isByteCopyPossible(bytes("a\r\nb\r\n"), utf8, utf8, "\r\n", false, true));
+    assertTrue(MarkerFreeFileWriter.isByteCopyPossible(bytes("a\nb\n"), utf8, latin, "\n", false, true));
+
+    assertFalse(MarkerFreeFileWriter.isByteCopyPossible(bytes("a\nb"), utf8, utf8, "\n", false, true));
+    assertFalse(MarkerFreeFileWriter.isByteCopyPossible(bytes("a\nb\n"), utf8, utf8, "\n", false, false));
+    assertFalse(MarkerFreeFileWriter.isByteCopyPossible(bytes("a\r\nb\n"), utf8, utf8, "\n", false, true));
+    assertFalse(MarkerFreeFileWriter.isByteCopyPossible(bytes("a\r\nb\n"), utf8, utf8, "\r\n", false, true));
+    assertFalse(MarkerFreeFileWriter.isByteCopyPossible(bytes("a\r"), utf8, utf8, "\n", true, true));
+    assertFalse(MarkerFreeFileWriter.isByteCopyPossible(bytes("мир\n"), utf8, latin, "\n", false, true));
+    assertFalse(MarkerFreeFileWriter.isByteCopyPossible(new byte[] {(byte) 0xFF, '\n'}, utf8, utf8, "\n", false, true));
+  }
+
+  @Test
+  public void testResultIsSameAsForLineByLineProcessing() throws Exception {
+    final Charset[][] charsets = new Charset[][] {
+        {StandardCharsets.UTF_8, StandardCharsets.UTF_8},
+        {StandardCharsets.UTF_8, StandardCharsets.UTF_16},
+        {StandardCharsets.ISO_8859_1, StandardCharsets.UTF_8}
+    };
+    int index = 0;
+    for (final String text : TEXTS) {
+      for (final Charset[] pair : charsets) {
+        for (final String eol : new String[] {"\n", "\r\n"}) {
+          for (int flags = 0; flags < 4; flags++) {
+            final boolean careForLastEol = (flags & 1) != 0;
+            final boolean keepComments = (flags & 2) != 0;
+
+            final File source = tempFolder.newFile("source" + (index++) + ".java");
+            Files.write(source.toPath(), text.getBytes(pair[0]));
+            final byte[] content = Files.readAllBytes(source.toPath());
+            assertFalse(MarkerFreeFileWriter.hasMarkers(content));
+
+            final PreprocessorContext context = new PreprocessorContext(tempFolder.getRoot());
+            context.setSourceEncoding(pair[0]);
+            context.setTargetEncoding(pair[1]);
+            context.setEol(eol);
+            context.setCareForLastEol(careForLastEol);
+            context.setKeepComments(keepComments);
+            context.setTarget(tempFolder.newFolder());
+
+            new FileInfoContainer(source, "expected.java", false).preprocessFile(null, context);
+            final File fastResult = new File(context.getTarget(), "fast.java");
+            assertTrue(MarkerFreeFileWriter.write(content, fastResult, context));
+
+            assertArrayEquals("Text: " + text.replace("\r", "\\r").replace("\n", "\\n") + ", eol: " +
+                    eol.length() + ", flags: " + flags + ", charsets: " + pair[0] + "->" + pair[1],
+                Files.readAllBytes(new File(context.getTarget(), "expected.java").toPath()),
+                Files.readAllBytes(fastResult.toPath()));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testEmptyFile() throws Exception {
+    final PreprocessorContext context = new PreprocessorContext(tempFolder.getRoot());
+    context.setCareForLastEol(false);
+    final File target = new File(tempFolder.newFolder(), "result.java");
+    assertTrue(MarkerFreeFileWriter.write(new byte[0], target, context));
+    assertEquals(0L, target.length());
+    assertTrue(MarkerFreeFileWriter.write(bytes("\r"), target, context));
+    assertEquals(0L, target.length());
+  }
+
+  @Test
+  public void testSameContentIsNotOverwritten() throws Exception {
+    final PreprocessorContext context = new PreprocessorContext(tempFolder.getRoot());
+    context.setDontOverwriteSameContent(true);
+    context.setEol("\n");
+    final File target = new File(tempFolder.newFolder(), "result.java");
+    final byte[] content = bytes("class A {}\n");
+    assertTrue(MarkerFreeFileWriter.write(content, target, context));
+    assertFalse(MarkerFreeFileWriter.write(content, target, context));
+    assertTrue(MarkerFreeFileWriter.write(bytes("class B {}\n"), target, context));
+  }
+
+  private static byte[] bytes(final String text) {
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import org.junit.Test;
+
+public class ResetablePrinterTest {
+
+  @Test
+  public void testPrintAndGrow() throws Exception {
+    final ResetablePrinter printer = new ResetablePrinter(1);
+    assertTrue(printer.isEmpty());
+
+    final StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      printer.print("a" + i);
+      printer.println("", "\n");
+      printer.println("text", "\r\n");
+      expected.append('a').append(i).append('\n').append("text\r\n");
+    }
+
+    assertFalse(printer.isEmpty());
+    assertEquals(expected.length(), printer.getSize());
+    assertEquals(expected.toString(), printer.asCharBuffer().toString());
+
+    final StringWriter writer = new StringWriter();
+    printer.writeBufferTo(writer);
+    assertEquals(expected.toString(), writer.toString());
+  }
+
+  @Test
+  public void testReset() throws Exception {
+    final ResetablePrinter printer = new ResetablePrinter(4);
+    printer.print("some text");
+    printer.reset();
+    assertTrue(printer.isEmpty());
+    assertEquals(0, printer.getSize());
+    printer.print("ab");
+    final StringWriter writer = new StringWriter();
+    printer.writeBufferTo(writer);
+    assertEquals("ab", writer.toString());
+    assertEquals("ab", printer.asCharBuffer().toString());
+  }
+}
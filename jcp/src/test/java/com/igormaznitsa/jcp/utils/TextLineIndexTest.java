@@ -0,0 +1,136 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TextLineIndexTest {
+
+  private static final String[] TEXTS = new String[] {
+      "", "a", "a\n", "a\n\n", "\n", "\r", "\r\n", "a\r", "a\r\n", "a\n\r", "\r\r", "a\r\r\nb",
+      "a\rb\nc", "\n\nx\r\n\r\ny", "line1\r\nline2\r\n", "Здравствуй\nмир"
+  };
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  /**
+   * Reference splitter with behaviour of former char by char reader.
+   */
+  private static String[] splitByChars(final String text, final boolean[] endedByNextLine) {
+    final List<String> result = new ArrayList<>();
+    final StringBuilder buffer = new StringBuilder();
+    boolean ended = false;
+    boolean meetCR = false;
+    for (final char chr : text.toCharArray()) {
+      switch (chr) {
+        case '\n': {
+          ended = true;
+          result.add(buffer.toString());
+          buffer.setLength(0);
+          meetCR = false;
+        }
+        break;
+        case '\r': {
+          if (meetCR) {
+            buffer.append(chr);
+          } else {
+            ended = false;
+            meetCR = true;
+          }
+        }
+        break;
+        default: {
+          if (meetCR) {
+            buffer.append('\r');
+          }
+          meetCR = false;
+          ended = false;
+          buffer.append(chr);
+        }
+        break;
+      }
+    }
+    if (buffer.length() != 0) {
+      result.add(buffer.toString());
+    }
+    endedByNextLine[0] = ended;
+    return result.toArray(new String[0]);
+  }
+
+  @Test
+  public void testSameLinesAsCharByCharReading() {
+    for (final String text : TEXTS) {
+      final boolean[] ended = new boolean[1];
+      final String[] expected = splitByChars(text, ended);
+      final TextLineIndex index = TextLineIndex.of(text);
+      assertArrayEquals(text, expected, index.toArray());
+      assertEquals(text, ended[0], index.isEndedByNextLine());
+    }
+  }
+
+  @Test
+  public void testReadFile() throws Exception {
+    for (final String text : TEXTS) {
+      final File file = tempFolder.newFile();
+      Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+      final boolean[] ended = new boolean[1];
+      final String[] expected = splitByChars(text, ended);
+      final TextLineIndex index = TextLineIndex.read(file, StandardCharsets.UTF_8);
+      assertEquals(text, expected.length, index.size());
+      for (int i = 0; i < expected.length; i++) {
+        assertEquals(text, expected[i], index.getLine(i));
+      }
+      assertEquals(text, ended[0], index.isEndedByNextLine());
+    }
+  }
+
+  @Test
+  public void testMalformedInputReplaced() throws Exception {
+    final File file = tempFolder.newFile();
+    Files.write(file.toPath(), new byte[] {'a', (byte) 0xFF, '\n', 'b'});
+    assertArrayEquals(new String[] {"a\uFFFD", "b"},
+        TextLineIndex.read(file, StandardCharsets.UTF_8).toArray());
+  }
+
+  @Test
+  public void testMemoryEstimationCountsLineStrings() {
+    final String text = "first line\nsecond line\nthird\n";
+    final TextLineIndex index = TextLineIndex.of(text);
+    final long estimation = index.estimateMemorySize();
+    assertTrue(estimation >= text.length() * 2L);
+    assertTrue(estimation < text.length() * 4L + 128L);
+    index.getLine(0);
+    assertEquals(estimation + 56L + "first line".length() * 2L, index.estimateMemorySize());
+  }
+}